@@ -0,0 +1,732 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks of the <code>DBHelper</code> hot paths against synthetic catalogs of increasing
+ * size: the bulk, row-by-row, pipelined and delta CSV imports, the <code>getAll*</code>
+ * queries, single-row lookups and writes, reopening the database per call against keeping one
+ * connection open, the compiled statement cache, CSV parsing, full-text search, the offering
+ * count tables, the in-memory <code>Catalog</code>, cold start from the
+ * binary <code>CatalogSnapshot</code> and the SQLite and in-memory
+ * <code>CatalogRepository</code> backends. Results are written to the Log under the tag
+ * <code>OCC Course Finder Benchmark</code>, one line per measurement.
+ * <p>
+ * Run it on its own with
+ * <code>./gradlew connectedAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=edu.orangecoastcollege.cs273.occcoursefinder.DBHelperBenchmark</code>.
+ * The catalog sizes default to 10<sup>3</sup> through 10<sup>5</sup> rows and can be changed
+ * with the <code>benchmarkSizes</code> runner argument, e.g. <code>1000,1000000</code>.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class DBHelperBenchmark
+{
+    private static final String TAG = "OCC Course Finder Benchmark";
+    private static final String DEFAULT_SIZES = "1000,10000,100000";
+    // Row-by-row imports commit once per row, so larger sizes would take minutes
+    private static final int ROW_BY_ROW_LIMIT = 10000;
+    private static final int LOOKUPS = 1000;
+    // LIKE scans every offering per query, so fewer searches keep the largest size in seconds
+    private static final int SEARCHES = 100;
+    private static final int SEARCH_LIMIT = 20;
+    private static final int PAGE_SIZE = 100;
+    private static final int STATEMENT_CALLS = 100000;
+    private static final int SEMESTER_CODE = 201731;
+    // Share of the offerings a term refresh inserts, updates or deletes
+    private static final double CHANGED_FRACTION = 0.03;
+
+    private Context mContext;
+    private DBHelper mDBHelper;
+    private int[] mSizes;
+
+    @Before
+    public void setUp()
+    {
+        mContext = InstrumentationRegistry.getTargetContext();
+        String sizes = InstrumentationRegistry.getArguments().getString("benchmarkSizes");
+        String[] fields = (sizes == null ? DEFAULT_SIZES : sizes).split(",");
+        mSizes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++)
+            mSizes[i] = Integer.parseInt(fields[i].trim());
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (mDBHelper != null) mDBHelper.close();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+    }
+
+    @Test
+    public void importCSV()
+    {
+        for (int size : mSizes)
+        {
+            recreateDatabase();
+            report("bulkImportCoursesFromCSV", size,
+                    mDBHelper.bulkImportCoursesFromCSV(new StringReader(coursesCSV(size))));
+            report("bulkImportInstructorsFromCSV", size,
+                    mDBHelper.bulkImportInstructorsFromCSV(new StringReader(instructorsCSV(size))));
+            report("bulkImportOfferingsFromCSV", size,
+                    mDBHelper.bulkImportOfferingsFromCSV(new StringReader(offeringsCSV(size))));
+
+            if (size > ROW_BY_ROW_LIMIT) continue;
+            recreateDatabase();
+            long start = System.nanoTime();
+            assertTrue(mDBHelper.importCoursesFromCSV(new StringReader(coursesCSV(size))));
+            report("importCoursesFromCSV", size, System.nanoTime() - start, size);
+            start = System.nanoTime();
+            assertTrue(mDBHelper.importInstructorsFromCSV(new StringReader(instructorsCSV(size))));
+            report("importInstructorsFromCSV", size, System.nanoTime() - start, size);
+            start = System.nanoTime();
+            assertTrue(mDBHelper.importOfferingsFromCSV(new StringReader(offeringsCSV(size))));
+            report("importOfferingsFromCSV", size, System.nanoTime() - start, size);
+        }
+    }
+
+    @Test
+    public void pipelinedImport()
+    {
+        for (int size : mSizes)
+        {
+            String courses = coursesCSV(size);
+            String instructors = instructorsCSV(size);
+            String offerings = offeringsCSV(size);
+
+            recreateDatabase();
+            long start = System.nanoTime();
+            assertNotNull(mDBHelper.bulkImportCoursesFromCSV(new StringReader(courses)));
+            assertNotNull(mDBHelper.bulkImportInstructorsFromCSV(new StringReader(instructors)));
+            assertNotNull(mDBHelper.bulkImportOfferingsFromCSV(new StringReader(offerings)));
+            report("serialBulkImportFromCSV", size, System.nanoTime() - start, 3 * size);
+
+            recreateDatabase();
+            start = System.nanoTime();
+            ImportStats[] stats = mDBHelper.pipelinedImportFromCSV(new StringReader(courses),
+                    new StringReader(instructors), new StringReader(offerings));
+            report("pipelinedImportFromCSV", size, System.nanoTime() - start, 3 * size);
+            assertNotNull(stats);
+            assertEquals(size, stats[2].getRowsImported());
+        }
+    }
+
+    @Test
+    public void deltaImport()
+    {
+        for (int size : mSizes)
+        {
+            // The next term: a third of the changes each are updates, deletions and insertions
+            String[] rows = offeringsCSV(size).split("\n");
+            Random random = new Random(size);
+            int changes = Math.max(3, (int) (size * CHANGED_FRACTION));
+            StringBuilder next = new StringBuilder();
+            for (int row = 0; row < size; row++)
+            {
+                if (row < changes / 3)
+                    next.append(crn(row)).append(',').append(SEMESTER_CODE).append(',')
+                            .append(1 + random.nextInt(size)).append(",1\n");
+                else if (row >= changes * 2 / 3)
+                    next.append(rows[row]).append('\n');
+            }
+            for (int row = size; row < size + changes - changes * 2 / 3; row++)
+                next.append(crn(row)).append(',').append(SEMESTER_CODE).append(",1,1\n");
+            String nextCSV = next.toString();
+
+            populate(size);
+            ImportStats stats = mDBHelper.deltaImportOfferingsFromCSV(new StringReader(nextCSV));
+            assertNotNull(stats);
+            Log.i(TAG, stats.toString());
+            report("deltaImportOfferingsFromCSV", size, stats.getElapsedNanos(), size);
+
+            populate(size);
+            long start = System.nanoTime();
+            mDBHelper.deleteAllOfferings();
+            assertNotNull(mDBHelper.bulkImportOfferingsFromCSV(new StringReader(nextCSV)));
+            report("deleteAllOfferings+bulkImportOfferingsFromCSV", size,
+                    System.nanoTime() - start, size);
+        }
+    }
+
+    @Test
+    public void getAll()
+    {
+        for (int size : mSizes)
+        {
+            populate(size);
+
+            long start = System.nanoTime();
+            assertEquals(size, mDBHelper.getAllCourses().size());
+            report("getAllCourses", size, System.nanoTime() - start, size);
+            start = System.nanoTime();
+            assertEquals(size, mDBHelper.getAllInstructors().size());
+            report("getAllInstructors", size, System.nanoTime() - start, size);
+            start = System.nanoTime();
+            assertEquals(size, mDBHelper.getAllOfferings().size());
+            report("getAllOfferings", size, System.nanoTime() - start, size);
+            start = System.nanoTime();
+            for (Offering offering : mDBHelper.getAllOfferings())
+                assertNotNull(offering.getCourse());
+            report("getAllOfferings+parents", size, System.nanoTime() - start, size);
+        }
+    }
+
+    @Test
+    public void getSingleRow()
+    {
+        for (int size : mSizes)
+        {
+            populate(size);
+            Random random = new Random(size);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+                assertNotNull(mDBHelper.getCourse(1 + random.nextInt(size)));
+            report("getCourse", size, System.nanoTime() - start, LOOKUPS);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+                assertNotNull(mDBHelper.getInstructor(1 + random.nextInt(size)));
+            report("getInstructor", size, System.nanoTime() - start, LOOKUPS);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+                assertNotNull(mDBHelper.getOffering(crn(random.nextInt(size))));
+            report("getOffering", size, System.nanoTime() - start, LOOKUPS);
+        }
+    }
+
+    @Test
+    public void persistentConnection()
+    {
+        for (int size : mSizes)
+        {
+            populate(size);
+            Random random = new Random(size);
+            // Every getCourse misses the identity map, so each one reads the database
+            EntityCache<Course> courseCache = mDBHelper.getCourseCache();
+
+            // Before: the database closed after every call, so each call reopens it
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+            {
+                mDBHelper.close();
+                courseCache.clear();
+                assertNotNull(mDBHelper.getCourse(1 + random.nextInt(size)));
+            }
+            report("getCourse reopened", size, System.nanoTime() - start, LOOKUPS);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+            {
+                mDBHelper.close();
+                mDBHelper.addCourse(new Course("CS", "B" + i, "Reopened " + i));
+            }
+            report("addCourse reopened", size, System.nanoTime() - start, LOOKUPS);
+
+            // After: one connection kept open across the calls
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+            {
+                courseCache.clear();
+                assertNotNull(mDBHelper.getCourse(1 + random.nextInt(size)));
+            }
+            report("getCourse persistent", size, System.nanoTime() - start, LOOKUPS);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++)
+                mDBHelper.addCourse(new Course("CS", "C" + i, "Persistent " + i));
+            report("addCourse persistent", size, System.nanoTime() - start, LOOKUPS);
+            assertEquals(size + 2 * LOOKUPS, mDBHelper.getAllCourses().size());
+        }
+    }
+
+    @Test
+    public void parseCSV() throws IOException
+    {
+        for (int size : mSizes)
+        {
+            String csv = offeringsCSV(size);
+
+            long checksum = 0;
+            long start = System.nanoTime();
+            CsvReader reader = new CsvReader(new StringReader(csv));
+            while (reader.nextRow())
+                checksum += reader.getInt(0) + reader.getInt(1) + reader.getInt(2)
+                        + reader.getInt(3);
+            report("CsvReader", size, System.nanoTime() - start, size);
+
+            long splitChecksum = 0;
+            start = System.nanoTime();
+            for (String line : csv.split("\n"))
+            {
+                String[] fields = line.split(",");
+                for (String field : fields)
+                    splitChecksum += Integer.parseInt(field.trim());
+            }
+            report("String.split", size, System.nanoTime() - start, size);
+
+            assertEquals(splitChecksum, checksum);
+        }
+    }
+
+    @Test
+    public void search()
+    {
+        for (int size : mSizes)
+        {
+            populate(size);
+            String[] queries = searchQueries(size);
+
+            int matches = 0;
+            long start = System.nanoTime();
+            for (String query : queries)
+                matches += mDBHelper.searchOfferings(query, SEARCH_LIMIT).size();
+            report("searchOfferings", size, System.nanoTime() - start, SEARCHES);
+
+            // Baseline: a substring match over the same text, scanning every offering
+            int likeMatches = 0;
+            SQLiteDatabase database = mDBHelper.getReadableDatabase();
+            start = System.nanoTime();
+            for (String query : queries)
+            {
+                Cursor cursor = database.rawQuery("SELECT o.crn FROM Offerings o"
+                                + " JOIN Courses c ON o.course_id = c._id"
+                                + " JOIN Instructors i ON o.instructor_id = i._id"
+                                + " WHERE c.alpha || ' ' || c.number || ' ' || c.title || ' '"
+                                + " || i.first_name || ' ' || i.last_name LIKE ?"
+                                + " LIMIT " + SEARCH_LIMIT,
+                        new String[]{"%" + query + "%"});
+                likeMatches += cursor.getCount();
+                cursor.close();
+            }
+            report("LIKE '%...%'", size, System.nanoTime() - start, SEARCHES);
+
+            Log.i(TAG, "search rows=" + size + " matches=" + matches
+                    + " likeMatches=" + likeMatches);
+            assertTrue(matches > 0);
+        }
+    }
+
+    @Test
+    public void catalog()
+    {
+        for (int size : mSizes)
+        {
+            populate(size);
+
+            // Heap retained by the fully hydrated offerings versus the primitive-array snapshot
+            long before = usedMemory();
+            List<Offering> offerings = mDBHelper.getAllOfferings();
+            long listBytes = usedMemory() - before;
+            assertEquals(size, offerings.size());
+            offerings = null;
+
+            before = usedMemory();
+            long start = System.nanoTime();
+            Catalog catalog = mDBHelper.loadCatalog();
+            report("loadCatalog", size, System.nanoTime() - start, size);
+            long catalogBytes = usedMemory() - before;
+            assertEquals(size, catalog.getOfferingCount());
+            Log.i(TAG, "memory rows=" + size + " List<Offering>=" + listBytes / 1024 + "KiB"
+                    + " Catalog=" + catalogBytes / 1024 + "KiB"
+                    + " perOffering=" + listBytes / size + "B/" + catalogBytes / size + "B");
+
+            // "All CS offerings in the semester taught by X", from memory and from SQLite
+            Random random = new Random(size);
+            long[] instructorIds = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++)
+                instructorIds[i] = 1 + random.nextInt(size);
+
+            int catalogMatches = 0;
+            start = System.nanoTime();
+            for (long instructorId : instructorIds)
+                catalogMatches += catalog.findOfferings("CS", Catalog.ANY_ID, instructorId,
+                        SEMESTER_CODE).length;
+            report("Catalog.findOfferings", size, System.nanoTime() - start, LOOKUPS);
+
+            int databaseMatches = 0;
+            SQLiteDatabase database = mDBHelper.getReadableDatabase();
+            start = System.nanoTime();
+            for (long instructorId : instructorIds)
+            {
+                Cursor cursor = database.rawQuery("SELECT o.crn FROM Offerings o"
+                                + " JOIN Courses c ON o.course_id = c._id"
+                                + " WHERE c.alpha = ? AND o.instructor_id = ?"
+                                + " AND o.semester_code = ?",
+                        new String[]{"CS", String.valueOf(instructorId),
+                                String.valueOf(SEMESTER_CODE)});
+                databaseMatches += cursor.getCount();
+                cursor.close();
+            }
+            report("SQLite filter", size, System.nanoTime() - start, LOOKUPS);
+            assertEquals(databaseMatches, catalogMatches);
+        }
+    }
+
+    @Test
+    public void catalogSnapshot() throws IOException
+    {
+        for (int size : mSizes)
+        {
+            // Each cold start ends when the first page of the current semester is ready
+            recreateDatabase();
+            long start = System.nanoTime();
+            assertNotNull(mDBHelper.pipelinedImportFromCSV(new StringReader(coursesCSV(size)),
+                    new StringReader(instructorsCSV(size)), new StringReader(offeringsCSV(size))));
+            List<Offering> csvPage = mDBHelper.getSemesterOfferingsPage(SEMESTER_CODE, -1,
+                    PAGE_SIZE);
+            csvPage.get(0).getCourse();
+            report("startup CSV import", size, System.nanoTime() - start, 1);
+
+            start = System.nanoTime();
+            assertTrue(mDBHelper.writeCatalogSnapshot(null));
+            report("writeCatalogSnapshot", size, System.nanoTime() - start, size);
+            File file = mDBHelper.getCatalogSnapshotFile();
+            Log.i(TAG, "snapshot rows=" + size + " bytes=" + file.length()
+                    + " perOffering=" + file.length() / size + "B");
+
+            mDBHelper.close();
+            mDBHelper = new DBHelper(mContext);
+            start = System.nanoTime();
+            List<Offering> databasePage = mDBHelper.getSemesterOfferingsPage(SEMESTER_CODE, -1,
+                    PAGE_SIZE);
+            databasePage.get(0).getCourse();
+            report("startup SQLite", size, System.nanoTime() - start, 1);
+
+            // A new helper, so the snapshot is opened without the database being opened
+            mDBHelper.close();
+            mDBHelper = new DBHelper(mContext);
+            start = System.nanoTime();
+            CatalogSnapshot snapshot = mDBHelper.openCatalogSnapshot();
+            long openNanos = System.nanoTime() - start;
+            List<Offering> snapshotPage = snapshot.getSemesterOfferingsPage(SEMESTER_CODE, -1,
+                    PAGE_SIZE);
+            report("startup CatalogSnapshot", size, System.nanoTime() - start, 1);
+            report("openCatalogSnapshot", size, openNanos, 1);
+            assertEquals(csvPage.toString(), snapshotPage.toString());
+            assertEquals(databasePage.toString(), snapshotPage.toString());
+
+            // Pages after the first, read straight from the mapped file
+            int pages = 0;
+            start = System.nanoTime();
+            for (List<Offering> page = snapshotPage; page.size() == PAGE_SIZE; pages++)
+                page = snapshot.getSemesterOfferingsPage(SEMESTER_CODE,
+                        page.get(PAGE_SIZE - 1).getCRN(), PAGE_SIZE);
+            report("CatalogSnapshot pages", size, System.nanoTime() - start, Math.max(pages, 1));
+
+            // The part of openCatalogSnapshot spent on the checksum, which reads every page
+            start = System.nanoTime();
+            snapshot.verify();
+            report("CatalogSnapshot verify", size, System.nanoTime() - start, 1);
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void offeringCounts()
+    {
+        for (int size : mSizes)
+        {
+            populate(size);
+            Random random = new Random(size);
+            long[] courseIds = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++)
+                courseIds[i] = 1 + random.nextInt(size);
+
+            int tableCount = 0;
+            long start = System.nanoTime();
+            for (long courseId : courseIds)
+                tableCount += mDBHelper.getCourseOfferingCount(courseId, SEMESTER_CODE);
+            report("getCourseOfferingCount", size, System.nanoTime() - start, LOOKUPS);
+
+            // Baseline: counting the offerings through the course index on every lookup
+            int indexCount = 0;
+            SQLiteDatabase database = mDBHelper.getReadableDatabase();
+            start = System.nanoTime();
+            for (long courseId : courseIds)
+            {
+                Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM Offerings"
+                                + " WHERE course_id = ? AND semester_code = ?",
+                        new String[]{String.valueOf(courseId), String.valueOf(SEMESTER_CODE)});
+                cursor.moveToFirst();
+                indexCount += cursor.getInt(0);
+                cursor.close();
+            }
+            report("SELECT COUNT(*)", size, System.nanoTime() - start, LOOKUPS);
+            assertEquals(indexCount, tableCount);
+
+            // The whole semester's per-course counts, from the count table and from the offerings
+            start = System.nanoTime();
+            LongSparseArray<Integer> counts = mDBHelper.getCourseOfferingCounts(SEMESTER_CODE);
+            report("getCourseOfferingCounts", size, System.nanoTime() - start, 1);
+            start = System.nanoTime();
+            LongSparseArray<Integer> javaCounts = new LongSparseArray<>();
+            for (Offering offering : mDBHelper.getAllOfferings())
+                if (offering.getSemesterCode() == SEMESTER_CODE)
+                    javaCounts.put(offering.getCourseId(),
+                            javaCounts.get(offering.getCourseId(), 0) + 1);
+            report("getAllOfferings+count", size, System.nanoTime() - start, 1);
+            assertEquals(javaCounts.size(), counts.size());
+        }
+    }
+
+    @Test
+    public void statementCache()
+    {
+        // The per-call cost barely depends on the catalog size, so only the largest is measured
+        int size = mSizes[mSizes.length - 1];
+        populate(size);
+        Random random = new Random(size);
+        SQLiteDatabase database = mDBHelper.getWritableDatabase();
+
+        // Every getCourse misses the identity map, so each one reads the database
+        EntityCache<Course> courseCache = mDBHelper.getCourseCache();
+        long start = System.nanoTime();
+        for (int i = 0; i < STATEMENT_CALLS; i++)
+        {
+            courseCache.clear();
+            assertNotNull(mDBHelper.getCourse(1 + random.nextInt(size)));
+        }
+        report("getCourse uncached", size, System.nanoTime() - start, STATEMENT_CALLS);
+
+        // Baseline: the column array, selection and query SQL built again on every call
+        start = System.nanoTime();
+        for (int i = 0; i < STATEMENT_CALLS; i++)
+        {
+            Cursor cursor = database.query("Courses",
+                    new String[]{"_id", "alpha", "number", "title"}, "_id=?",
+                    new String[]{String.valueOf(1 + random.nextInt(size))},
+                    null, null, null, null);
+            assertTrue(cursor.moveToFirst());
+            cursor.close();
+        }
+        report("query(Courses)", size, System.nanoTime() - start, STATEMENT_CALLS);
+
+        // One write of each kind first, in a semester of its own, compiles its statements
+        Offering warmUp = new Offering(crn(0), SEMESTER_CODE + 6, new Course(1, null, null, null),
+                new Instructor(1, null, null, null));
+        mDBHelper.addOffering(warmUp);
+        mDBHelper.updateOffering(warmUp);
+
+        // New offerings in their own semesters, each indexed for search and counted
+        int compiles = mDBHelper.getStatementCache().compileCount();
+        start = System.nanoTime();
+        for (int i = 0; i < STATEMENT_CALLS; i++)
+        {
+            long id = 1 + random.nextInt(size);
+            mDBHelper.addOffering(new Offering(crn(i), SEMESTER_CODE + 2,
+                    new Course(id, null, null, null), new Instructor(id, null, null, null)));
+        }
+        report("addOffering", size, System.nanoTime() - start, STATEMENT_CALLS);
+        assertEquals(STATEMENT_CALLS, mDBHelper.getOfferingsForSemester(SEMESTER_CODE + 2).size());
+
+        // The same offerings moved to other parents, each re-indexed and recounted
+        start = System.nanoTime();
+        for (int i = 0; i < STATEMENT_CALLS; i++)
+        {
+            long id = 1 + random.nextInt(size);
+            mDBHelper.updateOffering(new Offering(crn(i), SEMESTER_CODE + 2,
+                    new Course(id, null, null, null), new Instructor(id, null, null, null)));
+        }
+        report("updateOffering", size, System.nanoTime() - start, STATEMENT_CALLS);
+        assertEquals(compiles, mDBHelper.getStatementCache().compileCount());
+
+        // Baseline: the offering row alone, through ContentValues, without indexing or counting
+        start = System.nanoTime();
+        for (int i = 0; i < STATEMENT_CALLS; i++)
+        {
+            long id = 1 + random.nextInt(size);
+            ContentValues values = new ContentValues();
+            values.put("crn", crn(i));
+            values.put("semester_code", SEMESTER_CODE + 4);
+            values.put("course_id", id);
+            values.put("instructor_id", id);
+            database.beginTransaction();
+            try
+            {
+                assertTrue(database.insert("Offerings", null, values) != -1);
+                database.setTransactionSuccessful();
+            } finally
+            {
+                database.endTransaction();
+            }
+        }
+        report("insert(ContentValues)", size, System.nanoTime() - start, STATEMENT_CALLS);
+        Log.i(TAG, mDBHelper.getStatementCache().toString());
+    }
+
+    @Test
+    public void repositoryBackends()
+    {
+        for (int size : mSizes)
+        {
+            recreateDatabase();
+            runRepositoryWorkload("DBHelper", mDBHelper, size);
+            mDBHelper.close();
+            mDBHelper = null;
+            CatalogRepository inMemory = new InMemoryCatalogRepository();
+            runRepositoryWorkload("InMemoryCatalogRepository", inMemory, size);
+            inMemory.close();
+        }
+    }
+
+    /**
+     * Times the same import, read, paging, lookup and search workload against an empty
+     * <code>CatalogRepository</code>, so the backends can be compared line by line.
+     *
+     * @param backend    The name of the backend, prefixed to each measurement.
+     * @param repository The empty repository.
+     * @param size       The number of rows in each CSV.
+     */
+    private static void runRepositoryWorkload(String backend, CatalogRepository repository,
+                                              int size)
+    {
+        long start = System.nanoTime();
+        ImportStats[] stats = repository.importFromCSV(new StringReader(coursesCSV(size)),
+                new StringReader(instructorsCSV(size)), new StringReader(offeringsCSV(size)),
+                DBHelper.DEFAULT_IMPORT_CONFLICT);
+        report(backend + ".importFromCSV", size, System.nanoTime() - start, 3 * size);
+        assertNotNull(stats);
+        assertEquals(size, stats[2].getRowsImported());
+
+        start = System.nanoTime();
+        for (Offering offering : repository.getAllOfferings())
+            assertNotNull(offering.getCourse());
+        report(backend + ".getAllOfferings+parents", size, System.nanoTime() - start, size);
+
+        int paged = 0;
+        start = System.nanoTime();
+        List<Offering> page = repository.getOfferingsPage(-1, -1, PAGE_SIZE);
+        while (!page.isEmpty())
+        {
+            paged += page.size();
+            Offering last = page.get(page.size() - 1);
+            page = repository.getOfferingsPage(last.getCRN(), last.getSemesterCode(), PAGE_SIZE);
+        }
+        report(backend + ".getOfferingsPage", size, System.nanoTime() - start, size);
+        assertEquals(size, paged);
+
+        Random random = new Random(size);
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++)
+            assertNotNull(repository.getOffering(crn(random.nextInt(size))));
+        report(backend + ".getOffering", size, System.nanoTime() - start, LOOKUPS);
+
+        int matches = 0;
+        start = System.nanoTime();
+        for (String query : searchQueries(size))
+            matches += repository.searchOfferings(query, SEARCH_LIMIT).size();
+        report(backend + ".searchOfferings", size, System.nanoTime() - start, SEARCHES);
+        assertTrue(matches > 0);
+    }
+
+    private void recreateDatabase()
+    {
+        if (mDBHelper != null) mDBHelper.close();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+        mDBHelper = new DBHelper(mContext);
+    }
+
+    private void populate(int size)
+    {
+        recreateDatabase();
+        mDBHelper.bulkImportCoursesFromCSV(new StringReader(coursesCSV(size)));
+        mDBHelper.bulkImportInstructorsFromCSV(new StringReader(instructorsCSV(size)));
+        mDBHelper.bulkImportOfferingsFromCSV(new StringReader(offeringsCSV(size)));
+    }
+
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int crn(int row)
+    {
+        return 30000 + row;
+    }
+
+    private static String coursesCSV(int size)
+    {
+        StringBuilder csv = new StringBuilder();
+        for (int id = 1; id <= size; id++)
+            csv.append(id).append(",CS,A").append(id).append(",Course ").append(id).append('\n');
+        return csv.toString();
+    }
+
+    private static String instructorsCSV(int size)
+    {
+        StringBuilder csv = new StringBuilder();
+        for (int id = 1; id <= size; id++)
+            csv.append(id).append(",Last").append(id).append(",First").append(id)
+                    .append(",instructor").append(id).append("@occ.cccd.edu\n");
+        return csv.toString();
+    }
+
+    private static String offeringsCSV(int size)
+    {
+        Random random = new Random(size);
+        StringBuilder csv = new StringBuilder();
+        for (int row = 0; row < size; row++)
+            csv.append(crn(row)).append(',').append(SEMESTER_CODE).append(',')
+                    .append(1 + random.nextInt(size)).append(',')
+                    .append(1 + random.nextInt(size)).append('\n');
+        return csv.toString();
+    }
+
+    private static String[] searchQueries(int size)
+    {
+        Random random = new Random(size);
+        String[] queries = new String[SEARCHES];
+        for (int i = 0; i < SEARCHES; i++)
+        {
+            // Course numbers, titles and instructor names, partly typed
+            String id = String.valueOf(1 + random.nextInt(size));
+            String typed = id.substring(0, 1 + random.nextInt(id.length()));
+            queries[i] = i % 3 == 0 ? "cs a" + typed
+                    : i % 3 == 1 ? "course " + typed
+                    : "last" + typed;
+        }
+        return queries;
+    }
+
+    private static void report(String operation, int size, ImportStats stats)
+    {
+        assertNotNull(stats);
+        assertEquals(size, stats.getRowsImported());
+        report(operation, size, stats.getElapsedNanos(), size);
+    }
+
+    private static void report(String operation, int size, long elapsedNanos, int operations)
+    {
+        Log.i(TAG, operation + " rows=" + size
+                + " total=" + elapsedNanos / 1000000 + "ms"
+                + " perOp=" + elapsedNanos / operations + "ns");
+    }
+}
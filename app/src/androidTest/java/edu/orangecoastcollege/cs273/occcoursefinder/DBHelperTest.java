@@ -0,0 +1,873 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumentation tests for the <code>DBHelper</code> schema and queries, which will execute on
+ * an Android device.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+@RunWith(AndroidJUnit4.class)
+public class DBHelperTest
+{
+    private static final String TAG = "OCC Course Finder";
+
+    private Context mContext;
+    private DBHelper mDBHelper;
+
+    @Before
+    public void setUp()
+    {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+        mDBHelper = new DBHelper(mContext);
+        mDBHelper.getCatalogSnapshotFile().delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mDBHelper.close();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+        mDBHelper.getCatalogSnapshotFile().delete();
+    }
+
+    @Test
+    public void offeringByCrnUsesIndex()
+    {
+        assertUsesIndex("SELECT * FROM Offerings WHERE crn = ?", "36018");
+    }
+
+    @Test
+    public void offeringByCrnAndSemesterUsesIndex()
+    {
+        assertUsesIndex("SELECT * FROM Offerings WHERE crn = ? AND semester_code = ?",
+                "36018", "201731");
+    }
+
+    @Test
+    public void offeringsByCourseUseIndex()
+    {
+        assertUsesIndex("SELECT crn FROM Offerings WHERE course_id = ?", "11");
+    }
+
+    @Test
+    public void offeringsByInstructorUseIndex()
+    {
+        assertUsesIndex("SELECT crn FROM Offerings WHERE instructor_id = ?", "8");
+    }
+
+    @Test
+    public void offeringsBySemesterUseIndex()
+    {
+        assertUsesIndex("SELECT course_id, instructor_id FROM Offerings WHERE semester_code = ?",
+                "201731");
+    }
+
+    @Test
+    public void semesterPageUsesIndexInCrnOrder()
+    {
+        assertUsesIndex("SELECT crn, course_id, instructor_id FROM Offerings"
+                + " WHERE semester_code = ? AND crn > ? ORDER BY crn", "201731", "36018");
+    }
+
+    @Test
+    public void offeringCountsUsePrimaryKey()
+    {
+        assertUsesIndex("SELECT offerings FROM " + DBHelper.COURSE_COUNTS_TABLE
+                + " WHERE semester_code = ? AND course_id = ?", "201731", "11");
+        assertUsesIndex("SELECT instructor_id, offerings FROM " + DBHelper.INSTRUCTOR_COUNTS_TABLE
+                + " WHERE semester_code = ? ORDER BY instructor_id", "201731");
+    }
+
+    @Test
+    public void upgradeFromVersion1KeepsOfferings()
+    {
+        SQLiteDatabase database = SQLiteDatabase.create(null);
+        database.execSQL("CREATE TABLE Courses(_id INTEGER PRIMARY KEY, alpha TEXT, "
+                + "number TEXT, title TEXT)");
+        database.execSQL("CREATE TABLE Instructors(_id INTEGER PRIMARY KEY, first_name TEXT, "
+                + "last_name TEXT, email TEXT)");
+        database.execSQL("CREATE TABLE Offerings(crn INTEGER, semester_code INTEGER, "
+                + "course_id INTEGER, instructor_id INTEGER)");
+        database.execSQL("INSERT INTO Offerings VALUES (36018, 201731, 11, 8)");
+        database.execSQL("INSERT INTO Offerings VALUES (36018, 201731, 11, 8)");
+        database.execSQL("INSERT INTO Offerings VALUES (36123, 201731, 11, 5)");
+
+        mDBHelper.onUpgrade(database, 1, 2);
+
+        Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM Offerings", null);
+        cursor.moveToFirst();
+        assertEquals(2, cursor.getInt(0));
+        cursor.close();
+
+        cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' "
+                + "AND name IN (?, ?, ?)", new String[]{DBHelper.OFFERINGS_COURSE_INDEX,
+                DBHelper.OFFERINGS_INSTRUCTOR_INDEX, DBHelper.OFFERINGS_SEMESTER_INDEX});
+        assertEquals(3, cursor.getCount());
+        cursor.close();
+        assertOfferingCountsConsistent(database);
+        database.close();
+    }
+
+    @Test
+    public void warmStartDoesNotImport()
+    {
+        long coldStart = System.nanoTime();
+        assertTrue(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        long coldNanos = System.nanoTime() - coldStart;
+        int offerings = mDBHelper.getAllOfferings().size();
+        mDBHelper.close();
+
+        mDBHelper = new DBHelper(mContext);
+        long warmStart = System.nanoTime();
+        assertFalse(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        long warmNanos = System.nanoTime() - warmStart;
+
+        assertEquals(offerings, mDBHelper.getAllOfferings().size());
+        assertTrue("warm " + warmNanos + "ns, cold " + coldNanos + "ns", warmNanos < coldNanos);
+    }
+
+    @Test
+    public void failedAssetImportKeepsOldCatalog()
+    {
+        assertTrue(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        List<String> offerings = toSortedStrings(mDBHelper.getAllOfferings());
+        int courses = mDBHelper.getAllCourses().size();
+
+        try
+        {
+            // The old data is deleted in the import's transaction, so it is rolled back with it
+            mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv", "missing.csv");
+            fail("Expected the import of a missing asset to fail");
+        } catch (SQLException e)
+        {
+            assertEquals(courses, mDBHelper.getAllCourses().size());
+            assertEquals(offerings, toSortedStrings(mDBHelper.getAllOfferings()));
+        }
+    }
+
+    @Test
+    public void prebuiltDatabaseMatchesCsvImport()
+    {
+        long csvStart = System.nanoTime();
+        assertTrue(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        long csvNanos = System.nanoTime() - csvStart;
+        List<String> imported = toSortedStrings(mDBHelper.getAllOfferings());
+        mDBHelper.close();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+
+        mDBHelper = new DBHelper(mContext);
+        long prebuiltStart = System.nanoTime();
+        assertTrue(mDBHelper.installPrebuiltDatabase("catalog.db", "courses.csv",
+                "instructors.csv", "offerings.csv"));
+        long prebuiltNanos = System.nanoTime() - prebuiltStart;
+
+        assertEquals(imported, toSortedStrings(mDBHelper.getAllOfferings()));
+        assertOfferingCountsConsistent(mDBHelper.getReadableDatabase());
+        Log.i(TAG, "Startup: CSV import " + csvNanos / 1000 + "us, prebuilt copy "
+                + prebuiltNanos / 1000 + "us");
+    }
+
+    @Test
+    public void missingPrebuiltDatabaseKeepsCurrentOne()
+    {
+        assertTrue(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        List<String> offerings = toSortedStrings(mDBHelper.getAllOfferings());
+
+        try
+        {
+            // Neither the prebuilt database nor the CSVs can be read
+            mDBHelper.installPrebuiltDatabase("missing.db", "missing.csv", "missing.csv",
+                    "missing.csv");
+            fail("Expected the install of missing assets to fail");
+        } catch (SQLException e)
+        {
+            assertEquals(offerings, toSortedStrings(mDBHelper.getAllOfferings()));
+            assertFalse(new File(mContext.getDatabasePath(DBHelper.DATABASE_NAME).getPath()
+                    + ".tmp").exists());
+        }
+    }
+
+    @Test
+    public void pipelinedImportMatchesBulkImport()
+    {
+        assertNotNull(mDBHelper.bulkImportCoursesFromCSV("courses.csv"));
+        assertNotNull(mDBHelper.bulkImportInstructorsFromCSV("instructors.csv"));
+        assertNotNull(mDBHelper.bulkImportOfferingsFromCSV("offerings.csv"));
+        List<String> courses = toSortedStrings(mDBHelper.getAllCourses());
+        List<String> offerings = toSortedStrings(mDBHelper.getAllOfferings());
+        mDBHelper.close();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+
+        mDBHelper = new DBHelper(mContext);
+        ImportStats[] stats = mDBHelper.pipelinedImportFromCSV("courses.csv", "instructors.csv",
+                "offerings.csv");
+        assertNotNull(stats);
+        assertEquals(courses.size(), stats[0].getRowsImported());
+        assertEquals(offerings.size(), stats[2].getRowsImported());
+        assertEquals(courses, toSortedStrings(mDBHelper.getAllCourses()));
+        assertEquals(offerings, toSortedStrings(mDBHelper.getAllOfferings()));
+        assertFalse(mDBHelper.searchOfferings("java", 10).isEmpty());
+        assertOfferingCountsConsistent(mDBHelper.getReadableDatabase());
+    }
+
+    @Test
+    public void pipelinedImportRejectsBadRows()
+    {
+        ImportStats[] stats = mDBHelper.pipelinedImportFromCSV(
+                new StringReader("1,CS,A170,Java Programming 1\nbad row\n"),
+                new StringReader("1,Paulding,Michael,mpaulding@occ.cccd.edu\n"),
+                new StringReader("36018,201731,1,1\n36019,201731,2,1\nx,201731,1,1\n"));
+        assertNotNull(stats);
+        assertEquals(1, stats[0].getRowsRejected());
+        assertEquals(1, stats[2].getRowsImported());
+        assertEquals(2, stats[2].getRowsRejected());
+        assertEquals(1, stats[2].getDanglingCourseReferences());
+        assertEquals(1, mDBHelper.getAllOfferings().size());
+    }
+
+    @Test
+    public void importsKeepSourceIds()
+    {
+        // IDs that insertion order would not reproduce
+        assertNotNull(mDBHelper.bulkImportCoursesFromCSV(
+                new StringReader("20,CS,A170,Java Programming 1\n10,CS,A273,Mobile Apps\n")));
+        assertTrue(mDBHelper.importInstructorsFromCSV(
+                new StringReader("7,Paulding,Michael,mpaulding@occ.cccd.edu\n")));
+        assertNotNull(mDBHelper.bulkImportOfferingsFromCSV(
+                new StringReader("36018,201731,10,7\n36019,201731,20,7\n")));
+
+        assertEquals("A273", mDBHelper.getCourse(10).getNumber());
+        assertEquals("A170", mDBHelper.getCourse(20).getNumber());
+        assertEquals("Paulding", mDBHelper.getInstructor(7).getLastName());
+        assertEquals("A273", mDBHelper.getOffering(36018).getCourse().getNumber());
+    }
+
+    @Test
+    public void importConflictAlgorithms()
+    {
+        String duplicates = "5,CS,A170,Java Programming 1\n5,CS,A272,Java Programming 2\n";
+
+        ImportStats stats = mDBHelper.bulkImportCoursesFromCSV(new StringReader(duplicates),
+                SQLiteDatabase.CONFLICT_IGNORE);
+        assertEquals(1, stats.getRowsImported());
+        assertEquals(1, stats.getDuplicateKeys());
+        assertEquals("A170", mDBHelper.getAllCourses().get(0).getNumber());
+
+        mDBHelper.deleteAllCourses();
+        stats = mDBHelper.bulkImportCoursesFromCSV(new StringReader(duplicates),
+                SQLiteDatabase.CONFLICT_REPLACE);
+        assertEquals(2, stats.getRowsImported());
+        List<Course> courses = mDBHelper.getAllCourses();
+        assertEquals(1, courses.size());
+        assertEquals("A272", courses.get(0).getNumber());
+
+        mDBHelper.deleteAllCourses();
+        assertNull(mDBHelper.bulkImportCoursesFromCSV(new StringReader(duplicates),
+                SQLiteDatabase.CONFLICT_FAIL));
+        assertTrue(mDBHelper.getAllCourses().isEmpty());
+    }
+
+    @Test
+    public void replaceImportsInvalidateCachedRows()
+    {
+        mDBHelper.bulkImportCoursesFromCSV(new StringReader("5,CS,A170,Java Programming 1\n"));
+        mDBHelper.bulkImportInstructorsFromCSV(new StringReader(
+                "7,Paulding,Michael,mpaulding@occ.cccd.edu\n"));
+        assertEquals("Java Programming 1", mDBHelper.getCourse(5).getTitle());
+        assertEquals("Paulding", mDBHelper.getInstructor(7).getLastName());
+
+        mDBHelper.bulkImportCoursesFromCSV(new StringReader("5,CS,A170,Java 1\n"),
+                SQLiteDatabase.CONFLICT_REPLACE);
+        assertEquals("Java 1", mDBHelper.getCourse(5).getTitle());
+
+        mDBHelper.pipelinedImportFromCSV(new StringReader("5,CS,A170,Java\n"),
+                new StringReader("7,Pauling,Michael,mpaulding@occ.cccd.edu\n"),
+                new StringReader(""), SQLiteDatabase.CONFLICT_REPLACE);
+        assertEquals("Java", mDBHelper.getCourse(5).getTitle());
+        assertEquals("Pauling", mDBHelper.getInstructor(7).getLastName());
+    }
+
+    @Test
+    public void courseCacheIsInvalidatedByWrites()
+    {
+        mDBHelper.addCourse(new Course("CS", "A170", "Java Programming 1"));
+        Course course = mDBHelper.getCourse(1);
+        assertSame(course, mDBHelper.getCourse(1));
+        assertEquals(1, mDBHelper.getCourseCache().hitCount());
+
+        course.setTitle("Java 1");
+        mDBHelper.updateCourse(course);
+        Course updated = mDBHelper.getCourse(1);
+        assertNotSame(course, updated);
+        assertEquals("Java 1", updated.getTitle());
+
+        mDBHelper.deleteCourse(updated);
+        assertNull(mDBHelper.getCourse(1));
+
+        mDBHelper.addInstructor(new Instructor("Paulding", "Michael", "mpaulding@occ.cccd.edu"));
+        assertNotNull(mDBHelper.getInstructor(1));
+        mDBHelper.deleteAllInstructors();
+        assertNull(mDBHelper.getInstructor(1));
+    }
+
+    @Test
+    public void offeringPagesCoverAllOfferings()
+    {
+        mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv", "offerings.csv");
+
+        List<Offering> paged = new ArrayList<>();
+        List<Offering> page = mDBHelper.getOfferingsPage(-1, -1, 5);
+        while (!page.isEmpty())
+        {
+            assertTrue(page.size() <= 5);
+            paged.addAll(page);
+            Offering last = page.get(page.size() - 1);
+            page = mDBHelper.getOfferingsPage(last.getCRN(), last.getSemesterCode(), 5);
+        }
+        assertEquals(toSortedStrings(mDBHelper.getAllOfferings()), toSortedStrings(paged));
+
+        int streamed = 0;
+        CursorIterator<Offering> offerings = mDBHelper.iterateOfferings();
+        while (offerings.hasNext())
+        {
+            offerings.next();
+            streamed++;
+        }
+        assertEquals(paged.size(), streamed);
+    }
+
+    @Test
+    public void catalogSnapshotMatchesDatabase()
+    {
+        assertTrue(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        CatalogSnapshot snapshot = mDBHelper.openCatalogSnapshot();
+        assertNotNull(snapshot);
+        Catalog catalog = mDBHelper.loadCatalog();
+        assertEquals(catalog.getCourseCount(), snapshot.getCourseCount());
+        assertEquals(catalog.getInstructorCount(), snapshot.getInstructorCount());
+        assertEquals(catalog.getOfferingCount(), snapshot.getOfferingCount());
+        assertArrayEquals(mDBHelper.getSemesterCodes(), snapshot.getSemesterCodes());
+        assertEquals(mDBHelper.getCurrentSemesterCode(), snapshot.getLatestSemesterCode());
+        for (int i = 0; i < catalog.getCourseCount(); i++)
+            assertEquals(catalog.getCourse(i).toString(), snapshot.getCourse(i).toString());
+        for (int i = 0; i < catalog.getInstructorCount(); i++)
+            assertEquals(catalog.getInstructor(i).toString(),
+                    snapshot.getInstructor(i).toString());
+
+        for (int semesterCode : snapshot.getSemesterCodes())
+        {
+            int afterCRN = -1;
+            List<Offering> page;
+            do
+            {
+                page = snapshot.getSemesterOfferingsPage(semesterCode, afterCRN, 7);
+                assertEquals(mDBHelper.getSemesterOfferingsPage(semesterCode, afterCRN, 7)
+                        .toString(), page.toString());
+                if (!page.isEmpty()) afterCRN = page.get(page.size() - 1).getCRN();
+            } while (page.size() == 7);
+        }
+        assertTrue(snapshot.getSemesterOfferingsPage(190001, -1, 7).isEmpty());
+    }
+
+    @Test
+    public void invalidCatalogSnapshotIsRewritten() throws IOException
+    {
+        assertNull(mDBHelper.openCatalogSnapshot());
+        mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv", "offerings.csv");
+        File file = mDBHelper.getCatalogSnapshotFile();
+        String sourceHash = mDBHelper.openCatalogSnapshot().getSourceHash();
+        assertNotNull(sourceHash);
+
+        // A corrupted byte passes the header check but fails the checksum, so the snapshot is
+        // discarded and the list waits for the database instead
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        int last = randomAccessFile.read();
+        randomAccessFile.seek(randomAccessFile.length() - 1);
+        randomAccessFile.write(last ^ 1);
+        randomAccessFile.close();
+        assertNull(mDBHelper.openCatalogSnapshot());
+        assertFalse(file.exists());
+
+        // A truncated file fails the size check, so it is discarded when opened
+        assertTrue(mDBHelper.writeCatalogSnapshot(sourceHash));
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() - 1);
+        randomAccessFile.close();
+        assertNull(mDBHelper.openCatalogSnapshot());
+        assertFalse(file.exists());
+
+        // A warm start rewrites a missing snapshot, or one taken from other CSVs
+        assertFalse(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        assertEquals(sourceHash, mDBHelper.openCatalogSnapshot().getSourceHash());
+        assertTrue(mDBHelper.writeCatalogSnapshot("stale"));
+        assertEquals("stale", mDBHelper.openCatalogSnapshot().getSourceHash());
+        assertFalse(mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv",
+                "offerings.csv"));
+        assertEquals(sourceHash, mDBHelper.openCatalogSnapshot().getSourceHash());
+    }
+
+    @Test
+    public void offeringParentsLoadLazilyPerPage()
+    {
+        mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv", "offerings.csv");
+        mDBHelper.close();
+        mDBHelper = new DBHelper(mContext);
+
+        List<Offering> page = mDBHelper.getOfferingsPage(-1, -1, 20);
+        List<Long> courseIds = new ArrayList<>();
+        for (Offering offering : page)
+            if (!courseIds.contains(offering.getCourseId()))
+                courseIds.add(offering.getCourseId());
+        assertEquals(0, mDBHelper.getCourseCache().missCount());
+
+        // The first access loads the Courses of the whole page, once each
+        Course first = page.get(0).getCourse();
+        assertEquals(page.get(0).getCourseId(), first.getId());
+        assertEquals(courseIds.size(), mDBHelper.getCourseCache().missCount());
+        for (Offering offering : page)
+        {
+            assertEquals(offering.getCourseId(), offering.getCourse().getId());
+            assertEquals(offering.getInstructorId(), offering.getInstructor().getId());
+            assertSame(offering.getCourse(), mDBHelper.getCourse(offering.getCourseId()));
+        }
+        assertEquals(courseIds.size(), mDBHelper.getCourseCache().missCount());
+    }
+
+    @Test
+    public void searchRanksMatchesAndFollowsWrites()
+    {
+        mDBHelper.addCourse(new Course("CS", "A273", "Mobile Application Development"));
+        mDBHelper.addCourse(new Course("CS", "A170", "Java Programming 1"));
+        mDBHelper.addInstructor(new Instructor("Paulding", "Michael", "mpaulding@occ.cccd.edu"));
+        mDBHelper.addInstructor(new Instructor("Mobley", "Pat", "pmobley@occ.cccd.edu"));
+        Course mobile = mDBHelper.getCourse(1);
+        mDBHelper.addOffering(new Offering(36018, 201731, mobile, mDBHelper.getInstructor(1)));
+        Offering java = new Offering(36019, 201731, mDBHelper.getCourse(2),
+                mDBHelper.getInstructor(2));
+        mDBHelper.addOffering(java);
+
+        // A title match ranks above an instructor name match
+        List<Offering> results = mDBHelper.searchOfferings("mob", 10);
+        assertEquals(2, results.size());
+        assertEquals(36018, results.get(0).getCRN());
+        assertEquals(36019, results.get(1).getCRN());
+
+        assertEquals(1, mDBHelper.searchOfferings("csa27", 10).size());
+        assertEquals(1, mDBHelper.searchOfferings("CS A2 paul", 10).size());
+        assertEquals(1, mDBHelper.searchOfferings("mob", 1).size());
+        assertTrue(mDBHelper.searchOfferings(" \"*- ", 10).isEmpty());
+
+        mobile.setTitle("Android Development");
+        mDBHelper.updateCourse(mobile);
+        results = mDBHelper.searchOfferings("mob", 10);
+        assertEquals(1, results.size());
+        assertEquals(36019, results.get(0).getCRN());
+
+        mDBHelper.deleteOffering(java);
+        assertTrue(mDBHelper.searchOfferings("mob", 10).isEmpty());
+    }
+
+    @Test
+    public void catalogMatchesDatabase()
+    {
+        mDBHelper.importAssetsIfChanged("courses.csv", "instructors.csv", "offerings.csv");
+        List<Offering> offerings = mDBHelper.getAllOfferings();
+        Catalog catalog = mDBHelper.loadCatalog();
+
+        int[] all = catalog.findOfferings(null, Catalog.ANY_ID, Catalog.ANY_ID,
+                Catalog.ANY_SEMESTER);
+        assertEquals(toSortedStrings(offerings), toSortedStrings(catalog.getOfferings(all)));
+
+        // Every combination of filters matches the same offerings as filtering the list
+        Offering sample = offerings.get(offerings.size() / 2);
+        String alpha = sample.getCourse().getAlpha();
+        long courseId = sample.getCourse().getId();
+        long instructorId = sample.getInstructor().getId();
+        int semesterCode = sample.getSemesterCode();
+        for (int mask = 0; mask < 16; mask++)
+        {
+            List<Offering> expected = new ArrayList<>();
+            for (Offering offering : offerings)
+                if (((mask & 1) == 0 || alpha.equals(offering.getCourse().getAlpha()))
+                        && ((mask & 2) == 0 || offering.getCourse().getId() == courseId)
+                        && ((mask & 4) == 0 || offering.getInstructor().getId() == instructorId)
+                        && ((mask & 8) == 0 || offering.getSemesterCode() == semesterCode))
+                    expected.add(offering);
+
+            int[] found = catalog.findOfferings((mask & 1) == 0 ? null : alpha,
+                    (mask & 2) == 0 ? Catalog.ANY_ID : courseId,
+                    (mask & 4) == 0 ? Catalog.ANY_ID : instructorId,
+                    (mask & 8) == 0 ? Catalog.ANY_SEMESTER : semesterCode);
+            assertEquals(toSortedStrings(expected), toSortedStrings(catalog.getOfferings(found)));
+        }
+        assertEquals(0, catalog.findOfferings("XYZ", Catalog.ANY_ID, Catalog.ANY_ID,
+                Catalog.ANY_SEMESTER).length);
+    }
+
+    @Test
+    public void semesterQueriesAndPruning()
+    {
+        assertEquals(-1, mDBHelper.getCurrentSemesterCode());
+        mDBHelper.addCourse(new Course("CS", "A170", "Java Programming 1"));
+        mDBHelper.addInstructor(new Instructor("Paulding", "Michael", "mpaulding@occ.cccd.edu"));
+        Course course = mDBHelper.getCourse(1);
+        Instructor instructor = mDBHelper.getInstructor(1);
+        int[][] offerings = {{36018, 201731}, {36019, 201731}, {31000, 201633}, {32000, 201811},
+                {32001, 201811}, {30001, 201811}};
+        for (int[] offering : offerings)
+            mDBHelper.addOffering(new Offering(offering[0], offering[1], course, instructor));
+
+        assertArrayEquals(new int[]{201633, 201731, 201811}, mDBHelper.getSemesterCodes());
+        assertEquals(201811, mDBHelper.getCurrentSemesterCode());
+        mDBHelper.setCurrentSemesterCode(201731);
+        assertEquals(201731, mDBHelper.getCurrentSemesterCode());
+        mDBHelper.setCurrentSemesterCode(-1);
+        assertEquals(201811, mDBHelper.getCurrentSemesterCode());
+
+        List<Offering> semester = mDBHelper.getOfferingsForSemester(201811);
+        assertEquals(3, semester.size());
+        assertEquals(30001, semester.get(0).getCRN());
+        assertEquals(32001, semester.get(2).getCRN());
+        List<Offering> page = mDBHelper.getSemesterOfferingsPage(201811, 30001, 1);
+        assertEquals(1, page.size());
+        assertEquals(32000, page.get(0).getCRN());
+
+        assertEquals(3, mDBHelper.pruneSemestersBefore(201811));
+        assertArrayEquals(new int[]{201811}, mDBHelper.getSemesterCodes());
+        assertEquals(3, mDBHelper.searchOfferings("java", 10).size());
+    }
+
+    @Test
+    public void deltaImportWritesOnlyChanges()
+    {
+        mDBHelper.bulkImportCoursesFromCSV(new StringReader("1,CS,A170,Java Programming 1\n"
+                + "2,CS,A272,Java Programming 2\n"));
+        mDBHelper.bulkImportInstructorsFromCSV(new StringReader(
+                "1,Paulding,Michael,mpaulding@occ.cccd.edu\n"
+                        + "2,Gilbert,Stephen,sgilbert@occ.cccd.edu\n"));
+        mDBHelper.bulkImportOfferingsFromCSV(new StringReader("36018,201731,1,1\n"
+                + "36019,201731,2,2\n36020,201731,1,2\n36018,201633,1,1\n"));
+
+        ImportStats stats = mDBHelper.deltaImportOfferingsFromCSV(new StringReader(
+                "36018,201731,1,1\n36019,201731,2,1\n36021,201731,2,2\n36022,201731,3,1\n"
+                        + "36018,201633,1,1\n"));
+        assertNotNull(stats);
+        assertEquals(1, stats.getRowsInserted());
+        assertEquals(1, stats.getRowsUpdated());
+        assertEquals(2, stats.getRowsUnchanged());
+        assertEquals(1, stats.getRowsDeleted());
+        assertEquals(1, stats.getRowsRejected());
+        assertEquals(4, stats.getRowsImported());
+
+        List<String> expected = new ArrayList<>();
+        for (int[] row : new int[][]{{36018, 201731, 1, 1}, {36019, 201731, 2, 1},
+                {36021, 201731, 2, 2}, {36018, 201633, 1, 1}})
+            expected.add(new Offering(row[0], row[1], mDBHelper.getCourse(row[2]),
+                    mDBHelper.getInstructor(row[3])).toString());
+        Collections.sort(expected);
+        assertEquals(expected, toSortedStrings(mDBHelper.getAllOfferings()));
+
+        // The search index follows the delta
+        assertEquals(1, mDBHelper.searchOfferings("gilbert", 10).size());
+        assertEquals(3, mDBHelper.searchOfferings("paulding", 10).size());
+    }
+
+    @Test
+    public void batchWritesReturnPerRowResultsAndRollBack()
+    {
+        long[] ids = mDBHelper.addCourses(Arrays.asList(
+                new Course("CS", "A170", "Java Programming 1"),
+                new Course("CS", "A272", "Java Programming 2")));
+        assertArrayEquals(new long[]{1, 2}, ids);
+        mDBHelper.addInstructors(Collections.singletonList(
+                new Instructor("Paulding", "Michael", "mpaulding@occ.cccd.edu")));
+        Course java1 = mDBHelper.getCourse(1);
+        Instructor instructor = mDBHelper.getInstructor(1);
+
+        java1.setTitle("Java 1");
+        assertArrayEquals(new int[]{1, 0}, mDBHelper.updateCourses(Arrays.asList(java1,
+                new Course(99, "CS", "A999", "Missing"))));
+        assertEquals("Java 1", mDBHelper.getCourse(1).getTitle());
+
+        mDBHelper.addOfferings(Arrays.asList(new Offering(36018, 201731, java1, instructor),
+                new Offering(36019, 201731, java1, instructor)));
+        try
+        {
+            // The duplicate CRN fails the batch, so 36020 must not be added either
+            mDBHelper.addOfferings(Arrays.asList(new Offering(36020, 201731, java1, instructor),
+                    new Offering(36018, 201731, java1, instructor)));
+            fail("Expected the duplicate offering to fail");
+        } catch (SQLException e)
+        {
+            assertEquals(2, mDBHelper.getAllOfferings().size());
+        }
+        assertEquals(2, mDBHelper.searchOfferings("java", 10).size());
+
+        assertArrayEquals(new int[]{1, 0}, mDBHelper.deleteOfferings(Arrays.asList(
+                new Offering(36018, 201731, java1, instructor),
+                new Offering(36020, 201731, java1, instructor))));
+        assertEquals(1, mDBHelper.searchOfferings("java", 10).size());
+        assertArrayEquals(new int[]{1}, mDBHelper.deleteInstructors(
+                Collections.singletonList(instructor)));
+        assertNull(mDBHelper.getInstructor(1));
+    }
+
+    @Test
+    public void offeringCountsFollowEveryWrite()
+    {
+        SQLiteDatabase database = mDBHelper.getReadableDatabase();
+        mDBHelper.bulkImportCoursesFromCSV(new StringReader("1,CS,A170,Java Programming 1\n"
+                + "2,CS,A272,Java Programming 2\n"));
+        mDBHelper.bulkImportInstructorsFromCSV(new StringReader(
+                "1,Paulding,Michael,mpaulding@occ.cccd.edu\n"
+                        + "2,Gilbert,Stephen,sgilbert@occ.cccd.edu\n"));
+        mDBHelper.bulkImportOfferingsFromCSV(new StringReader("36018,201731,1,1\n"
+                + "36019,201731,1,2\n36020,201731,2,2\n36018,201633,1,1\n"));
+        assertOfferingCountsConsistent(database);
+        assertEquals(2, mDBHelper.getCourseOfferingCount(1, 201731));
+        assertEquals(1, mDBHelper.getCourseOfferingCount(1, 201633));
+        assertEquals(0, mDBHelper.getCourseOfferingCount(2, 201633));
+        assertEquals(2, mDBHelper.getInstructorOfferingCount(2, 201731));
+        LongSparseArray<Integer> counts = mDBHelper.getCourseOfferingCounts(201731);
+        assertEquals(2, counts.size());
+        assertEquals(Integer.valueOf(2), counts.get(1));
+        assertEquals(Integer.valueOf(1), counts.get(2));
+
+        Course java1 = mDBHelper.getCourse(1);
+        Course java2 = mDBHelper.getCourse(2);
+        Instructor paulding = mDBHelper.getInstructor(1);
+        mDBHelper.addOffering(new Offering(36021, 201731, java2, paulding));
+        // 36021 is taken, so nothing is added or counted
+        mDBHelper.addOffering(new Offering(36021, 201731, java1, paulding));
+        mDBHelper.updateOffering(new Offering(36019, 201731, java2, paulding));
+        mDBHelper.deleteOffering(new Offering(36020, 201731, java2, paulding));
+        assertOfferingCountsConsistent(database);
+        assertEquals(1, mDBHelper.getCourseOfferingCount(1, 201731));
+        assertEquals(2, mDBHelper.getCourseOfferingCount(2, 201731));
+        assertEquals(0, mDBHelper.getInstructorOfferingCount(2, 201731));
+        assertNull(mDBHelper.getInstructorOfferingCounts(201731).get(2));
+
+        mDBHelper.addOfferings(Arrays.asList(new Offering(36030, 201733, java1, paulding),
+                new Offering(36031, 201733, java2, paulding)));
+        mDBHelper.updateOfferings(Collections.singletonList(
+                new Offering(36030, 201733, java2, paulding)));
+        mDBHelper.deleteOfferings(Collections.singletonList(
+                new Offering(36031, 201733, java2, paulding)));
+        assertOfferingCountsConsistent(database);
+        assertEquals(1, mDBHelper.getCourseOfferingCount(2, 201733));
+
+        mDBHelper.deltaImportOfferingsFromCSV(new StringReader("36018,201731,2,2\n"
+                + "36019,201731,2,1\n36040,201733,1,2\n"));
+        assertOfferingCountsConsistent(database);
+        assertEquals(0, mDBHelper.getCourseOfferingCount(1, 201731));
+        assertEquals(2, mDBHelper.getCourseOfferingCount(2, 201731));
+        assertEquals(1, mDBHelper.getCourseOfferingCount(1, 201733));
+
+        // Replaced rows are uncounted before their replacements are counted
+        mDBHelper.bulkImportOfferingsFromCSV(new StringReader("36018,201731,1,1\n"
+                + "36050,201731,1,1\n"), SQLiteDatabase.CONFLICT_REPLACE);
+        assertOfferingCountsConsistent(database);
+        assertEquals(2, mDBHelper.getCourseOfferingCount(1, 201731));
+        // 36061 replaces itself within one batch, before the batch is counted
+        mDBHelper.pipelinedImportFromCSV(new StringReader(""), new StringReader(""),
+                new StringReader("36019,201731,1,2\n36060,201811,2,2\n"
+                        + "36061,201731,1,1\n36061,201731,1,1\n"),
+                SQLiteDatabase.CONFLICT_REPLACE);
+        assertOfferingCountsConsistent(database);
+        assertEquals(4, mDBHelper.getCourseOfferingCount(1, 201731));
+        assertEquals(1, mDBHelper.getInstructorOfferingCount(2, 201811));
+
+        mDBHelper.pruneSemestersBefore(201733);
+        assertOfferingCountsConsistent(database);
+        assertEquals(0, mDBHelper.getCourseOfferingCounts(201731).size());
+        mDBHelper.deleteAllOfferings();
+        assertOfferingCountsConsistent(database);
+        assertEquals(0, mDBHelper.getInstructorOfferingCounts(201811).size());
+    }
+
+    @Test
+    public void singleRowWritesReuseCompiledStatements()
+    {
+        StatementCache statements = mDBHelper.getStatementCache();
+        mDBHelper.addCourse(new Course("CS", "A170", "Java Programming 1"));
+        mDBHelper.addInstructor(new Instructor("Paulding", "Michael", "mpaulding@occ.cccd.edu"));
+        Course java1 = mDBHelper.getCourse(1);
+        Instructor paulding = mDBHelper.getInstructor(1);
+        mDBHelper.addOffering(new Offering(36018, 201731, java1, paulding));
+        int compiles = statements.compileCount();
+
+        mDBHelper.addCourse(new Course("CS", "A272", "Java Programming 2"));
+        mDBHelper.addCourse(new Course(1, "CS", "A273", "Taken ID"));
+        mDBHelper.addInstructor(new Instructor("Gilbert", "Stephen", "sgilbert@occ.cccd.edu"));
+        for (int crn = 36019; crn < 36029; crn++)
+            mDBHelper.addOffering(new Offering(crn, 201731, java1, paulding));
+        assertEquals(compiles, statements.compileCount());
+
+        // Rebound statements must not carry over the previous call's arguments
+        assertEquals("Java Programming 1", mDBHelper.getCourse(1).getTitle());
+        assertEquals("A272", mDBHelper.getCourse(2).getNumber());
+        assertEquals("Stephen", mDBHelper.getInstructor(2).getFirstName());
+        assertEquals(11, mDBHelper.getCourseOfferingCount(1, 201731));
+        assertEquals(11, mDBHelper.searchOfferings("paulding", 20).size());
+        assertOfferingCountsConsistent(mDBHelper.getReadableDatabase());
+
+        Course java2 = mDBHelper.getCourse(2);
+        java2.setTitle("Java 2");
+        mDBHelper.updateCourse(java2);
+        mDBHelper.updateOffering(new Offering(36019, 201731, java2, paulding));
+        mDBHelper.deleteOffering(new Offering(36020, 201731, java1, paulding));
+        mDBHelper.deleteInstructor(mDBHelper.getInstructor(2));
+        assertEquals("Java 2", mDBHelper.getOffering(36019).getCourse().getTitle());
+        assertNull(mDBHelper.getOffering(36020));
+        assertNull(mDBHelper.getInstructor(2));
+        assertEquals(9, mDBHelper.getCourseOfferingCount(1, 201731));
+        assertEquals(1, mDBHelper.getCourseOfferingCount(2, 201731));
+        assertEquals(10, mDBHelper.searchOfferings("paulding", 20).size());
+        assertOfferingCountsConsistent(mDBHelper.getReadableDatabase());
+
+        // Reopening the database compiles the statements again for the new connection
+        compiles = statements.compileCount();
+        mDBHelper.close();
+        mDBHelper.addCourse(new Course("CS", "A180", "Java Programming 3"));
+        assertEquals(compiles + 1, statements.compileCount());
+        assertEquals("A180", mDBHelper.getCourse(3).getNumber());
+    }
+
+    @Test
+    public void meteredHelperRecordsEveryOperation() throws IOException
+    {
+        mDBHelper.close();
+        MetricsRecorder metrics = new MetricsRecorder();
+        mDBHelper = new MeteredDBHelper(mContext, metrics);
+        ImportStats stats = mDBHelper.bulkImportCoursesFromCSV("courses.csv");
+        for (int i = 0; i < 3; i++)
+            mDBHelper.getAllCourses();
+        metrics.setEnabled(false);
+        mDBHelper.getAllCourses();
+
+        MetricsRecorder.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getConnectionOpens());
+        MetricsRecorder.OperationStats imports =
+                snapshot.getOperation("bulkImportCoursesFromCSV");
+        assertEquals(1, imports.getCount());
+        assertEquals(stats.getRowsImported(), imports.getRowsWritten());
+        MetricsRecorder.OperationStats reads = snapshot.getOperation("getAllCourses");
+        assertEquals(3, reads.getCount());
+        assertEquals(3L * stats.getRowsImported(), reads.getRowsRead());
+        assertTrue(reads.getP50Nanos() <= reads.getP99Nanos());
+        assertTrue(reads.getP99Nanos() <= reads.getMaxNanos());
+
+        File file = new File(mContext.getFilesDir(), "db-metrics-test.txt");
+        metrics.dump(file);
+        assertTrue(file.length() > 0);
+        assertTrue(file.delete());
+    }
+
+    /**
+     * Converts objects to their string representations, in sorted order.
+     *
+     * @param objects The objects.
+     * @return The sorted string representations.
+     */
+    private static List<String> toSortedStrings(List<?> objects)
+    {
+        List<String> strings = new ArrayList<>();
+        for (Object object : objects)
+            strings.add(object.toString());
+        Collections.sort(strings);
+        return strings;
+    }
+
+    /**
+     * Recounts the <code>Offering</code>s per course and per instructor in each semester from
+     * scratch, and asserts that the incrementally maintained count tables hold the same counts.
+     *
+     * @param database The database to check.
+     */
+    private static void assertOfferingCountsConsistent(SQLiteDatabase database)
+    {
+        for (String[] table : new String[][]{{DBHelper.COURSE_COUNTS_TABLE, "course_id"},
+                {DBHelper.INSTRUCTOR_COUNTS_TABLE, "instructor_id"}})
+            assertEquals(table[0],
+                    readRows(database, "SELECT semester_code, IFNULL(" + table[1] + ", -1),"
+                            + " COUNT(*) FROM Offerings GROUP BY 1, 2 ORDER BY 1, 2"),
+                    readRows(database, "SELECT semester_code, " + table[1] + ", offerings"
+                            + " FROM " + table[0] + " ORDER BY 1, 2"));
+    }
+
+    /**
+     * Reads the rows of a query, each as its columns joined by commas.
+     *
+     * @param database The database.
+     * @param query    The query.
+     * @return The rows, in query order.
+     */
+    private static List<String> readRows(SQLiteDatabase database, String query)
+    {
+        List<String> rows = new ArrayList<>();
+        Cursor cursor = database.rawQuery(query, null);
+        while (cursor.moveToNext())
+        {
+            StringBuilder row = new StringBuilder();
+            for (int column = 0; column < cursor.getColumnCount(); column++)
+                row.append(column == 0 ? "" : ",").append(cursor.getString(column));
+            rows.add(row.toString());
+        }
+        cursor.close();
+        return rows;
+    }
+
+    /**
+     * Asserts that every step of a query's plan searches an index rather than scanning a table.
+     *
+     * @param query The query to explain.
+     * @param args  The arguments of the query.
+     */
+    private void assertUsesIndex(String query, String... args)
+    {
+        Cursor cursor = mDBHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + query,
+                args);
+        assertTrue(cursor.moveToFirst());
+        do
+        {
+            String detail = cursor.getString(cursor.getColumnIndexOrThrow("detail"));
+            assertTrue(detail, detail.startsWith("SEARCH") && detail.contains("INDEX"));
+        } while (cursor.moveToNext());
+        cursor.close();
+    }
+}
@@ -0,0 +1,34 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the <code>CatalogRepositoryContract</code> against <code>DBHelper</code>, which will
+ * execute on an Android device.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteCatalogRepositoryTest extends CatalogRepositoryContract
+{
+    private Context mContext;
+
+    @Override
+    protected CatalogRepository newRepository()
+    {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+        return new DBHelper(mContext);
+    }
+
+    @Override
+    protected void afterClose()
+    {
+        mContext.deleteDatabase(DBHelper.DATABASE_NAME);
+    }
+}
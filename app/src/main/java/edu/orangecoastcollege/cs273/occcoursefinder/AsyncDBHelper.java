@@ -0,0 +1,447 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs <code>CatalogRepository</code> operations off the main thread and delivers their results
+ * back to the main thread through callbacks. Writes (imports) run one at a time on a single
+ * writer thread; reads run in parallel on a small pool of reader threads. Reads are not ordered
+ * after writes, so a caller that needs imported data should issue its reads from the import's
+ * callback.
+ * <p>
+ * Pages and search results of <code>Offering</code>s are meant to be displayed, so their
+ * <code>Course</code>s and <code>Instructor</code>s are loaded on the reader thread before the
+ * callback runs. The list from <code>getAllOfferings</code> holds only their IDs, and loads them
+ * on first access.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class AsyncDBHelper
+{
+    private static final String TAG = "OCC Course Finder";
+    private static final int READER_THREADS = 2;
+
+    /**
+     * Receives the result of an asynchronous <code>CatalogRepository</code> operation, or the
+     * exception it failed with, on the main thread. Exactly one of the two is called, unless the
+     * <code>AsyncDBHelper</code> is closed first.
+     *
+     * @param <T> The type of the result.
+     */
+    abstract static class Callback<T>
+    {
+        /**
+         * Called on the main thread with the result of the operation.
+         *
+         * @param result The result of the operation.
+         */
+        abstract void onResult(T result);
+
+        /**
+         * Called on the main thread if the operation threw. The exception has already been
+         * logged; override this to show the failure.
+         *
+         * @param e The exception the operation threw.
+         */
+        void onError(Exception e)
+        {
+        }
+    }
+
+    private final CatalogRepository mRepository;
+    private final ThreadPoolExecutor mWriteExecutor;
+    private final ExecutorService mReadExecutor;
+    private final Handler mMainHandler;
+    private volatile boolean mClosed;
+
+    /**
+     * Instantiates a new <code>AsyncDBHelper</code> that takes ownership of the given
+     * <code>CatalogRepository</code>.
+     *
+     * @param repository The <code>CatalogRepository</code> to run operations on.
+     */
+    AsyncDBHelper(CatalogRepository repository)
+    {
+        mRepository = repository;
+        mWriteExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        mReadExecutor = Executors.newFixedThreadPool(READER_THREADS);
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Imports the bundled CSVs on the writer thread if they changed since the last import.
+     *
+     * @param coursesCSV     The name of the courses CSV file.
+     * @param instructorsCSV The name of the instructors CSV file.
+     * @param offeringsCSV   The name of the offerings CSV file.
+     * @param callback       Receives true if the CSVs were imported.
+     * @see CatalogRepository#importAssetsIfChanged(String, String, String)
+     */
+    void importAssetsIfChanged(final String coursesCSV, final String instructorsCSV,
+                               final String offeringsCSV, Callback<Boolean> callback)
+    {
+        submit(mWriteExecutor, new Callable<Boolean>()
+        {
+            @Override
+            public Boolean call()
+            {
+                return mRepository.importAssetsIfChanged(coursesCSV, instructorsCSV, offeringsCSV);
+            }
+        }, callback);
+    }
+
+    /**
+     * Installs the prebuilt database on the writer thread if the current database is not up to
+     * date with the bundled CSVs. A repository other than <code>DBHelper</code> has no prebuilt
+     * database, so it imports the CSVs instead, if they changed.
+     *
+     * @param databaseAsset  The name of the prebuilt database asset.
+     * @param coursesCSV     The name of the courses CSV file.
+     * @param instructorsCSV The name of the instructors CSV file.
+     * @param offeringsCSV   The name of the offerings CSV file.
+     * @param callback       Receives true if the database was replaced or re-imported.
+     * @see DBHelper#installPrebuiltDatabase(String, String, String, String)
+     */
+    void installPrebuiltDatabase(final String databaseAsset, final String coursesCSV,
+                                 final String instructorsCSV, final String offeringsCSV,
+                                 Callback<Boolean> callback)
+    {
+        submit(mWriteExecutor, new Callable<Boolean>()
+        {
+            @Override
+            public Boolean call()
+            {
+                if (!(mRepository instanceof DBHelper))
+                    return mRepository.importAssetsIfChanged(coursesCSV, instructorsCSV,
+                            offeringsCSV);
+                return ((DBHelper) mRepository).installPrebuiltDatabase(databaseAsset,
+                        coursesCSV, instructorsCSV, offeringsCSV);
+            }
+        }, callback);
+    }
+
+    /**
+     * Applies the differences between an offerings CSV and the Offerings table on the writer
+     * thread.
+     *
+     * @param offeringsCSV The name of the offerings CSV file.
+     * @param callback     Receives the <code>ImportStats</code> of the import, or null if the
+     *                     file could not be read.
+     * @throws UnsupportedOperationException If the repository is not a <code>DBHelper</code>.
+     * @see DBHelper#deltaImportOfferingsFromCSV(String)
+     */
+    void deltaImportOfferingsFromCSV(final String offeringsCSV, Callback<ImportStats> callback)
+    {
+        final DBHelper dbHelper = getDBHelper();
+        submit(mWriteExecutor, new Callable<ImportStats>()
+        {
+            @Override
+            public ImportStats call()
+            {
+                return dbHelper.deltaImportOfferingsFromCSV(offeringsCSV);
+            }
+        }, callback);
+    }
+
+    /**
+     * Loads an in-memory <code>Catalog</code> snapshot on the writer thread, so it is taken after
+     * every import submitted before it.
+     *
+     * @param callback Receives the <code>Catalog</code>.
+     * @throws UnsupportedOperationException If the repository is not a <code>DBHelper</code>.
+     * @see DBHelper#loadCatalog()
+     */
+    void loadCatalog(Callback<Catalog> callback)
+    {
+        final DBHelper dbHelper = getDBHelper();
+        submit(mWriteExecutor, new Callable<Catalog>()
+        {
+            @Override
+            public Catalog call()
+            {
+                return dbHelper.loadCatalog();
+            }
+        }, callback);
+    }
+
+    /**
+     * Opens the binary catalog snapshot on a reader thread. It does not touch the database, so it
+     * is not held up by an import running on the writer thread. Its checksum is checked on the
+     * reader thread too, so the UI thread is only handed a snapshot that is intact.
+     *
+     * @param callback Receives the <code>CatalogSnapshot</code>, or null if there is no valid one
+     *                 or the repository is not a <code>DBHelper</code>.
+     * @see DBHelper#openCatalogSnapshot()
+     */
+    void openCatalogSnapshot(Callback<CatalogSnapshot> callback)
+    {
+        submit(mReadExecutor, new Callable<CatalogSnapshot>()
+        {
+            @Override
+            public CatalogSnapshot call()
+            {
+                if (!(mRepository instanceof DBHelper)) return null;
+                return ((DBHelper) mRepository).openCatalogSnapshot();
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets all the <code>Course</code>s in the database on a reader thread.
+     *
+     * @param callback Receives the list of all <code>Course</code>s.
+     */
+    void getAllCourses(Callback<List<Course>> callback)
+    {
+        submit(mReadExecutor, new Callable<List<Course>>()
+        {
+            @Override
+            public List<Course> call()
+            {
+                return mRepository.getAllCourses();
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets all the <code>Instructor</code>s in the database on a reader thread.
+     *
+     * @param callback Receives the list of all <code>Instructor</code>s.
+     */
+    void getAllInstructors(Callback<List<Instructor>> callback)
+    {
+        submit(mReadExecutor, new Callable<List<Instructor>>()
+        {
+            @Override
+            public List<Instructor> call()
+            {
+                return mRepository.getAllInstructors();
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets all the <code>Offering</code>s in the database on a reader thread.
+     *
+     * @param callback Receives the list of all <code>Offering</code>s.
+     */
+    void getAllOfferings(Callback<List<Offering>> callback)
+    {
+        submit(mReadExecutor, new Callable<List<Offering>>()
+        {
+            @Override
+            public List<Offering> call()
+            {
+                return mRepository.getAllOfferings();
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets one page of <code>Offering</code>s on a reader thread.
+     *
+     * @param afterCRN          The CRN of the last <code>Offering</code> of the previous page, or
+     *                          -1 for the first page.
+     * @param afterSemesterCode The semester code of the last <code>Offering</code> of the previous
+     *                          page, or -1 for the first page.
+     * @param pageSize          The maximum number of <code>Offering</code>s to get.
+     * @param callback          Receives the page of <code>Offering</code>s.
+     * @see CatalogRepository#getOfferingsPage(int, int, int)
+     */
+    void getOfferingsPage(final int afterCRN, final int afterSemesterCode, final int pageSize,
+                          Callback<List<Offering>> callback)
+    {
+        submit(mReadExecutor, new Callable<List<Offering>>()
+        {
+            @Override
+            public List<Offering> call()
+            {
+                return loadParents(mRepository.getOfferingsPage(afterCRN, afterSemesterCode,
+                        pageSize));
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets the semester to show by default on a reader thread.
+     *
+     * @param callback Receives the current semester code, or -1 if there are no
+     *                 <code>Offering</code>s.
+     * @see CatalogRepository#getCurrentSemesterCode()
+     */
+    void getCurrentSemesterCode(Callback<Integer> callback)
+    {
+        submit(mReadExecutor, new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+            {
+                return mRepository.getCurrentSemesterCode();
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets one page of a semester's <code>Offering</code>s on a reader thread.
+     *
+     * @param semesterCode The semester code.
+     * @param afterCRN     The CRN of the last <code>Offering</code> of the previous page, or -1
+     *                     for the first page.
+     * @param pageSize     The maximum number of <code>Offering</code>s to get.
+     * @param callback     Receives the page of <code>Offering</code>s.
+     * @see CatalogRepository#getSemesterOfferingsPage(int, int, int)
+     */
+    void getSemesterOfferingsPage(final int semesterCode, final int afterCRN, final int pageSize,
+                                  Callback<List<Offering>> callback)
+    {
+        submit(mReadExecutor, new Callable<List<Offering>>()
+        {
+            @Override
+            public List<Offering> call()
+            {
+                return loadParents(mRepository.getSemesterOfferingsPage(semesterCode, afterCRN,
+                        pageSize));
+            }
+        }, callback);
+    }
+
+    /**
+     * Searches the <code>Offering</code>s on a reader thread.
+     *
+     * @param query    The search query.
+     * @param limit    The maximum number of <code>Offering</code>s to get.
+     * @param callback Receives the best matching <code>Offering</code>s, best first.
+     * @see CatalogRepository#searchOfferings(String, int)
+     */
+    void searchOfferings(final String query, final int limit, Callback<List<Offering>> callback)
+    {
+        submit(mReadExecutor, new Callable<List<Offering>>()
+        {
+            @Override
+            public List<Offering> call()
+            {
+                return loadParents(mRepository.searchOfferings(query, limit));
+            }
+        }, callback);
+    }
+
+    /**
+     * Gets the repository as a <code>DBHelper</code>, for the operations only SQLite supports.
+     *
+     * @return The <code>DBHelper</code>.
+     * @throws UnsupportedOperationException If the repository is not a <code>DBHelper</code>.
+     */
+    private DBHelper getDBHelper()
+    {
+        if (!(mRepository instanceof DBHelper))
+            throw new UnsupportedOperationException("Only the SQLite repository supports this");
+        return (DBHelper) mRepository;
+    }
+
+    /**
+     * Loads the <code>Course</code> and <code>Instructor</code> of every <code>Offering</code> in
+     * a list, so the main thread never reads them from the database.
+     *
+     * @param offerings The <code>Offering</code>s.
+     * @return The same list.
+     */
+    private static List<Offering> loadParents(List<Offering> offerings)
+    {
+        for (Offering offering : offerings)
+            offering.getCourse();
+        return offerings;
+    }
+
+    /**
+     * Runs an operation on an executor and posts its result, or the exception it threw, to the
+     * main thread, unless this <code>AsyncDBHelper</code> has been closed in the meantime.
+     *
+     * @param executor  The executor to run the operation on.
+     * @param operation The operation.
+     * @param callback  Receives the result of the operation, or its exception.
+     * @param <T>       The type of the result.
+     */
+    private <T> void submit(ExecutorService executor, final Callable<T> operation,
+                            final Callback<T> callback)
+    {
+        if (mClosed) return;
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (mClosed) return;
+
+                final T result;
+                try
+                {
+                    result = operation.call();
+                } catch (final Exception e)
+                {
+                    Log.e(TAG, "Database operation failed", e);
+                    mMainHandler.post(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            if (!mClosed) callback.onError(e);
+                        }
+                    });
+                    return;
+                }
+
+                mMainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (!mClosed) callback.onResult(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels every pending operation, drops any result not yet delivered and closes the
+     * <code>CatalogRepository</code> once the operations already running have finished.
+     */
+    void close()
+    {
+        if (mClosed) return;
+        mClosed = true;
+
+        mMainHandler.removeCallbacksAndMessages(null);
+        mReadExecutor.shutdownNow();
+        mWriteExecutor.getQueue().clear();
+        mWriteExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    mReadExecutor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                mRepository.close();
+            }
+        });
+        mWriteExecutor.shutdown();
+    }
+}
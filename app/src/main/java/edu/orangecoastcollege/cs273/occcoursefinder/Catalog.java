@@ -0,0 +1,439 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.database.Cursor;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>Catalog</code> class is an immutable, in-memory snapshot of the courses, instructors
+ * and offerings in the database, for read-only queries that should not touch SQLite.
+ * <p>
+ * Each row is stored in parallel primitive arrays and identified by its ordinal, its position in
+ * those arrays. Courses and instructors are ordered by ID; offerings are ordered by semester code
+ * then CRN, and refer to their course and instructor by ordinal. Offerings are indexed by
+ * semester, course, instructor and course alpha, so a filter such as "all CS offerings in
+ * semester 201731 taught by instructor 8" walks only the shortest matching index list. Objects
+ * are built only for the offerings a caller asks for.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+final class Catalog
+{
+    /**
+     * Matches any semester in <code>findOfferings</code>.
+     */
+    static final int ANY_SEMESTER = -1;
+    /**
+     * Matches any course or instructor in <code>findOfferings</code>.
+     */
+    static final long ANY_ID = -1;
+
+    private static final int NONE = -1;
+
+    // Courses, by ordinal
+    private final long[] mCourseIds;
+    private final int[] mCourseAlphas;
+    private final String[] mCourseNumbers;
+    private final String[] mCourseTitles;
+
+    // Instructors, by ordinal
+    private final long[] mInstructorIds;
+    private final String[] mInstructorLastNames;
+    private final String[] mInstructorFirstNames;
+    private final String[] mInstructorEmails;
+
+    // Offerings, by ordinal; NONE for a course or instructor that does not exist
+    private final int[] mOfferingCRNs;
+    private final int[] mOfferingSemesterCodes;
+    private final int[] mOfferingCourses;
+    private final int[] mOfferingInstructors;
+
+    // The distinct course alphas, in order; courses refer to them by ordinal
+    private final String[] mAlphas;
+
+    // The distinct semester codes, in order, and where each one's offerings start
+    private final int[] mSemesterCodes;
+    private final int[] mSemesterStarts;
+
+    // The offerings of each course, instructor and alpha, as ordinal lists laid end to end:
+    // those of the one with ordinal n are at [starts[n], starts[n + 1])
+    private final int[] mCourseOfferingStarts;
+    private final int[] mCourseOfferings;
+    private final int[] mInstructorOfferingStarts;
+    private final int[] mInstructorOfferings;
+    private final int[] mAlphaOfferingStarts;
+    private final int[] mAlphaOfferings;
+
+    /**
+     * Instantiates a new <code>Catalog</code> from cursors over the database tables. The cursors
+     * are read to the end and closed.
+     *
+     * @param courses     The <code>Course</code>s, as ID, alpha, number and title, by ID.
+     * @param instructors The <code>Instructor</code>s, as ID, last name, first name and email,
+     *                    by ID.
+     * @param offerings   The <code>Offering</code>s, as CRN, semester code, course ID and
+     *                    instructor ID, by semester code then CRN.
+     */
+    Catalog(Cursor courses, Cursor instructors, Cursor offerings)
+    {
+        int courseCount = courses.getCount();
+        mCourseIds = new long[courseCount];
+        mCourseAlphas = new int[courseCount];
+        mCourseNumbers = new String[courseCount];
+        mCourseTitles = new String[courseCount];
+        // Alphas repeat across many courses, so each distinct one is stored once
+        Map<String, Integer> alphaOrdinals = new HashMap<>();
+        List<String> alphas = new ArrayList<>();
+        for (int i = 0; courses.moveToNext(); i++)
+        {
+            mCourseIds[i] = courses.getLong(0);
+            String alpha = courses.getString(1);
+            Integer alphaOrdinal = alphaOrdinals.get(alpha);
+            if (alphaOrdinal == null)
+            {
+                alphaOrdinal = alphas.size();
+                alphaOrdinals.put(alpha, alphaOrdinal);
+                alphas.add(alpha);
+            }
+            mCourseAlphas[i] = alphaOrdinal;
+            mCourseNumbers[i] = courses.getString(2);
+            mCourseTitles[i] = courses.getString(3);
+        }
+        courses.close();
+        mAlphas = alphas.toArray(new String[alphas.size()]);
+
+        int instructorCount = instructors.getCount();
+        mInstructorIds = new long[instructorCount];
+        mInstructorLastNames = new String[instructorCount];
+        mInstructorFirstNames = new String[instructorCount];
+        mInstructorEmails = new String[instructorCount];
+        for (int i = 0; instructors.moveToNext(); i++)
+        {
+            mInstructorIds[i] = instructors.getLong(0);
+            mInstructorLastNames[i] = instructors.getString(1);
+            mInstructorFirstNames[i] = instructors.getString(2);
+            mInstructorEmails[i] = instructors.getString(3);
+        }
+        instructors.close();
+
+        int offeringCount = offerings.getCount();
+        mOfferingCRNs = new int[offeringCount];
+        mOfferingSemesterCodes = new int[offeringCount];
+        mOfferingCourses = new int[offeringCount];
+        mOfferingInstructors = new int[offeringCount];
+        int semesterCount = 0;
+        for (int i = 0; offerings.moveToNext(); i++)
+        {
+            mOfferingCRNs[i] = offerings.getInt(0);
+            mOfferingSemesterCodes[i] = offerings.getInt(1);
+            mOfferingCourses[i] = offerings.isNull(2)
+                    ? NONE : ordinalOf(mCourseIds, offerings.getLong(2));
+            mOfferingInstructors[i] = offerings.isNull(3)
+                    ? NONE : ordinalOf(mInstructorIds, offerings.getLong(3));
+            if (i == 0 || mOfferingSemesterCodes[i] != mOfferingSemesterCodes[i - 1])
+                semesterCount++;
+        }
+        offerings.close();
+
+        mSemesterCodes = new int[semesterCount];
+        mSemesterStarts = new int[semesterCount + 1];
+        for (int i = 0, semester = 0; i < offeringCount; i++)
+        {
+            if (i == 0 || mOfferingSemesterCodes[i] != mOfferingSemesterCodes[i - 1])
+            {
+                mSemesterCodes[semester] = mOfferingSemesterCodes[i];
+                mSemesterStarts[semester++] = i;
+            }
+        }
+        mSemesterStarts[semesterCount] = offeringCount;
+
+        int[] offeringAlphas = new int[offeringCount];
+        for (int i = 0; i < offeringCount; i++)
+            offeringAlphas[i] = mOfferingCourses[i] == NONE
+                    ? NONE : mCourseAlphas[mOfferingCourses[i]];
+
+        mCourseOfferingStarts = new int[courseCount + 1];
+        mCourseOfferings = groupBy(mOfferingCourses, mCourseOfferingStarts);
+        mInstructorOfferingStarts = new int[instructorCount + 1];
+        mInstructorOfferings = groupBy(mOfferingInstructors, mInstructorOfferingStarts);
+        mAlphaOfferingStarts = new int[mAlphas.length + 1];
+        mAlphaOfferings = groupBy(offeringAlphas, mAlphaOfferingStarts);
+    }
+
+    /**
+     * Finds the offerings matching every given criterion.
+     *
+     * @param alpha        The course alpha, e.g. "CS", or null for any.
+     * @param courseId     The course ID, or <code>ANY_ID</code> for any.
+     * @param instructorId The instructor ID, or <code>ANY_ID</code> for any.
+     * @param semesterCode The semester code, or <code>ANY_SEMESTER</code> for any.
+     * @return The ordinals of the matching offerings, in semester code then CRN order.
+     */
+    int[] findOfferings(String alpha, long courseId, long instructorId, int semesterCode)
+    {
+        int alphaOrdinal = NONE;
+        if (alpha != null)
+        {
+            alphaOrdinal = Arrays.asList(mAlphas).indexOf(alpha);
+            if (alphaOrdinal == NONE) return new int[0];
+        }
+        int course = NONE;
+        if (courseId != ANY_ID)
+        {
+            course = ordinalOf(mCourseIds, courseId);
+            if (course == NONE) return new int[0];
+        }
+        int instructor = NONE;
+        if (instructorId != ANY_ID)
+        {
+            instructor = ordinalOf(mInstructorIds, instructorId);
+            if (instructor == NONE) return new int[0];
+        }
+        int semester = NONE;
+        if (semesterCode != ANY_SEMESTER)
+        {
+            semester = Arrays.binarySearch(mSemesterCodes, semesterCode);
+            if (semester < 0) return new int[0];
+        }
+
+        // Walk the shortest of the index lists that apply, checking the other criteria per row
+        int[] candidates = null;
+        int start = 0;
+        int end = mOfferingCRNs.length;
+        if (semester != NONE)
+        {
+            start = mSemesterStarts[semester];
+            end = mSemesterStarts[semester + 1];
+        }
+        if (course != NONE
+                && mCourseOfferingStarts[course + 1] - mCourseOfferingStarts[course] < end - start)
+        {
+            candidates = mCourseOfferings;
+            start = mCourseOfferingStarts[course];
+            end = mCourseOfferingStarts[course + 1];
+        }
+        if (instructor != NONE && mInstructorOfferingStarts[instructor + 1]
+                - mInstructorOfferingStarts[instructor] < end - start)
+        {
+            candidates = mInstructorOfferings;
+            start = mInstructorOfferingStarts[instructor];
+            end = mInstructorOfferingStarts[instructor + 1];
+        }
+        if (alphaOrdinal != NONE && mAlphaOfferingStarts[alphaOrdinal + 1]
+                - mAlphaOfferingStarts[alphaOrdinal] < end - start)
+        {
+            candidates = mAlphaOfferings;
+            start = mAlphaOfferingStarts[alphaOrdinal];
+            end = mAlphaOfferingStarts[alphaOrdinal + 1];
+        }
+
+        int[] matches = new int[end - start];
+        int count = 0;
+        for (int i = start; i < end; i++)
+        {
+            int offering = candidates == null ? i : candidates[i];
+            int offeringCourse = mOfferingCourses[offering];
+            if ((semester == NONE || mOfferingSemesterCodes[offering] == semesterCode)
+                    && (course == NONE || offeringCourse == course)
+                    && (instructor == NONE || mOfferingInstructors[offering] == instructor)
+                    && (alphaOrdinal == NONE || (offeringCourse != NONE
+                    && mCourseAlphas[offeringCourse] == alphaOrdinal)))
+                matches[count++] = offering;
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Builds the <code>Offering</code>s with the given ordinals. Offerings that share a course or
+     * instructor share one instance of it.
+     *
+     * @param offerings The ordinals of the offerings.
+     * @return The <code>Offering</code>s, in the same order.
+     */
+    List<Offering> getOfferings(int[] offerings)
+    {
+        List<Offering> offeringsList = new ArrayList<>(offerings.length);
+        SparseArray<Course> courses = new SparseArray<>();
+        SparseArray<Instructor> instructors = new SparseArray<>();
+        for (int offering : offerings)
+        {
+            Course course = null;
+            int courseOrdinal = mOfferingCourses[offering];
+            if (courseOrdinal != NONE)
+            {
+                course = courses.get(courseOrdinal);
+                if (course == null)
+                {
+                    course = getCourse(courseOrdinal);
+                    courses.put(courseOrdinal, course);
+                }
+            }
+
+            Instructor instructor = null;
+            int instructorOrdinal = mOfferingInstructors[offering];
+            if (instructorOrdinal != NONE)
+            {
+                instructor = instructors.get(instructorOrdinal);
+                if (instructor == null)
+                {
+                    instructor = getInstructor(instructorOrdinal);
+                    instructors.put(instructorOrdinal, instructor);
+                }
+            }
+
+            offeringsList.add(new Offering(mOfferingCRNs[offering],
+                    mOfferingSemesterCodes[offering], course, instructor));
+        }
+        return offeringsList;
+    }
+
+    /**
+     * Gets the CRN of an offering.
+     *
+     * @param offering The ordinal of the offering.
+     * @return The CRN of the offering.
+     */
+    int getCRN(int offering)
+    {
+        return mOfferingCRNs[offering];
+    }
+
+    /**
+     * Gets the semester code of an offering.
+     *
+     * @param offering The ordinal of the offering.
+     * @return The semester code of the offering.
+     */
+    int getSemesterCode(int offering)
+    {
+        return mOfferingSemesterCodes[offering];
+    }
+
+    /**
+     * Gets the course of an offering.
+     *
+     * @param offering The ordinal of the offering.
+     * @return The ordinal of its course, or -1 if the course does not exist.
+     */
+    int getCourseOrdinal(int offering)
+    {
+        return mOfferingCourses[offering];
+    }
+
+    /**
+     * Gets the instructor of an offering.
+     *
+     * @param offering The ordinal of the offering.
+     * @return The ordinal of its instructor, or -1 if the instructor does not exist.
+     */
+    int getInstructorOrdinal(int offering)
+    {
+        return mOfferingInstructors[offering];
+    }
+
+    /**
+     * Builds the <code>Course</code> with the given ordinal.
+     *
+     * @param course The ordinal of the course.
+     * @return The <code>Course</code>.
+     */
+    Course getCourse(int course)
+    {
+        return new Course(mCourseIds[course], mAlphas[mCourseAlphas[course]],
+                mCourseNumbers[course], mCourseTitles[course]);
+    }
+
+    /**
+     * Builds the <code>Instructor</code> with the given ordinal.
+     *
+     * @param instructor The ordinal of the instructor.
+     * @return The <code>Instructor</code>.
+     */
+    Instructor getInstructor(int instructor)
+    {
+        return new Instructor(mInstructorIds[instructor], mInstructorLastNames[instructor],
+                mInstructorFirstNames[instructor], mInstructorEmails[instructor]);
+    }
+
+    /**
+     * Gets the distinct semester codes of the offerings.
+     *
+     * @return The semester codes, in ascending order.
+     */
+    int[] getSemesterCodes()
+    {
+        return mSemesterCodes.clone();
+    }
+
+    int getCourseCount()
+    {
+        return mCourseIds.length;
+    }
+
+    int getInstructorCount()
+    {
+        return mInstructorIds.length;
+    }
+
+    int getOfferingCount()
+    {
+        return mOfferingCRNs.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Catalog{" +
+                "Courses=" + mCourseIds.length +
+                ", Instructors=" + mInstructorIds.length +
+                ", Offerings=" + mOfferingCRNs.length +
+                ", Semesters=" + mSemesterCodes.length +
+                '}';
+    }
+
+    /**
+     * Finds the ordinal of an ID.
+     *
+     * @param ids The IDs, in ascending order.
+     * @param id  The ID to find.
+     * @return The ordinal of the ID, or <code>NONE</code> if it is missing.
+     */
+    private static int ordinalOf(long[] ids, long id)
+    {
+        int ordinal = Arrays.binarySearch(ids, id);
+        return ordinal < 0 ? NONE : ordinal;
+    }
+
+    /**
+     * Groups the offerings by a key with a counting sort, keeping each group in ordinal order.
+     *
+     * @param keys   The key of each offering, or <code>NONE</code> to leave it out.
+     * @param starts Receives where each key's group starts, plus the end of the last group.
+     * @return The ordinals of the offerings, grouped by key.
+     */
+    private static int[] groupBy(int[] keys, int[] starts)
+    {
+        int grouped = 0;
+        for (int key : keys)
+        {
+            if (key == NONE) continue;
+            starts[key + 1]++;
+            grouped++;
+        }
+        for (int key = 1; key < starts.length; key++)
+            starts[key] += starts[key - 1];
+
+        int[] offerings = new int[grouped];
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        for (int offering = 0; offering < keys.length; offering++)
+            if (keys[offering] != NONE)
+                offerings[next[keys[offering]]++] = offering;
+        return offerings;
+    }
+}
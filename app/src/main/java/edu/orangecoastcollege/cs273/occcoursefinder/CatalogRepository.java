@@ -0,0 +1,350 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores the <code>Course</code>s, <code>Instructor</code>s and <code>Offering</code>s of the
+ * catalog. <code>DBHelper</code> keeps them in SQLite; <code>InMemoryCatalogRepository</code>
+ * keeps them in RAM only. Both follow the same contract, checked by
+ * <code>CatalogRepositoryContract</code>:
+ * <ul>
+ * <li><code>Course</code>s and <code>Instructor</code>s are keyed by ID, <code>Offering</code>s
+ * by CRN and semester code.</li>
+ * <li>An <code>Offering</code> may reference a <code>Course</code> or <code>Instructor</code>
+ * that does not exist, in which case it is read back with null for it.</li>
+ * <li>Lists are in key order unless stated otherwise.</li>
+ * <li>Implementations are safe to call from several threads at once.</li>
+ * </ul>
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+interface CatalogRepository
+{
+    //********** COURSES
+
+    /**
+     * Adds a <code>Course</code>. A <code>Course</code> that already has an ID is stored under
+     * that ID, and is not added if the ID is taken; otherwise the next free ID is assigned.
+     *
+     * @param course The <code>Course</code> to add.
+     */
+    void addCourse(Course course);
+
+    /**
+     * Gets all <code>Course</code>s.
+     *
+     * @return A list of all <code>Course</code>s, in ID order.
+     */
+    List<Course> getAllCourses();
+
+    /**
+     * Gets a <code>Course</code>.
+     *
+     * @param id The ID of the <code>Course</code>.
+     * @return The <code>Course</code>, or null if there is none.
+     */
+    Course getCourse(long id);
+
+    /**
+     * Updates a <code>Course</code>, identified by its ID.
+     *
+     * @param course The <code>Course</code> to update.
+     */
+    void updateCourse(Course course);
+
+    /**
+     * Deletes a <code>Course</code>, identified by its ID. <code>Offering</code>s that reference
+     * it are kept.
+     *
+     * @param course The <code>Course</code> to delete.
+     */
+    void deleteCourse(Course course);
+
+    /**
+     * Deletes all <code>Course</code>s.
+     */
+    void deleteAllCourses();
+
+    /**
+     * Adds <code>Course</code>s all at once: if any of them cannot be added, for example because
+     * its ID is taken, none are.
+     *
+     * @param courses The <code>Course</code>s to add.
+     * @return The ID given to each <code>Course</code>, in iteration order.
+     * @throws RuntimeException If a <code>Course</code> could not be added.
+     */
+    long[] addCourses(Collection<Course> courses);
+
+    /**
+     * Updates <code>Course</code>s all at once.
+     *
+     * @param courses The <code>Course</code>s to update.
+     * @return The number of <code>Course</code>s updated for each one, in iteration order: 0 if
+     * its ID was not found.
+     */
+    int[] updateCourses(Collection<Course> courses);
+
+    /**
+     * Deletes <code>Course</code>s all at once.
+     *
+     * @param courses The <code>Course</code>s to delete.
+     * @return The number of <code>Course</code>s deleted for each one, in iteration order: 0 if
+     * its ID was not found.
+     */
+    int[] deleteCourses(Collection<Course> courses);
+
+    //********** INSTRUCTORS
+
+    /**
+     * Adds an <code>Instructor</code>.
+     *
+     * @param instructor The <code>Instructor</code> to add.
+     * @see #addCourse(Course)
+     */
+    void addInstructor(Instructor instructor);
+
+    /**
+     * Gets all <code>Instructor</code>s.
+     *
+     * @return A list of all <code>Instructor</code>s, in ID order.
+     */
+    List<Instructor> getAllInstructors();
+
+    /**
+     * Gets an <code>Instructor</code>.
+     *
+     * @param id The ID of the <code>Instructor</code>.
+     * @return The <code>Instructor</code>, or null if there is none.
+     */
+    Instructor getInstructor(long id);
+
+    /**
+     * Updates an <code>Instructor</code>, identified by its ID.
+     *
+     * @param instructor The <code>Instructor</code> to update.
+     */
+    void updateInstructor(Instructor instructor);
+
+    /**
+     * Deletes an <code>Instructor</code>, identified by its ID. <code>Offering</code>s that
+     * reference it are kept.
+     *
+     * @param instructor The <code>Instructor</code> to delete.
+     */
+    void deleteInstructor(Instructor instructor);
+
+    /**
+     * Deletes all <code>Instructor</code>s.
+     */
+    void deleteAllInstructors();
+
+    /**
+     * Adds <code>Instructor</code>s all at once.
+     *
+     * @param instructors The <code>Instructor</code>s to add.
+     * @return The ID given to each <code>Instructor</code>, in iteration order.
+     * @throws RuntimeException If an <code>Instructor</code> could not be added.
+     * @see #addCourses(Collection)
+     */
+    long[] addInstructors(Collection<Instructor> instructors);
+
+    /**
+     * Updates <code>Instructor</code>s all at once.
+     *
+     * @param instructors The <code>Instructor</code>s to update.
+     * @return The number of <code>Instructor</code>s updated for each one, in iteration order.
+     */
+    int[] updateInstructors(Collection<Instructor> instructors);
+
+    /**
+     * Deletes <code>Instructor</code>s all at once.
+     *
+     * @param instructors The <code>Instructor</code>s to delete.
+     * @return The number of <code>Instructor</code>s deleted for each one, in iteration order.
+     */
+    int[] deleteInstructors(Collection<Instructor> instructors);
+
+    //********** OFFERINGS
+
+    /**
+     * Adds an <code>Offering</code>, unless one with the same CRN and semester code exists.
+     *
+     * @param offering The <code>Offering</code> to add.
+     */
+    void addOffering(Offering offering);
+
+    /**
+     * Gets all <code>Offering</code>s.
+     *
+     * @return A list of all <code>Offering</code>s.
+     */
+    List<Offering> getAllOfferings();
+
+    /**
+     * Gets an <code>Offering</code>. If the CRN is used in more than one semester, the most
+     * recent semester's <code>Offering</code> is returned.
+     *
+     * @param crn The CRN of the <code>Offering</code>.
+     * @return The <code>Offering</code>, or null if there is none.
+     */
+    Offering getOffering(int crn);
+
+    /**
+     * Updates the <code>Course</code> and <code>Instructor</code> of an <code>Offering</code>,
+     * identified by its CRN and semester code.
+     *
+     * @param offering The <code>Offering</code> to update.
+     */
+    void updateOffering(Offering offering);
+
+    /**
+     * Deletes an <code>Offering</code>, identified by its CRN and semester code.
+     *
+     * @param offering The <code>Offering</code> to delete.
+     */
+    void deleteOffering(Offering offering);
+
+    /**
+     * Deletes all <code>Offering</code>s.
+     */
+    void deleteAllOfferings();
+
+    /**
+     * Adds <code>Offering</code>s all at once: if any of them cannot be added, because one with
+     * the same CRN and semester code exists, none are.
+     *
+     * @param offerings The <code>Offering</code>s to add.
+     * @return An ID for each <code>Offering</code>, in iteration order.
+     * @throws RuntimeException If an <code>Offering</code> could not be added.
+     */
+    long[] addOfferings(Collection<Offering> offerings);
+
+    /**
+     * Updates <code>Offering</code>s all at once.
+     *
+     * @param offerings The <code>Offering</code>s to update.
+     * @return The number of <code>Offering</code>s updated for each one, in iteration order: 0
+     * if its CRN and semester code were not found.
+     */
+    int[] updateOfferings(Collection<Offering> offerings);
+
+    /**
+     * Deletes <code>Offering</code>s all at once.
+     *
+     * @param offerings The <code>Offering</code>s to delete.
+     * @return The number of <code>Offering</code>s deleted for each one, in iteration order.
+     */
+    int[] deleteOfferings(Collection<Offering> offerings);
+
+    //********** QUERIES
+
+    /**
+     * Gets all the <code>Offering</code>s of one semester.
+     *
+     * @param semesterCode The semester code, e.g. 201731.
+     * @return A list of the semester's <code>Offering</code>s, in CRN order.
+     */
+    List<Offering> getOfferingsForSemester(int semesterCode);
+
+    /**
+     * Gets one page of a semester's <code>Offering</code>s in CRN order, starting after a given
+     * CRN.
+     *
+     * @param semesterCode The semester code.
+     * @param afterCRN     The CRN of the last <code>Offering</code> of the previous page, or -1
+     *                     for the first page.
+     * @param pageSize     The maximum number of <code>Offering</code>s to get.
+     * @return The page of <code>Offering</code>s, empty after the last page.
+     */
+    List<Offering> getSemesterOfferingsPage(int semesterCode, int afterCRN, int pageSize);
+
+    /**
+     * Gets one page of <code>Offering</code>s in CRN and semester code order, starting after a
+     * given <code>Offering</code>.
+     *
+     * @param afterCRN          The CRN of the last <code>Offering</code> of the previous page, or
+     *                          -1 for the first page.
+     * @param afterSemesterCode The semester code of the last <code>Offering</code> of the previous
+     *                          page, or -1 for the first page.
+     * @param pageSize          The maximum number of <code>Offering</code>s to get.
+     * @return The page of <code>Offering</code>s, empty after the last page.
+     */
+    List<Offering> getOfferingsPage(int afterCRN, int afterSemesterCode, int pageSize);
+
+    /**
+     * Gets the semesters that have <code>Offering</code>s.
+     *
+     * @return The semester codes, in ascending order.
+     */
+    int[] getSemesterCodes();
+
+    /**
+     * Gets the semester to show by default: the one set with <code>setCurrentSemesterCode</code>,
+     * or else the latest semester that has <code>Offering</code>s.
+     *
+     * @return The current semester code, or -1 if there are no <code>Offering</code>s.
+     */
+    int getCurrentSemesterCode();
+
+    /**
+     * Sets the semester to show by default.
+     *
+     * @param semesterCode The current semester code, or -1 to default to the latest semester.
+     */
+    void setCurrentSemesterCode(int semesterCode);
+
+    /**
+     * Searches the <code>Offering</code>s by course (e.g. "cs a273" or "csa273"), title and
+     * instructor name. Every word of the query must match the start of a word in one of these.
+     * A match in the course ranks above one in the title, which ranks above one in the
+     * instructor's name.
+     *
+     * @param query The search query.
+     * @param limit The maximum number of <code>Offering</code>s to get.
+     * @return The best matching <code>Offering</code>s, best first, or an empty list if the query
+     * has no words.
+     */
+    List<Offering> searchOfferings(String query, int limit);
+
+    //********** IMPORTS
+
+    /**
+     * Imports the bundled course, instructor and offering CSV assets, unless they were already
+     * imported. The import replaces the existing data as a whole: if it fails, the existing data
+     * is kept.
+     *
+     * @param coursesCSV     The name of the courses CSV asset.
+     * @param instructorsCSV The name of the instructors CSV asset.
+     * @param offeringsCSV   The name of the offerings CSV asset.
+     * @return True if the CSVs were imported, false if they were already imported.
+     * @throws RuntimeException If the CSVs could not be read or imported.
+     */
+    boolean importAssetsIfChanged(String coursesCSV, String instructorsCSV, String offeringsCSV);
+
+    /**
+     * Imports course, instructor and offering CSV text. Rows without exactly 4 fields, or with a
+     * malformed number, are rejected, as are offerings whose course or instructor does not exist
+     * once the courses and instructors are imported.
+     *
+     * @param coursesCSV        The courses CSV text. It is closed when the import ends.
+     * @param instructorsCSV    The instructors CSV text. It is closed when the import ends.
+     * @param offeringsCSV      The offerings CSV text. It is closed when the import ends.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_IGNORE</code> to skip rows whose key
+     *                          is already in their table, <code>CONFLICT_REPLACE</code> to
+     *                          overwrite the existing row with them or <code>CONFLICT_FAIL</code>
+     *                          to stop the import.
+     * @return The <code>ImportStats</code> of the courses, instructors and offerings imports, in
+     * that order, or null if the text could not be read or the import was stopped, in which case
+     * the import may be partial.
+     */
+    ImportStats[] importFromCSV(Reader coursesCSV, Reader instructorsCSV, Reader offeringsCSV,
+                                int conflictAlgorithm);
+
+    /**
+     * Releases the resources held by the repository. It must not be used afterwards.
+     */
+    void close();
+}
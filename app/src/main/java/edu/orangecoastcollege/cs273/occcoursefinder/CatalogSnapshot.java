@@ -0,0 +1,579 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.util.SparseArray;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The <code>CatalogSnapshot</code> class is a read-only view of a <code>Catalog</code> saved in
+ * a compact binary file, which is memory-mapped rather than read, so it is ready to query once
+ * its header is checked. Rows are read straight from the mapped file whenever they are asked
+ * for, and only the strings of the <code>Course</code>s and <code>Instructor</code>s a caller
+ * builds are ever decoded.
+ * <p>
+ * The file is a header followed by fixed-width records and a string table, all big-endian:
+ * <ul>
+ * <li>Header: magic number, format version, CRC32 of everything after it, the course,
+ * instructor, offering, semester and string counts, the size of the string data and the string
+ * index of the hash of the CSVs the catalog was imported from.</li>
+ * <li>Courses, by ID: ID (long) and the string indexes of the alpha, number and title.</li>
+ * <li>Instructors, by ID: ID (long) and the string indexes of the last name, first name and
+ * email.</li>
+ * <li>Offerings, by semester code then CRN: CRN, semester code and the ordinals of the course
+ * and instructor, or -1 for one that does not exist.</li>
+ * <li>Semesters, in order: semester code and the ordinal of its first offering.</li>
+ * <li>Strings: the offset of each string in the string data, plus its end, then the UTF-8 string
+ * data. Each distinct string is stored once; index -1 stands for null.</li>
+ * </ul>
+ * A file with another magic number, version or size is rejected when opened. The checksum is
+ * checked separately by <code>verify</code>, since that reads every page of the file, so a
+ * caller that only needs the header can skip it. Every ordinal and string index is also checked
+ * against its section as it is read, so a snapshot corrupted after it was verified fails with an
+ * <code>IllegalStateException</code> rather than reading outside its sections.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+final class CatalogSnapshot
+{
+    /**
+     * The version of the file format, bumped whenever the layout changes.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4F434353; // "OCCS"
+    private static final int NONE = -1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Header fields, by byte offset; the checksum covers everything from CHECKSUMMED_START on
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CHECKSUM_OFFSET = 8;
+    private static final int CHECKSUMMED_START = 12;
+    private static final int COURSE_COUNT_OFFSET = 12;
+    private static final int INSTRUCTOR_COUNT_OFFSET = 16;
+    private static final int OFFERING_COUNT_OFFSET = 20;
+    private static final int SEMESTER_COUNT_OFFSET = 24;
+    private static final int STRING_COUNT_OFFSET = 28;
+    private static final int STRING_BYTES_OFFSET = 32;
+    private static final int SOURCE_HASH_OFFSET = 36;
+    private static final int HEADER_SIZE = 40;
+
+    // Record sizes in bytes
+    private static final int COURSE_SIZE = 20;
+    private static final int INSTRUCTOR_SIZE = 20;
+    private static final int OFFERING_SIZE = 16;
+    private static final int SEMESTER_SIZE = 8;
+
+    private final ByteBuffer mBuffer;
+    private final int mCourseCount;
+    private final int mInstructorCount;
+    private final int mOfferingCount;
+    private final int mSemesterCount;
+    private final int mStringCount;
+    private final int mStringBytes;
+
+    // Where each section starts in the file
+    private final int mCourses;
+    private final int mInstructors;
+    private final int mOfferings;
+    private final int mSemesters;
+    private final int mStringOffsets;
+    private final int mStrings;
+
+    /**
+     * Instantiates a new <code>CatalogSnapshot</code> over a mapped file, after checking its
+     * header against its size. Only the header is read.
+     *
+     * @param buffer The content of the file.
+     * @throws IOException If the file is not a snapshot of the current format or its header does
+     *                     not match its size.
+     */
+    private CatalogSnapshot(ByteBuffer buffer) throws IOException
+    {
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC)
+            throw new IOException("Not a catalog snapshot");
+        if (buffer.getInt(VERSION_OFFSET) != FORMAT_VERSION)
+            throw new IOException("Catalog snapshot version " + buffer.getInt(VERSION_OFFSET)
+                    + ", expected " + FORMAT_VERSION);
+
+        mCourseCount = buffer.getInt(COURSE_COUNT_OFFSET);
+        mInstructorCount = buffer.getInt(INSTRUCTOR_COUNT_OFFSET);
+        mOfferingCount = buffer.getInt(OFFERING_COUNT_OFFSET);
+        mSemesterCount = buffer.getInt(SEMESTER_COUNT_OFFSET);
+        mStringCount = buffer.getInt(STRING_COUNT_OFFSET);
+        mStringBytes = buffer.getInt(STRING_BYTES_OFFSET);
+        if (mCourseCount < 0 || mInstructorCount < 0 || mOfferingCount < 0 || mSemesterCount < 0
+                || mStringCount < 0 || mStringBytes < 0)
+            throw new IOException("Catalog snapshot header is corrupt");
+
+        // Computed in longs, so corrupt counts cannot overflow into a plausible size
+        long courses = HEADER_SIZE;
+        long instructors = courses + (long) mCourseCount * COURSE_SIZE;
+        long offerings = instructors + (long) mInstructorCount * INSTRUCTOR_SIZE;
+        long semesters = offerings + (long) mOfferingCount * OFFERING_SIZE;
+        long stringOffsets = semesters + (long) mSemesterCount * SEMESTER_SIZE;
+        long strings = stringOffsets + 4L * (mStringCount + 1);
+        if (strings + mStringBytes != buffer.capacity())
+            throw new IOException("Catalog snapshot is " + buffer.capacity() + " bytes, expected "
+                    + (strings + mStringBytes));
+
+        mCourses = (int) courses;
+        mInstructors = (int) instructors;
+        mOfferings = (int) offerings;
+        mSemesters = (int) semesters;
+        mStringOffsets = (int) stringOffsets;
+        mStrings = (int) strings;
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory. Its header and size are checked, so a
+     * truncated file, or one written in another format, is rejected, but its checksum is not.
+     *
+     * @param file The snapshot file.
+     * @return The <code>CatalogSnapshot</code>.
+     * @throws IOException If the file could not be mapped or is not a valid snapshot.
+     */
+    static CatalogSnapshot open(File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            long length = randomAccessFile.length();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Catalog snapshot is too large: " + length + " bytes");
+            // The mapping stays valid after the file is closed
+            return new CatalogSnapshot(randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, length));
+        } finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes a <code>Catalog</code> to a snapshot file. The snapshot is written to a temporary
+     * file that then replaces the old one, so a snapshot that is open, or a crash halfway, never
+     * sees a partial file.
+     *
+     * @param catalog    The <code>Catalog</code>.
+     * @param sourceHash The hash of the CSVs the catalog was imported from, or null if unknown.
+     * @param file       The snapshot file.
+     * @throws IOException If the file could not be written.
+     */
+    static void write(Catalog catalog, String sourceHash, File file) throws IOException
+    {
+        int courseCount = catalog.getCourseCount();
+        int instructorCount = catalog.getInstructorCount();
+        int offeringCount = catalog.getOfferingCount();
+        int[] semesterCodes = catalog.getSemesterCodes();
+
+        // Lay out the string table first, so every record can refer to its strings by index
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int sourceHashIndex = intern(sourceHash, stringIndexes, strings);
+        Course[] courses = new Course[courseCount];
+        for (int i = 0; i < courseCount; i++)
+        {
+            courses[i] = catalog.getCourse(i);
+            intern(courses[i].getAlpha(), stringIndexes, strings);
+            intern(courses[i].getNumber(), stringIndexes, strings);
+            intern(courses[i].getTitle(), stringIndexes, strings);
+        }
+        Instructor[] instructors = new Instructor[instructorCount];
+        for (int i = 0; i < instructorCount; i++)
+        {
+            instructors[i] = catalog.getInstructor(i);
+            intern(instructors[i].getLastName(), stringIndexes, strings);
+            intern(instructors[i].getFirstName(), stringIndexes, strings);
+            intern(instructors[i].getEmail(), stringIndexes, strings);
+        }
+        int stringBytes = 0;
+        for (byte[] string : strings)
+            stringBytes += string.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + courseCount * COURSE_SIZE
+                + instructorCount * INSTRUCTOR_SIZE + offeringCount * OFFERING_SIZE
+                + semesterCodes.length * SEMESTER_SIZE + 4 * (strings.size() + 1) + stringBytes);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(0)
+                .putInt(courseCount).putInt(instructorCount).putInt(offeringCount)
+                .putInt(semesterCodes.length).putInt(strings.size()).putInt(stringBytes)
+                .putInt(sourceHashIndex);
+
+        for (Course course : courses)
+            buffer.putLong(course.getId())
+                    .putInt(indexOf(course.getAlpha(), stringIndexes))
+                    .putInt(indexOf(course.getNumber(), stringIndexes))
+                    .putInt(indexOf(course.getTitle(), stringIndexes));
+        for (Instructor instructor : instructors)
+            buffer.putLong(instructor.getId())
+                    .putInt(indexOf(instructor.getLastName(), stringIndexes))
+                    .putInt(indexOf(instructor.getFirstName(), stringIndexes))
+                    .putInt(indexOf(instructor.getEmail(), stringIndexes));
+        for (int i = 0; i < offeringCount; i++)
+            buffer.putInt(catalog.getCRN(i)).putInt(catalog.getSemesterCode(i))
+                    .putInt(catalog.getCourseOrdinal(i)).putInt(catalog.getInstructorOrdinal(i));
+        // Offerings are in semester code order, so each semester starts where the code changes
+        for (int i = 0, semester = 0; i < offeringCount; i++)
+            if (i == 0 || catalog.getSemesterCode(i) != catalog.getSemesterCode(i - 1))
+                buffer.putInt(semesterCodes[semester++]).putInt(i);
+
+        int offset = 0;
+        for (byte[] string : strings)
+        {
+            buffer.putInt(offset);
+            offset += string.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] string : strings)
+            buffer.put(string);
+        buffer.putInt(CHECKSUM_OFFSET, checksum(buffer));
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outStream = new FileOutputStream(temporaryFile);
+        try
+        {
+            outStream.write(buffer.array());
+            outStream.getFD().sync();
+        } finally
+        {
+            outStream.close();
+        }
+        if (!temporaryFile.renameTo(file))
+        {
+            temporaryFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Checks the checksum of the snapshot. Unlike <code>open</code>, this reads the whole file.
+     *
+     * @throws IOException If the snapshot is corrupt.
+     */
+    void verify() throws IOException
+    {
+        if (checksum(mBuffer) != mBuffer.getInt(CHECKSUM_OFFSET))
+            throw new IOException("Catalog snapshot checksum mismatch");
+    }
+
+    /**
+     * Gets the hash of the CSVs the catalog was imported from.
+     *
+     * @return The hash, or null if it was unknown when the snapshot was written.
+     */
+    String getSourceHash()
+    {
+        return getString(mBuffer.getInt(SOURCE_HASH_OFFSET));
+    }
+
+    /**
+     * Gets the CRN of an offering.
+     *
+     * @param offering The ordinal of the offering.
+     * @return The CRN of the offering.
+     */
+    int getCRN(int offering)
+    {
+        return mBuffer.getInt(mOfferings + offering * OFFERING_SIZE);
+    }
+
+    /**
+     * Gets the semester code of an offering.
+     *
+     * @param offering The ordinal of the offering.
+     * @return The semester code of the offering.
+     */
+    int getSemesterCode(int offering)
+    {
+        return mBuffer.getInt(mOfferings + offering * OFFERING_SIZE + 4);
+    }
+
+    /**
+     * Builds the <code>Course</code> with the given ordinal.
+     *
+     * @param course The ordinal of the course.
+     * @return The <code>Course</code>.
+     * @throws IllegalStateException If the snapshot turns out to be corrupt.
+     */
+    Course getCourse(int course)
+    {
+        int record = mCourses + checkIndex(course, mCourseCount, "Course ordinal") * COURSE_SIZE;
+        return new Course(mBuffer.getLong(record), getString(mBuffer.getInt(record + 8)),
+                getString(mBuffer.getInt(record + 12)), getString(mBuffer.getInt(record + 16)));
+    }
+
+    /**
+     * Builds the <code>Instructor</code> with the given ordinal.
+     *
+     * @param instructor The ordinal of the instructor.
+     * @return The <code>Instructor</code>.
+     * @throws IllegalStateException If the snapshot turns out to be corrupt.
+     */
+    Instructor getInstructor(int instructor)
+    {
+        int record = mInstructors
+                + checkIndex(instructor, mInstructorCount, "Instructor ordinal") * INSTRUCTOR_SIZE;
+        return new Instructor(mBuffer.getLong(record), getString(mBuffer.getInt(record + 8)),
+                getString(mBuffer.getInt(record + 12)), getString(mBuffer.getInt(record + 16)));
+    }
+
+    /**
+     * Gets the distinct semester codes of the offerings.
+     *
+     * @return The semester codes, in ascending order.
+     */
+    int[] getSemesterCodes()
+    {
+        int[] semesterCodes = new int[mSemesterCount];
+        for (int i = 0; i < mSemesterCount; i++)
+            semesterCodes[i] = mBuffer.getInt(mSemesters + i * SEMESTER_SIZE);
+        return semesterCodes;
+    }
+
+    /**
+     * Gets the latest semester that has offerings.
+     *
+     * @return The latest semester code, or -1 if there are no offerings.
+     */
+    int getLatestSemesterCode()
+    {
+        return mSemesterCount == 0
+                ? NONE : mBuffer.getInt(mSemesters + (mSemesterCount - 1) * SEMESTER_SIZE);
+    }
+
+    /**
+     * Gets one page of a semester's <code>Offering</code>s in CRN order, starting after a given
+     * CRN. The semester and the start of the page are found by binary search in the mapped file.
+     *
+     * @param semesterCode The semester code.
+     * @param afterCRN     The CRN of the last <code>Offering</code> of the previous page, or -1
+     *                     for the first page.
+     * @param pageSize     The maximum number of <code>Offering</code>s to get.
+     * @return The page of <code>Offering</code>s, empty after the last page.
+     * @throws IllegalStateException If the snapshot turns out to be corrupt.
+     * @see CatalogRepository#getSemesterOfferingsPage(int, int, int)
+     */
+    List<Offering> getSemesterOfferingsPage(int semesterCode, int afterCRN, int pageSize)
+    {
+        int low = 0;
+        int high = mSemesterCount - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int code = mBuffer.getInt(mSemesters + middle * SEMESTER_SIZE);
+            if (code < semesterCode) low = middle + 1;
+            else if (code > semesterCode) high = middle - 1;
+            else
+            {
+                int semesterEnd = middle + 1 < mSemesterCount
+                        ? mBuffer.getInt(mSemesters + (middle + 1) * SEMESTER_SIZE + 4)
+                        : mOfferingCount;
+
+                // The first offering of the semester with a CRN after afterCRN
+                int start = mBuffer.getInt(mSemesters + middle * SEMESTER_SIZE + 4);
+                if (start < 0 || start > semesterEnd || semesterEnd > mOfferingCount)
+                    throw new IllegalStateException("Catalog snapshot is corrupt: semester "
+                            + semesterCode + " has offerings " + start + " to " + semesterEnd
+                            + " of " + mOfferingCount);
+                int end = semesterEnd;
+                while (start < end)
+                {
+                    int offering = (start + end) >>> 1;
+                    if (getCRN(offering) <= afterCRN) start = offering + 1;
+                    else end = offering;
+                }
+                return getOfferings(start, Math.min(start + Math.max(pageSize, 0), semesterEnd));
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Builds the <code>Offering</code>s in a range of ordinals. Offerings that share a course or
+     * instructor share one instance of it.
+     *
+     * @param start The ordinal of the first offering.
+     * @param end   The ordinal after the last offering.
+     * @return The <code>Offering</code>s, in ordinal order.
+     */
+    private List<Offering> getOfferings(int start, int end)
+    {
+        List<Offering> offeringsList = new ArrayList<>(end - start);
+        SparseArray<Course> courses = new SparseArray<>();
+        SparseArray<Instructor> instructors = new SparseArray<>();
+        for (int offering = start; offering < end; offering++)
+        {
+            int record = mOfferings + offering * OFFERING_SIZE;
+
+            Course course = null;
+            int courseOrdinal = mBuffer.getInt(record + 8);
+            if (courseOrdinal != NONE)
+            {
+                course = courses.get(courseOrdinal);
+                if (course == null)
+                {
+                    course = getCourse(courseOrdinal);
+                    courses.put(courseOrdinal, course);
+                }
+            }
+
+            Instructor instructor = null;
+            int instructorOrdinal = mBuffer.getInt(record + 12);
+            if (instructorOrdinal != NONE)
+            {
+                instructor = instructors.get(instructorOrdinal);
+                if (instructor == null)
+                {
+                    instructor = getInstructor(instructorOrdinal);
+                    instructors.put(instructorOrdinal, instructor);
+                }
+            }
+
+            offeringsList.add(new Offering(mBuffer.getInt(record), mBuffer.getInt(record + 4),
+                    course, instructor));
+        }
+        return offeringsList;
+    }
+
+    int getCourseCount()
+    {
+        return mCourseCount;
+    }
+
+    int getInstructorCount()
+    {
+        return mInstructorCount;
+    }
+
+    int getOfferingCount()
+    {
+        return mOfferingCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CatalogSnapshot{" +
+                "Courses=" + mCourseCount +
+                ", Instructors=" + mInstructorCount +
+                ", Offerings=" + mOfferingCount +
+                ", Semesters=" + mSemesterCount +
+                ", Bytes=" + mBuffer.capacity() +
+                '}';
+    }
+
+    /**
+     * Decodes a string from the string table. Only this copies bytes out of the mapped file.
+     *
+     * @param index The index of the string, or -1 for null.
+     * @return The string, or null.
+     */
+    private String getString(int index)
+    {
+        if (index == NONE) return null;
+        checkIndex(index, mStringCount, "String index");
+        int start = mBuffer.getInt(mStringOffsets + index * 4);
+        int end = mBuffer.getInt(mStringOffsets + index * 4 + 4);
+        if (start < 0 || start > end || end > mStringBytes)
+            throw new IllegalStateException("Catalog snapshot is corrupt: string " + index
+                    + " spans " + start + " to " + end + " of " + mStringBytes + " bytes");
+        byte[] bytes = new byte[end - start];
+        // A duplicate has its own position, so concurrent readers do not disturb each other
+        ByteBuffer string = mBuffer.duplicate();
+        string.position(mStrings + start);
+        string.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Checks an ordinal or string index read from the file against the size of its section.
+     *
+     * @param index The ordinal or index.
+     * @param size  The number of records or strings in the section.
+     * @param name  What the index is, for the exception message.
+     * @return The index.
+     * @throws IllegalStateException If the index is outside the section, so the file is corrupt.
+     */
+    private static int checkIndex(int index, int size, String name)
+    {
+        if (index < 0 || index >= size)
+            throw new IllegalStateException("Catalog snapshot is corrupt: " + name + " " + index
+                    + " of " + size);
+        return index;
+    }
+
+    /**
+     * Adds a string to the string table being written, unless it is already there.
+     *
+     * @param string        The string, or null.
+     * @param stringIndexes The index of each string in the table.
+     * @param strings       The UTF-8 bytes of each string in the table, in index order.
+     * @return The index of the string, or -1 for null.
+     */
+    private static int intern(String string, Map<String, Integer> stringIndexes,
+                              List<byte[]> strings)
+    {
+        if (string == null) return NONE;
+        Integer index = stringIndexes.get(string);
+        if (index == null)
+        {
+            index = strings.size();
+            stringIndexes.put(string, index);
+            strings.add(string.getBytes(UTF_8));
+        }
+        return index;
+    }
+
+    /**
+     * Gets the index of a string in the string table being written.
+     *
+     * @param string        The string, or null.
+     * @param stringIndexes The index of each string in the table.
+     * @return The index of the string, or -1 for null.
+     */
+    private static int indexOf(String string, Map<String, Integer> stringIndexes)
+    {
+        return string == null ? NONE : stringIndexes.get(string);
+    }
+
+    /**
+     * Computes the CRC32 of a snapshot, over everything after its checksum field.
+     *
+     * @param buffer The content of the snapshot.
+     * @return The checksum.
+     */
+    private static int checksum(ByteBuffer buffer)
+    {
+        CRC32 crc = new CRC32();
+        if (buffer.hasArray())
+            crc.update(buffer.array(), buffer.arrayOffset() + CHECKSUMMED_START,
+                    buffer.capacity() - CHECKSUMMED_START);
+        else
+        {
+            // Mapped files have no array, so they are checksummed a chunk at a time
+            ByteBuffer content = buffer.duplicate();
+            content.position(CHECKSUMMED_START);
+            byte[] chunk = new byte[8192];
+            while (content.hasRemaining())
+            {
+                int length = Math.min(chunk.length, content.remaining());
+                content.get(chunk, 0, length);
+                crc.update(chunk, 0, length);
+            }
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -2,8 +2,20 @@ package edu.orangecoastcollege.cs273.occcoursefinder;
 
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -17,11 +29,31 @@ import java.util.List;
 public class CourseSearchActivity extends AppCompatActivity
 {
 
-    private DBHelper db;
+    private AsyncDBHelper db;
+    // Measures every database operation in debug builds; null in release builds
+    private MetricsRecorder mMetrics;
+    private TextView mStatusTextView;
+    private ArrayAdapter<Offering> mOfferingsAdapter;
+    private boolean mCatalogReady;
+    // Serves the current semester's pages until the database is ready, then null
+    private CatalogSnapshot mSnapshot;
+    private int mSemesterCode;
+    private boolean mLoadingPage;
+    private boolean mLastPageLoaded;
+    private String mQuery = "";
+    // Bumped whenever the list is reset, so results requested for an older list are dropped
+    private int mListGeneration;
     private static final String TAG = "OCC Course Finder";
+    private static final int PAGE_SIZE = 50;
+    private static final int SEARCH_LIMIT = 50;
+    private static final String METRICS_FILE = "db-metrics.txt";
 
     /**
-     * Initializes <code>CourseSearchActivity</code> by inflating its UI.
+     * Initializes <code>CourseSearchActivity</code> by inflating its UI. The course data is
+     * kept in SQLite, or in RAM if the app was built with <code>-PinMemoryCatalog=true</code>,
+     * and imported in the background, then the current semester's offerings are loaded one page
+     * at a time as the list is scrolled, or all offerings are searched as a query is typed. Until
+     * the SQLite catalog is ready, pages come from the snapshot written after the last import.
      *
      * @param savedInstanceState Bundle containing the data it recently supplied in
      *                           onSaveInstanceState(Bundle) if activity was reinitialized after
@@ -32,27 +64,289 @@ public class CourseSearchActivity extends AppCompatActivity
     {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_course_search);
+        mStatusTextView = (TextView) findViewById(R.id.course_search_status);
 
-        deleteDatabase(DBHelper.DATABASE_NAME);
-        db = new DBHelper(this);
-        db.importCoursesFromCSV("courses.csv");
-        db.importInstructorsFromCSV("instructors.csv");
-        // Create the method importOfferingsFromCSV, then use it in this activity.
-        db.importOfferingsFromCSV("offerings.csv");
+        mOfferingsAdapter = new ArrayAdapter<Offering>(this, android.R.layout.simple_list_item_1,
+                new ArrayList<Offering>())
+        {
+            @Override
+            public View getView(int position, View convertView, ViewGroup parent)
+            {
+                TextView view = (TextView) super.getView(position, convertView, parent);
+                view.setText(describe(getItem(position)));
+                return view;
+            }
+        };
+        ListView offeringsListView = (ListView) findViewById(R.id.course_search_results);
+        offeringsListView.setAdapter(mOfferingsAdapter);
+        offeringsListView.setOnScrollListener(new AbsListView.OnScrollListener()
+        {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState)
+            {
+            }
 
-        List<Course> allCourses = db.getAllCourses();
-        for (Course course : allCourses)
-            Log.i(TAG, course.toString());
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount)
+            {
+                // Fetch the next page before the user reaches the end of the current one
+                if (firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_SIZE / 2)
+                    loadNextPage();
+            }
+        });
 
-        List<Instructor> allInstructors = db.getAllInstructors();
-        for (Instructor instructor : allInstructors)
-            Log.i(TAG, instructor.toString());
+        EditText queryEditText = (EditText) findViewById(R.id.course_search_query);
+        queryEditText.addTextChangedListener(new TextWatcher()
+        {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after)
+            {
+            }
 
-        // Get all the offerings from the database, then print them out to the Log
-        List<Offering> allOfferings = db.getAllOfferings();
-        for (Offering offering : allOfferings)
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count)
+            {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s)
+            {
+                search(s.toString());
+            }
+        });
+
+        CatalogRepository repository;
+        if (BuildConfig.IN_MEMORY_CATALOG)
+            repository = new InMemoryCatalogRepository(getAssets());
+        else if (BuildConfig.DEBUG)
+        {
+            mMetrics = new MetricsRecorder();
+            repository = new MeteredDBHelper(this, mMetrics);
+        }
+        else
+            repository = new DBHelper(this);
+        db = new AsyncDBHelper(repository);
+        db.openCatalogSnapshot(new AsyncDBHelper.Callback<CatalogSnapshot>()
+        {
+            @Override
+            public void onResult(CatalogSnapshot snapshot)
+            {
+                // Without a valid snapshot the list waits for the import below
+                if (snapshot == null || mCatalogReady) return;
+                mSnapshot = snapshot;
+                mSemesterCode = snapshot.getLatestSemesterCode();
+                mCatalogReady = true;
+                search(mQuery);
+            }
+        });
+        db.installPrebuiltDatabase("catalog.db",
+                "courses.csv", "instructors.csv", "offerings.csv",
+                new AsyncDBHelper.Callback<Boolean>()
+                {
+                    @Override
+                    public void onResult(final Boolean installed)
+                    {
+                        if (installed)
+                            Log.i(TAG, "Installed course data from assets");
+                        db.getCurrentSemesterCode(new AsyncDBHelper.Callback<Integer>()
+                        {
+                            @Override
+                            public void onResult(Integer semesterCode)
+                            {
+                                // The snapshot's pages are kept if the database holds the same
+                                // catalog, and later pages are read from the database
+                                boolean keepList = mSnapshot != null && !installed
+                                        && semesterCode == mSemesterCode && mQuery.isEmpty();
+                                mSnapshot = null;
+                                mSemesterCode = semesterCode;
+                                mCatalogReady = true;
+                                if (!keepList) search(mQuery);
+                            }
+
+                            @Override
+                            public void onError(Exception e)
+                            {
+                                showDatabaseError();
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(Exception e)
+                    {
+                        showDatabaseError();
+                    }
+                });
+    }
+
+    /**
+     * Loads the page of the current semester's offerings after the last one in the list, from
+     * the snapshot or else in the background from the database, then adds it to the list.
+     */
+    private void loadNextPage()
+    {
+        if (!mCatalogReady || mLoadingPage || mLastPageLoaded || !mQuery.isEmpty()) return;
+        mLoadingPage = true;
+        final int generation = mListGeneration;
+
+        int count = mOfferingsAdapter.getCount();
+        Offering last = count == 0 ? null : mOfferingsAdapter.getItem(count - 1);
+        int afterCRN = last == null ? -1 : last.getCRN();
+        if (mSnapshot != null)
+        {
+            // Reading a page from the mapped snapshot takes microseconds
+            List<Offering> page;
+            try
+            {
+                page = mSnapshot.getSemesterOfferingsPage(mSemesterCode, afterCRN, PAGE_SIZE);
+            } catch (IllegalStateException e)
+            {
+                // Corrupted since it was verified, so wait for the database instead
+                Log.w(TAG, "Dropping corrupt catalog snapshot", e);
+                mSnapshot = null;
+                mCatalogReady = false;
+                mLoadingPage = false;
+                return;
+            }
+            addPage(page);
+            return;
+        }
+        db.getSemesterOfferingsPage(mSemesterCode, afterCRN, PAGE_SIZE,
+                new AsyncDBHelper.Callback<List<Offering>>()
+                {
+                    @Override
+                    public void onResult(List<Offering> page)
+                    {
+                        if (generation != mListGeneration) return;
+                        addPage(page);
+                    }
+
+                    @Override
+                    public void onError(Exception e)
+                    {
+                        if (generation != mListGeneration) return;
+                        // Stop loading pages, or scrolling would retry on every frame
+                        mLoadingPage = false;
+                        mLastPageLoaded = true;
+                        showDatabaseError();
+                    }
+                });
+    }
+
+    /**
+     * Adds a page of the current semester's offerings to the list and prints it out to the Log.
+     *
+     * @param page The page of offerings.
+     */
+    private void addPage(List<Offering> page)
+    {
+        mLoadingPage = false;
+        mLastPageLoaded = page.size() < PAGE_SIZE;
+        for (Offering offering : page)
             Log.i(TAG, offering.toString());
+        mOfferingsAdapter.addAll(page);
+
+        int loaded = mOfferingsAdapter.getCount();
+        mStatusTextView.setText(getResources().getQuantityString(
+                R.plurals.offerings_loaded, loaded, loaded));
+    }
+
+    /**
+     * Replaces the list with the offerings best matching a query, searched in the background. An
+     * empty query goes back to listing the current semester's offerings page by page.
+     *
+     * @param query The search query.
+     */
+    private void search(String query)
+    {
+        mQuery = query.trim();
+        mListGeneration++;
+        mOfferingsAdapter.clear();
+        mLoadingPage = false;
+        mLastPageLoaded = false;
+        if (!mCatalogReady) return;
+        if (mQuery.isEmpty())
+        {
+            loadNextPage();
+            return;
+        }
+        // Searching needs the database, which searches again once it is ready
+        if (mSnapshot != null) return;
 
+        final int generation = mListGeneration;
+        db.searchOfferings(mQuery, SEARCH_LIMIT, new AsyncDBHelper.Callback<List<Offering>>()
+        {
+            @Override
+            public void onResult(List<Offering> results)
+            {
+                // Drop the results of a query that has since been edited
+                if (generation != mListGeneration) return;
+                mOfferingsAdapter.addAll(results);
+
+                int found = results.size();
+                mStatusTextView.setText(found == 0
+                        ? getString(R.string.no_search_results, mQuery)
+                        : getResources().getQuantityString(R.plurals.offerings_found, found,
+                        found));
+            }
+
+            @Override
+            public void onError(Exception e)
+            {
+                if (generation == mListGeneration) showDatabaseError();
+            }
+        });
+    }
+
+    /**
+     * Shows that the course data could not be imported or read, in place of the loading status
+     * or the number of offerings, so a failure does not look like a catalog still loading.
+     */
+    private void showDatabaseError()
+    {
+        mStatusTextView.setText(R.string.database_error);
+    }
 
+    /**
+     * Describes an offering for the list, e.g. "CS A273 Mobile Application Development
+     * (CRN 36018, Paulding)".
+     *
+     * @param offering The offering to describe.
+     * @return The description of the offering.
+     */
+    private String describe(Offering offering)
+    {
+        Course course = offering.getCourse();
+        Instructor instructor = offering.getInstructor();
+        return getString(R.string.offering_description,
+                course == null ? "" : course.getAlpha() + " " + course.getNumber() + " "
+                        + course.getTitle(),
+                offering.getCRN(),
+                instructor == null ? "" : instructor.getLastName());
+    }
+
+    /**
+     * Cancels any database work still pending and closes the database connection when the
+     * activity is destroyed. In debug builds of the SQLite catalog the database metrics are first
+     * written to <code>db-metrics.txt</code> in the app's files directory.
+     */
+    @Override
+    protected void onDestroy()
+    {
+        if (mMetrics != null)
+        {
+            File file = new File(getFilesDir(), METRICS_FILE);
+            try
+            {
+                mMetrics.dump(file);
+                Log.i(TAG, "Wrote database metrics to " + file);
+            } catch (IOException e)
+            {
+                Log.e(TAG, "Could not write database metrics", e);
+            }
+        }
+        db.close();
+        super.onDestroy();
     }
 }
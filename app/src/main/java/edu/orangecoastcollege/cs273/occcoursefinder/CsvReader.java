@@ -0,0 +1,286 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The <code>CsvReader</code> class streams the rows of a CSV file one at a time, following
+ * RFC 4180: fields may be quoted to contain commas, line breaks or doubled (<code>""</code>)
+ * quotes. Unquoted fields are trimmed of surrounding whitespace. Each row is parsed into one
+ * reused character buffer, so numeric fields can be read with <code>getInt</code> or
+ * <code>getLong</code> without creating a <code>String</code> per field.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class CsvReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mBufferPosition;
+    private int mBufferLength;
+
+    private char[] mRow = new char[256];
+    private int mRowLength;
+    private int[] mFieldStarts = new int[8];
+    private int[] mFieldEnds = new int[8];
+    private int mFieldCount;
+
+    private int mLineNumber;
+    private int mNextLineNumber = 1;
+
+    /**
+     * Instantiates a new <code>CsvReader</code> over the given reader. The reader is buffered
+     * internally and does not need to be a <code>BufferedReader</code>.
+     *
+     * @param reader The reader to read CSV text from.
+     */
+    CsvReader(Reader reader)
+    {
+        mReader = reader;
+    }
+
+    /**
+     * Reads the next row, skipping blank lines.
+     *
+     * @return True if a row was read, false at the end of the input.
+     * @throws IOException If the input cannot be read, or ends inside a quoted field.
+     */
+    boolean nextRow() throws IOException
+    {
+        int c;
+        // Skip blank lines between rows
+        do
+        {
+            c = read();
+            if (c == '\n') mNextLineNumber++;
+        } while (c == '\n' || c == '\r');
+        if (c == -1) return false;
+
+        mLineNumber = mNextLineNumber;
+        mRowLength = 0;
+        mFieldCount = 0;
+        while (true)
+        {
+            int start = mRowLength;
+            boolean quoted = false;
+
+            // Leading whitespace before an opening quote is ignored
+            while (c == ' ' || c == '\t')
+                c = read();
+
+            if (c == '"')
+            {
+                quoted = true;
+                while (true)
+                {
+                    c = read();
+                    // Otherwise the rest of the file would silently become this one field
+                    if (c == -1)
+                        throw new IOException("Unterminated quoted field in the CSV row on line "
+                                + getLineNumber());
+                    if (c == '"')
+                    {
+                        c = read();
+                        if (c != '"') break;
+                    }
+                    else if (c == '\n') mNextLineNumber++;
+                    append((char) c);
+                }
+                // Anything between the closing quote and the delimiter is dropped
+                while (c != ',' && c != '\n' && c != '\r' && c != -1)
+                    c = read();
+            }
+            else
+            {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1)
+                {
+                    append((char) c);
+                    c = read();
+                }
+            }
+
+            int end = mRowLength;
+            if (!quoted)
+                while (end > start && (mRow[end - 1] == ' ' || mRow[end - 1] == '\t'))
+                    end--;
+            addField(start, end);
+
+            if (c != ',') break;
+            c = read();
+        }
+
+        if (c == '\r')
+        {
+            c = read();
+            if (c != '\n' && c != -1) mBufferPosition--;
+        }
+        if (c == '\n') mNextLineNumber++;
+        return true;
+    }
+
+    /**
+     * Gets the line number the current row starts on, counting from 1.
+     *
+     * @return The line number of the current row.
+     */
+    int getLineNumber()
+    {
+        return mLineNumber;
+    }
+
+    /**
+     * Gets the number of fields in the current row.
+     *
+     * @return The number of fields.
+     */
+    int getFieldCount()
+    {
+        return mFieldCount;
+    }
+
+    /**
+     * Gets a field of the current row as a string.
+     *
+     * @param index The index of the field.
+     * @return The field.
+     */
+    String getString(int index)
+    {
+        checkIndex(index);
+        return new String(mRow, mFieldStarts[index], mFieldEnds[index] - mFieldStarts[index]);
+    }
+
+    /**
+     * Parses a field of the current row as a base 10 <code>int</code>.
+     *
+     * @param index The index of the field.
+     * @return The value of the field.
+     * @throws NumberFormatException If the field is not a valid <code>int</code>.
+     */
+    int getInt(int index)
+    {
+        long value = getLong(index);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw numberFormatException(index);
+        return (int) value;
+    }
+
+    /**
+     * Parses a field of the current row as a base 10 <code>long</code>.
+     *
+     * @param index The index of the field.
+     * @return The value of the field.
+     * @throws NumberFormatException If the field is not a valid <code>long</code>.
+     */
+    long getLong(int index)
+    {
+        checkIndex(index);
+        int position = mFieldStarts[index];
+        int end = mFieldEnds[index];
+        boolean negative = false;
+        if (position < end && (mRow[position] == '-' || mRow[position] == '+'))
+            negative = mRow[position++] == '-';
+        if (position == end) throw numberFormatException(index);
+
+        // Accumulate negatively so Long.MIN_VALUE can be represented
+        long value = 0;
+        for (; position < end; position++)
+        {
+            int digit = mRow[position] - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10)
+                throw numberFormatException(index);
+            value = value * 10 - digit;
+        }
+        if (!negative)
+        {
+            if (value == Long.MIN_VALUE) throw numberFormatException(index);
+            value = -value;
+        }
+        return value;
+    }
+
+    /**
+     * Describes the current row for error messages.
+     *
+     * @return The line number and fields of the current row.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder row = new StringBuilder("line ").append(mLineNumber).append(": [");
+        for (int i = 0; i < mFieldCount; i++)
+        {
+            if (i > 0) row.append(", ");
+            row.append(mRow, mFieldStarts[i], mFieldEnds[i] - mFieldStarts[i]);
+        }
+        return row.append(']').toString();
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException If the reader cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        mReader.close();
+    }
+
+    private int read() throws IOException
+    {
+        if (mBufferPosition == mBufferLength)
+        {
+            mBufferLength = mReader.read(mBuffer, 0, BUFFER_SIZE);
+            mBufferPosition = 0;
+            if (mBufferLength <= 0)
+            {
+                mBufferLength = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mBufferPosition++];
+    }
+
+    private void append(char c)
+    {
+        if (mRowLength == mRow.length)
+        {
+            char[] row = new char[mRow.length * 2];
+            System.arraycopy(mRow, 0, row, 0, mRowLength);
+            mRow = row;
+        }
+        mRow[mRowLength++] = c;
+    }
+
+    private void addField(int start, int end)
+    {
+        if (mFieldCount == mFieldStarts.length)
+        {
+            int[] starts = new int[mFieldCount * 2];
+            int[] ends = new int[mFieldCount * 2];
+            System.arraycopy(mFieldStarts, 0, starts, 0, mFieldCount);
+            System.arraycopy(mFieldEnds, 0, ends, 0, mFieldCount);
+            mFieldStarts = starts;
+            mFieldEnds = ends;
+        }
+        mFieldStarts[mFieldCount] = start;
+        mFieldEnds[mFieldCount] = end;
+        mFieldCount++;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= mFieldCount)
+            throw new IndexOutOfBoundsException("Field " + index + " of " + this);
+    }
+
+    private NumberFormatException numberFormatException(int index)
+    {
+        return new NumberFormatException("Field " + index + " is not a number at " + this);
+    }
+}
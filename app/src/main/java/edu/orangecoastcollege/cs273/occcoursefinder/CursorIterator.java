@@ -0,0 +1,75 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The <code>CursorIterator</code> class lazily builds one object per row of a database cursor as
+ * it is iterated, instead of reading the whole result into a list first. The cursor is closed
+ * once the last row has been read, or when <code>close</code> is called to stop early.
+ *
+ * @param <T> The type of object built from each row.
+ * @author Derek Tran
+ * @version 1.0
+ */
+abstract class CursorIterator<T> implements Iterator<T>, Closeable
+{
+    private final Cursor mCursor;
+    private boolean mHasNext;
+
+    /**
+     * Instantiates a new <code>CursorIterator</code> over the rows of the given cursor.
+     *
+     * @param cursor The cursor, positioned before its first row.
+     */
+    CursorIterator(Cursor cursor)
+    {
+        mCursor = cursor;
+        mHasNext = cursor.moveToFirst();
+        if (!mHasNext) cursor.close();
+    }
+
+    /**
+     * Builds an object from the cursor's current row.
+     *
+     * @param cursor The cursor, positioned on the row to read.
+     * @return The object in the current row.
+     */
+    abstract T read(Cursor cursor);
+
+    @Override
+    public boolean hasNext()
+    {
+        return mHasNext;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!mHasNext) throw new NoSuchElementException();
+
+        T next = read(mCursor);
+        mHasNext = mCursor.moveToNext();
+        if (!mHasNext) mCursor.close();
+        return next;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the cursor without reading the remaining rows.
+     */
+    @Override
+    public void close()
+    {
+        mHasNext = false;
+        mCursor.close();
+    }
+}
@@ -2,36 +2,64 @@ package edu.orangecoastcollege.cs273.occcoursefinder;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.res.AssetManager;
 import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
+import android.util.LongSparseArray;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A model class to manage the SQLite database used to store <code>Course</code> data,
- * <code>Instructor</code> data, and <code>Offering</code> data.
+ * <code>Instructor</code> data, and <code>Offering</code> data. It is the persistent
+ * <code>CatalogRepository</code>.
  *
  * @author Derek Tran
  * @version 1.0
  * @since November 14, 2017
  */
-class DBHelper extends SQLiteOpenHelper
+class DBHelper extends SQLiteOpenHelper implements CatalogRepository
 {
 
+    private static final String TAG = "OCC Course Finder";
+
     private Context mContext;
 
+    // Identity maps in front of getCourse and getInstructor
+    private static final int ENTITY_CACHE_CAPACITY = 256;
+    private final EntityCache<Course> mCourseCache = new EntityCache<>(ENTITY_CACHE_CAPACITY);
+    private final EntityCache<Instructor> mInstructorCache =
+            new EntityCache<>(ENTITY_CACHE_CAPACITY);
+
     //TASK: DEFINE THE DATABASE VERSION AND NAME  (DATABASE CONTAINS MULTIPLE TABLES)
     static final String DATABASE_NAME = "OCC";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 7;
+    // The binary snapshot of the catalog written after each import, in the app's files directory
+    private static final String SNAPSHOT_FILE = "catalog.snapshot";
 
     //TASK: DEFINE THE FIELDS (COLUMN NAMES) FOR THE COURSES TABLE
     private static final String COURSES_TABLE = "Courses";
@@ -53,9 +81,177 @@ class DBHelper extends SQLiteOpenHelper
     private static final String FIELD_SEMESTER_CODE = "semester_code";
     private static final String FIELD_COURSE_ID = "course_id";
     private static final String FIELD_INSTRUCTOR_ID = "instructor_id";
+    static final String OFFERINGS_COURSE_INDEX = "Offerings_course_idx";
+    static final String OFFERINGS_INSTRUCTOR_INDEX = "Offerings_instructor_idx";
+    static final String OFFERINGS_SEMESTER_INDEX = "Offerings_semester_idx";
+
+    //TASK: DEFINE THE FIELDS (COLUMN NAMES) FOR THE METADATA TABLE
+    private static final String METADATA_TABLE = "Metadata";
+    private static final String METADATA_KEY_FIELD = "key";
+    private static final String FIELD_VALUE = "value";
+    private static final String ASSETS_HASH_KEY = "assets_hash";
+    private static final String CURRENT_SEMESTER_KEY = "current_semester";
+
+    //TASK: DEFINE THE FIELDS (COLUMN NAMES) FOR THE OFFERINGS SEARCH (FTS) TABLE
+    private static final String SEARCH_TABLE = "OfferingsSearch";
+    private static final String FIELD_SEARCH_COURSE = "course";
+    private static final String FIELD_SEARCH_TITLE = "title";
+    private static final String FIELD_SEARCH_INSTRUCTOR = "instructor";
+    // Relevance weight of a match in each search column, in column order
+    private static final double[] SEARCH_COLUMN_WEIGHTS = {4.0, 2.0, 1.0};
+
+    //TASK: DEFINE THE FIELDS (COLUMN NAMES) FOR THE OFFERING COUNT (AGGREGATE) TABLES
+    // Keyed by (semester_code, course_id) and (semester_code, instructor_id) respectively
+    static final String COURSE_COUNTS_TABLE = "CourseOfferingCounts";
+    static final String INSTRUCTOR_COUNTS_TABLE = "InstructorOfferingCounts";
+    private static final String FIELD_OFFERING_COUNT = "offerings";
+    // Each count table, with the Offerings column it counts by
+    private static final String[][] OFFERING_COUNT_TABLES = {
+            {COURSE_COUNTS_TABLE, FIELD_COURSE_ID}, {INSTRUCTOR_COUNTS_TABLE, FIELD_INSTRUCTOR_ID}};
+
+    // Offerings with only the IDs of their Course and Instructor; the parents are loaded lazily
+    // by OfferingParents. Column 4 is the rowid.
+    private static final String OFFERINGS_QUERY = "SELECT "
+            + "o." + FIELD_CRN + ", o." + FIELD_SEMESTER_CODE + ", "
+            + "o." + FIELD_COURSE_ID + ", o." + FIELD_INSTRUCTOR_ID + ", o.rowid"
+            + " FROM " + OFFERINGS_TABLE + " o";
+    // Offerings whose parents are loaded together, in one query per table
+    private static final int OFFERING_PARENTS_BATCH = 256;
+    // Maximum number of IDs in one "IN (...)" list, well under SQLite's limit on terms
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    // Fills the search table from the Offerings join, one document per Offerings row. The course
+    // column holds both "CS A273" and "CSA273" so either spelling matches.
+    private static final String SEARCH_INDEX_QUERY = "INSERT INTO " + SEARCH_TABLE + "(docid, "
+            + FIELD_SEARCH_COURSE + ", " + FIELD_SEARCH_TITLE + ", " + FIELD_SEARCH_INSTRUCTOR
+            + ") SELECT o.rowid, "
+            + "IFNULL(c." + FIELD_ALPHA + ", '') || ' ' || IFNULL(c." + FIELD_NUMBER + ", '')"
+            + " || ' ' || IFNULL(c." + FIELD_ALPHA + ", '') || IFNULL(c." + FIELD_NUMBER + ", ''), "
+            + "c." + FIELD_TITLE + ", "
+            + "IFNULL(i." + FIELD_FIRST_NAME + ", '') || ' ' || IFNULL(i." + FIELD_LAST_NAME + ", '')"
+            + " FROM " + OFFERINGS_TABLE + " o"
+            + " LEFT JOIN " + COURSES_TABLE + " c ON o." + FIELD_COURSE_ID
+            + " = c." + COURSES_KEY_FIELD_ID
+            + " LEFT JOIN " + INSTRUCTORS_TABLE + " i ON o." + FIELD_INSTRUCTOR_ID
+            + " = i." + INSTRUCTORS_KEY_FIELD_ID;
+
+    // By-ID selects as constant SQL, so the connection keeps each one prepared. A compiled
+    // SQLiteStatement can only return a single value, so these still go through a cursor.
+    private static final String COURSE_BY_ID_QUERY = "SELECT " + COURSES_KEY_FIELD_ID + ", "
+            + FIELD_ALPHA + ", " + FIELD_NUMBER + ", " + FIELD_TITLE
+            + " FROM " + COURSES_TABLE + " WHERE " + COURSES_KEY_FIELD_ID + " = ?";
+    private static final String INSTRUCTOR_BY_ID_QUERY = "SELECT " + INSTRUCTORS_KEY_FIELD_ID + ", "
+            + FIELD_LAST_NAME + ", " + FIELD_FIRST_NAME + ", " + FIELD_EMAIL
+            + " FROM " + INSTRUCTORS_TABLE + " WHERE " + INSTRUCTORS_KEY_FIELD_ID + " = ?";
+    private static final String OFFERING_BY_CRN_QUERY = OFFERINGS_QUERY
+            + " WHERE o." + FIELD_CRN + " = ?"
+            + " ORDER BY o." + FIELD_SEMESTER_CODE + " DESC LIMIT 1";
+
+    // The single-row writes, and the search and count upkeep of the offerings they change,
+    // compiled once per connection by mStatements. Each constant is the index of its SQL in
+    // CACHED_STATEMENTS.
+    private static final int INSERT_COURSE = 0;
+    private static final int UPDATE_COURSE = 1;
+    private static final int DELETE_COURSE = 2;
+    private static final int INSERT_INSTRUCTOR = 3;
+    private static final int UPDATE_INSTRUCTOR = 4;
+    private static final int DELETE_INSTRUCTOR = 5;
+    private static final int INSERT_OFFERING = 6;
+    private static final int UPDATE_OFFERING = 7;
+    private static final int DELETE_OFFERING = 8;
+    private static final int INDEX_OFFERING = 9;
+    private static final int INSERT_COURSE_COUNT = 10;
+    private static final int INCREMENT_COURSE_COUNT = 11;
+    private static final int INSERT_INSTRUCTOR_COUNT = 12;
+    private static final int INCREMENT_INSTRUCTOR_COUNT = 13;
+    private static final int UNINDEX_OFFERING = 14;
+    private static final int REINDEX_OFFERING = 15;
+    private static final int DECREMENT_COURSE_COUNT = 16;
+    private static final int DELETE_EMPTY_COURSE_COUNT = 17;
+    private static final int DECREMENT_INSTRUCTOR_COUNT = 18;
+    private static final int DELETE_EMPTY_INSTRUCTOR_COUNT = 19;
+    // The count key of the offering with CRN ?1 in semester ?2, for the statements below
+    private static final String COURSE_COUNT_OF_OFFERING = FIELD_SEMESTER_CODE + " = ?2 AND "
+            + FIELD_COURSE_ID + " = (SELECT IFNULL(" + FIELD_COURSE_ID + ", -1) FROM "
+            + OFFERINGS_TABLE + " WHERE " + FIELD_CRN + " = ?1 AND " + FIELD_SEMESTER_CODE
+            + " = ?2)";
+    private static final String INSTRUCTOR_COUNT_OF_OFFERING = FIELD_SEMESTER_CODE + " = ?2 AND "
+            + FIELD_INSTRUCTOR_ID + " = (SELECT IFNULL(" + FIELD_INSTRUCTOR_ID + ", -1) FROM "
+            + OFFERINGS_TABLE + " WHERE " + FIELD_CRN + " = ?1 AND " + FIELD_SEMESTER_CODE
+            + " = ?2)";
+    private static final String[] CACHED_STATEMENTS = {
+            // INSERT_COURSE, UPDATE_COURSE, DELETE_COURSE
+            "INSERT OR IGNORE INTO " + COURSES_TABLE + " (" + FIELD_ALPHA + ", " + FIELD_NUMBER
+                    + ", " + FIELD_TITLE + ", " + COURSES_KEY_FIELD_ID + ") VALUES (?, ?, ?, ?)",
+            "UPDATE " + COURSES_TABLE + " SET " + FIELD_ALPHA + " = ?, " + FIELD_NUMBER + " = ?, "
+                    + FIELD_TITLE + " = ? WHERE " + COURSES_KEY_FIELD_ID + " = ?",
+            "DELETE FROM " + COURSES_TABLE + " WHERE " + COURSES_KEY_FIELD_ID + " = ?",
+            // INSERT_INSTRUCTOR, UPDATE_INSTRUCTOR, DELETE_INSTRUCTOR
+            "INSERT OR IGNORE INTO " + INSTRUCTORS_TABLE + " (" + FIELD_FIRST_NAME + ", "
+                    + FIELD_LAST_NAME + ", " + FIELD_EMAIL + ", " + INSTRUCTORS_KEY_FIELD_ID
+                    + ") VALUES (?, ?, ?, ?)",
+            "UPDATE " + INSTRUCTORS_TABLE + " SET " + FIELD_FIRST_NAME + " = ?, "
+                    + FIELD_LAST_NAME + " = ?, " + FIELD_EMAIL + " = ?"
+                    + " WHERE " + INSTRUCTORS_KEY_FIELD_ID + " = ?",
+            "DELETE FROM " + INSTRUCTORS_TABLE + " WHERE " + INSTRUCTORS_KEY_FIELD_ID + " = ?",
+            // INSERT_OFFERING and UPDATE_OFFERING, bound by bindOffering, and DELETE_OFFERING
+            "INSERT OR IGNORE INTO " + OFFERINGS_TABLE + " (" + FIELD_COURSE_ID + ", "
+                    + FIELD_INSTRUCTOR_ID + ", " + FIELD_CRN + ", " + FIELD_SEMESTER_CODE
+                    + ") VALUES (?, ?, ?, ?)",
+            "UPDATE " + OFFERINGS_TABLE + " SET " + FIELD_COURSE_ID + " = ?, "
+                    + FIELD_INSTRUCTOR_ID + " = ?"
+                    + " WHERE " + FIELD_CRN + " = ? AND " + FIELD_SEMESTER_CODE + " = ?",
+            "DELETE FROM " + OFFERINGS_TABLE
+                    + " WHERE " + FIELD_CRN + " = ? AND " + FIELD_SEMESTER_CODE + " = ?",
+            // INDEX_OFFERING
+            SEARCH_INDEX_QUERY + " WHERE o.rowid = ?",
+            // INSERT_COURSE_COUNT, INCREMENT_COURSE_COUNT
+            "INSERT OR IGNORE INTO " + COURSE_COUNTS_TABLE + " VALUES (?, ?, 0)",
+            "UPDATE " + COURSE_COUNTS_TABLE + " SET " + FIELD_OFFERING_COUNT + " = "
+                    + FIELD_OFFERING_COUNT + " + 1"
+                    + " WHERE " + FIELD_SEMESTER_CODE + " = ? AND " + FIELD_COURSE_ID + " = ?",
+            // INSERT_INSTRUCTOR_COUNT, INCREMENT_INSTRUCTOR_COUNT
+            "INSERT OR IGNORE INTO " + INSTRUCTOR_COUNTS_TABLE + " VALUES (?, ?, 0)",
+            "UPDATE " + INSTRUCTOR_COUNTS_TABLE + " SET " + FIELD_OFFERING_COUNT + " = "
+                    + FIELD_OFFERING_COUNT + " + 1"
+                    + " WHERE " + FIELD_SEMESTER_CODE + " = ? AND " + FIELD_INSTRUCTOR_ID + " = ?",
+            // UNINDEX_OFFERING, REINDEX_OFFERING, by CRN ?1 and semester code ?2
+            "DELETE FROM " + SEARCH_TABLE + " WHERE docid IN (SELECT rowid FROM "
+                    + OFFERINGS_TABLE + " WHERE " + FIELD_CRN + " = ?1 AND "
+                    + FIELD_SEMESTER_CODE + " = ?2)",
+            SEARCH_INDEX_QUERY + " WHERE o." + FIELD_CRN + " = ?1 AND o." + FIELD_SEMESTER_CODE
+                    + " = ?2",
+            // DECREMENT_COURSE_COUNT, DELETE_EMPTY_COURSE_COUNT
+            "UPDATE " + COURSE_COUNTS_TABLE + " SET " + FIELD_OFFERING_COUNT + " = "
+                    + FIELD_OFFERING_COUNT + " - 1 WHERE " + COURSE_COUNT_OF_OFFERING,
+            "DELETE FROM " + COURSE_COUNTS_TABLE + " WHERE " + COURSE_COUNT_OF_OFFERING
+                    + " AND " + FIELD_OFFERING_COUNT + " <= 0",
+            // DECREMENT_INSTRUCTOR_COUNT, DELETE_EMPTY_INSTRUCTOR_COUNT
+            "UPDATE " + INSTRUCTOR_COUNTS_TABLE + " SET " + FIELD_OFFERING_COUNT + " = "
+                    + FIELD_OFFERING_COUNT + " - 1 WHERE " + INSTRUCTOR_COUNT_OF_OFFERING,
+            "DELETE FROM " + INSTRUCTOR_COUNTS_TABLE + " WHERE " + INSTRUCTOR_COUNT_OF_OFFERING
+                    + " AND " + FIELD_OFFERING_COUNT + " <= 0"
+    };
+    // Enough prepared statements per connection for the cached ones plus the varying queries
+    private static final int SQL_CACHE_SIZE = SQLiteDatabase.MAX_SQL_CACHE_SIZE;
+
+    private final StatementCache mStatements = new StatementCache(CACHED_STATEMENTS);
+    // The argument of the by-ID selects, which return whole rows and so cannot be compiled into a
+    // SQLiteStatement. Each thread reuses its own array; rawQuery copies the arguments it binds,
+    // so the array is free again once rawQuery returns.
+    private final ThreadLocal<String[]> mIdArgs = new ThreadLocal<String[]>()
+    {
+        @Override
+        protected String[] initialValue()
+        {
+            return new String[1];
+        }
+    };
 
     /**
-     * Instantiates a new <code>DBHelper</code> object with the given context.
+     * Instantiates a new <code>DBHelper</code> object with the given context. The helper keeps a
+     * single connection to the database open, in write-ahead logging mode so reads can run
+     * while an import is writing, until <code>close()</code> is called.
      *
      * @param context The activity used to open or create the database.
      */
@@ -63,6 +259,40 @@ class DBHelper extends SQLiteOpenHelper
     {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
         mContext = context;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Configures each connection before the database is created or upgraded, making its cache of
+     * prepared statements large enough that the by-ID selects are not evicted by the queries
+     * whose SQL varies.
+     *
+     * @param database The database.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase database)
+    {
+        database.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+    }
+
+    /**
+     * Closes the compiled statements and then the database.
+     */
+    @Override
+    public synchronized void close()
+    {
+        mStatements.close();
+        super.close();
+    }
+
+    /**
+     * Gets the compiled statements of the single-row writes, for their compile count.
+     *
+     * @return The statement cache.
+     */
+    StatementCache getStatementCache()
+    {
+        return mStatements;
     }
 
     /**
@@ -91,20 +321,115 @@ class DBHelper extends SQLiteOpenHelper
 
         // Write the query to create the relationship table "Offerings"
         // Make sure to include foreign keys to the Courses and Instructors tables
-        createQuery = "CREATE TABLE " + OFFERINGS_TABLE + "("
-                + FIELD_CRN + " INTEGER,"
-                + FIELD_SEMESTER_CODE + " INTEGER,"
+        createOfferingsTable(database, OFFERINGS_TABLE);
+        createOfferingsIndexes(database);
+
+        createMetadataTable(database);
+        createSearchTable(database);
+        createOfferingCountTables(database);
+    }
+
+    /**
+     * Creates the Metadata table, which stores key/value pairs about the database itself.
+     *
+     * @param database The database.
+     */
+    private static void createMetadataTable(SQLiteDatabase database)
+    {
+        database.execSQL("CREATE TABLE " + METADATA_TABLE + "("
+                + METADATA_KEY_FIELD + " TEXT PRIMARY KEY, "
+                + FIELD_VALUE + " TEXT"
+                + ")");
+    }
+
+    /**
+     * Creates the full-text search table over each <code>Offering</code>'s course, title and
+     * instructor name. Its document IDs are the row IDs of the Offerings table. Prefixes of up to
+     * three characters are indexed so search-as-you-type queries stay fast.
+     *
+     * @param database The database.
+     */
+    private static void createSearchTable(SQLiteDatabase database)
+    {
+        database.execSQL("CREATE VIRTUAL TABLE " + SEARCH_TABLE + " USING fts4("
+                + FIELD_SEARCH_COURSE + ", "
+                + FIELD_SEARCH_TITLE + ", "
+                + FIELD_SEARCH_INSTRUCTOR + ", "
+                + "prefix=\"1,2,3\""
+                + ")");
+    }
+
+    /**
+     * Creates the tables that count the <code>Offering</code>s of each <code>Course</code>, and of
+     * each <code>Instructor</code>, per semester. Both are keyed by semester code first, so one
+     * count is a single primary key lookup and one semester's counts are a single range of it.
+     *
+     * @param database The database.
+     */
+    private static void createOfferingCountTables(SQLiteDatabase database)
+    {
+        for (String[] table : OFFERING_COUNT_TABLES)
+            database.execSQL("CREATE TABLE " + table[0] + "("
+                    + FIELD_SEMESTER_CODE + " INTEGER NOT NULL, "
+                    + table[1] + " INTEGER NOT NULL, "
+                    + FIELD_OFFERING_COUNT + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY (" + FIELD_SEMESTER_CODE + ", " + table[1] + ")"
+                    + ")");
+    }
+
+    /**
+     * Creates the Offerings table, keyed by CRN and semester code.
+     *
+     * @param database  The database.
+     * @param tableName The name to give the table.
+     */
+    private static void createOfferingsTable(SQLiteDatabase database, String tableName)
+    {
+        String createQuery = "CREATE TABLE " + tableName + "("
+                + FIELD_CRN + " INTEGER NOT NULL,"
+                + FIELD_SEMESTER_CODE + " INTEGER NOT NULL,"
                 + FIELD_COURSE_ID + " INTEGER,"
                 + FIELD_INSTRUCTOR_ID + " INTEGER,"
+                + "PRIMARY KEY (" + FIELD_CRN + ", " + FIELD_SEMESTER_CODE + "),"
                 + "FOREIGN KEY (" + FIELD_COURSE_ID + ") REFERENCES " + COURSES_TABLE + "(" + COURSES_KEY_FIELD_ID + "),"
                 + "FOREIGN KEY (" + FIELD_INSTRUCTOR_ID + ") REFERENCES " + INSTRUCTORS_TABLE + "(" + INSTRUCTORS_KEY_FIELD_ID + ")"
                 + ")";
         database.execSQL(createQuery);
+    }
+
+    /**
+     * Creates the indexes on the Offerings table's foreign keys and semester code. Each index
+     * also carries the semester code (or the foreign keys) so per-term lookups are answered from
+     * the index alone.
+     *
+     * @param database The database.
+     */
+    private static void createOfferingsIndexes(SQLiteDatabase database)
+    {
+        database.execSQL("CREATE INDEX " + OFFERINGS_COURSE_INDEX + " ON " + OFFERINGS_TABLE
+                + "(" + FIELD_COURSE_ID + ", " + FIELD_SEMESTER_CODE + ")");
+        database.execSQL("CREATE INDEX " + OFFERINGS_INSTRUCTOR_INDEX + " ON " + OFFERINGS_TABLE
+                + "(" + FIELD_INSTRUCTOR_ID + ", " + FIELD_SEMESTER_CODE + ")");
+        createOfferingsSemesterIndex(database);
+    }
 
+    /**
+     * Creates the index that partitions the Offerings table by semester. It holds every column
+     * of the table, in CRN order within each semester, so reading one semester is a single range
+     * scan of the index whose cost depends only on that semester's size.
+     *
+     * @param database The database.
+     */
+    private static void createOfferingsSemesterIndex(SQLiteDatabase database)
+    {
+        database.execSQL("CREATE INDEX " + OFFERINGS_SEMESTER_INDEX + " ON " + OFFERINGS_TABLE
+                + "(" + FIELD_SEMESTER_CODE + ", " + FIELD_CRN + ", " + FIELD_COURSE_ID + ", "
+                + FIELD_INSTRUCTOR_ID + ")");
     }
 
     /**
-     * Drops the existing database tables and creates new ones when database is upgraded.
+     * Migrates the existing database tables to the current schema when the database is upgraded,
+     * keeping their data.
      *
      * @param database   The database.
      * @param oldVersion The old database version.
@@ -113,33 +438,300 @@ class DBHelper extends SQLiteOpenHelper
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion)
     {
-        database.execSQL("DROP TABLE IF EXISTS " + COURSES_TABLE);
-        database.execSQL("DROP TABLE IF EXISTS " + INSTRUCTORS_TABLE);
-        // Drop the Offerings table
-        database.execSQL("DROP TABLE IF EXISTS " + OFFERINGS_TABLE);
-        onCreate(database);
+        switch (oldVersion)
+        {
+            case 1:
+                // Version 2 keys Offerings by (crn, semester_code) and indexes it
+                createOfferingsTable(database, OFFERINGS_TABLE + "_new");
+                database.execSQL("INSERT OR IGNORE INTO " + OFFERINGS_TABLE + "_new"
+                        + " SELECT " + FIELD_CRN + ", " + FIELD_SEMESTER_CODE + ", "
+                        + FIELD_COURSE_ID + ", " + FIELD_INSTRUCTOR_ID
+                        + " FROM " + OFFERINGS_TABLE
+                        + " WHERE " + FIELD_CRN + " IS NOT NULL"
+                        + " AND " + FIELD_SEMESTER_CODE + " IS NOT NULL");
+                database.execSQL("DROP TABLE " + OFFERINGS_TABLE);
+                database.execSQL("ALTER TABLE " + OFFERINGS_TABLE + "_new RENAME TO "
+                        + OFFERINGS_TABLE);
+                createOfferingsIndexes(database);
+                // fall through
+            case 2:
+                // Version 3 records which assets the tables were imported from
+                createMetadataTable(database);
+                // fall through
+            case 3:
+                // Version 4 adds full-text search over the offerings
+                createSearchTable(database);
+                rebuildSearchIndex(database);
+                // fall through
+            case 4:
+                // Version 5 orders the semester index by CRN so it covers per-semester queries
+                database.execSQL("DROP INDEX " + OFFERINGS_SEMESTER_INDEX);
+                createOfferingsSemesterIndex(database);
+                // fall through
+            case 5:
+                // Version 6 keys Courses and Instructors by their CSV IDs; forgetting the assets
+                // hash makes the next start re-import them under those IDs
+                database.delete(METADATA_TABLE, METADATA_KEY_FIELD + " = ?",
+                        new String[]{ASSETS_HASH_KEY});
+                // fall through
+            case 6:
+                // Version 7 counts the offerings per course and per instructor in each semester
+                createOfferingCountTables(database);
+                rebuildOfferingCounts(database);
+        }
+    }
+
+    /**
+     * Rebuilds the whole search table from the Offerings, Courses and Instructors tables.
+     *
+     * @param database The database.
+     */
+    private static void rebuildSearchIndex(SQLiteDatabase database)
+    {
+        database.execSQL("DELETE FROM " + SEARCH_TABLE);
+        database.execSQL(SEARCH_INDEX_QUERY);
+        // Merge the index segments written by the insert so queries read a single b-tree
+        database.execSQL("INSERT INTO " + SEARCH_TABLE + "(" + SEARCH_TABLE + ") VALUES ('optimize')");
+    }
+
+    /**
+     * Re-indexes the <code>Offering</code>s matching a condition in the search table, after they,
+     * or the <code>Course</code> or <code>Instructor</code> they reference, changed.
+     *
+     * @param database    The database.
+     * @param whereClause The condition on the Offerings table, aliased <code>o</code>.
+     * @param whereArgs   The arguments of the condition.
+     */
+    private static void reindexOfferings(SQLiteDatabase database, String whereClause,
+                                         String[] whereArgs)
+    {
+        unindexOfferings(database, whereClause, whereArgs);
+        database.execSQL(SEARCH_INDEX_QUERY + " WHERE " + whereClause, whereArgs);
+    }
+
+    /**
+     * Removes the <code>Offering</code>s matching a condition from the search table.
+     *
+     * @param database    The database.
+     * @param whereClause The condition on the Offerings table, aliased <code>o</code>.
+     * @param whereArgs   The arguments of the condition.
+     */
+    private static void unindexOfferings(SQLiteDatabase database, String whereClause,
+                                         String[] whereArgs)
+    {
+        database.execSQL("DELETE FROM " + SEARCH_TABLE + " WHERE docid IN (SELECT o.rowid FROM "
+                + OFFERINGS_TABLE + " o WHERE " + whereClause + ")", whereArgs);
+    }
+
+    /**
+     * Recounts the <code>Offering</code>s of every <code>Course</code> and
+     * <code>Instructor</code> per semester from the Offerings table.
+     *
+     * @param database The database.
+     */
+    private static void rebuildOfferingCounts(SQLiteDatabase database)
+    {
+        for (String[] table : OFFERING_COUNT_TABLES)
+        {
+            database.execSQL("DELETE FROM " + table[0]);
+            database.execSQL("INSERT INTO " + table[0] + " SELECT " + FIELD_SEMESTER_CODE
+                    + ", IFNULL(" + table[1] + ", -1), COUNT(*) FROM " + OFFERINGS_TABLE
+                    + " GROUP BY " + FIELD_SEMESTER_CODE + ", IFNULL(" + table[1] + ", -1)");
+        }
+    }
+
+    /**
+     * Adds the <code>Offering</code>s matching a condition to the count tables, after they were
+     * inserted or changed, or subtracts them, before they are changed or deleted. Only the counts
+     * of their own <code>Course</code>s, <code>Instructor</code>s and semesters are touched, and
+     * a count that drops to zero is removed.
+     *
+     * @param database    The database.
+     * @param whereClause The condition on the Offerings table, aliased <code>o</code>.
+     * @param whereArgs   The arguments of the condition.
+     * @param sign        1 to add the <code>Offering</code>s, -1 to subtract them.
+     */
+    private static void countOfferings(SQLiteDatabase database, String whereClause,
+                                       String[] whereArgs, int sign)
+    {
+        for (String[] table : OFFERING_COUNT_TABLES)
+        {
+            String key = FIELD_SEMESTER_CODE + " = ? AND " + table[1] + " = ?";
+            Cursor cursor = database.rawQuery("SELECT o." + FIELD_SEMESTER_CODE
+                    + ", IFNULL(o." + table[1] + ", -1), COUNT(*) FROM " + OFFERINGS_TABLE
+                    + " o WHERE " + whereClause
+                    + " GROUP BY o." + FIELD_SEMESTER_CODE + ", IFNULL(o." + table[1] + ", -1)",
+                    whereArgs);
+            while (cursor.moveToNext())
+            {
+                String[] keyArgs = new String[]{cursor.getString(0), cursor.getString(1)};
+                if (sign > 0)
+                    database.execSQL("INSERT OR IGNORE INTO " + table[0] + " VALUES (?, ?, 0)",
+                            keyArgs);
+                database.execSQL("UPDATE " + table[0] + " SET " + FIELD_OFFERING_COUNT + " = "
+                                + FIELD_OFFERING_COUNT + " + ? WHERE " + key,
+                        new Object[]{sign * cursor.getLong(2), keyArgs[0], keyArgs[1]});
+                if (sign < 0)
+                    database.delete(table[0], key + " AND " + FIELD_OFFERING_COUNT + " <= 0",
+                            keyArgs);
+            }
+            cursor.close();
+        }
+    }
+
+    /**
+     * Indexes a newly inserted <code>Offering</code> for search and adds it to the count tables,
+     * with the cached statements. It must be called inside the transaction that inserted it.
+     *
+     * @param database     The database.
+     * @param rowId        The row ID of the <code>Offering</code>.
+     * @param semesterCode The semester code of the <code>Offering</code>.
+     * @param courseId     The course ID of the <code>Offering</code>.
+     * @param instructorId The instructor ID of the <code>Offering</code>.
+     */
+    private void indexNewOffering(SQLiteDatabase database, long rowId, int semesterCode,
+                                  long courseId, long instructorId)
+    {
+        SQLiteStatement index = mStatements.get(database, INDEX_OFFERING);
+        index.bindLong(1, rowId);
+        index.execute();
+        incrementOfferingCount(database, INSERT_COURSE_COUNT, INCREMENT_COURSE_COUNT,
+                semesterCode, courseId);
+        incrementOfferingCount(database, INSERT_INSTRUCTOR_COUNT, INCREMENT_INSTRUCTOR_COUNT,
+                semesterCode, instructorId);
+    }
+
+    /**
+     * Adds one <code>Offering</code> to a count, with the cached statements.
+     *
+     * @param database     The database.
+     * @param insert       The statement that creates the count at zero.
+     * @param increment    The statement that adds one to the count.
+     * @param semesterCode The semester code.
+     * @param parentId     The ID of the <code>Course</code> or <code>Instructor</code>.
+     */
+    private void incrementOfferingCount(SQLiteDatabase database, int insert, int increment,
+                                        int semesterCode, long parentId)
+    {
+        SQLiteStatement create = mStatements.get(database, insert);
+        create.bindLong(1, semesterCode);
+        create.bindLong(2, parentId);
+        create.execute();
+        SQLiteStatement update = mStatements.get(database, increment);
+        update.bindLong(1, semesterCode);
+        update.bindLong(2, parentId);
+        update.execute();
+    }
+
+    /**
+     * Removes an <code>Offering</code> from the search table and subtracts it from the count
+     * tables, with the cached statements, before it is changed or deleted. It must be called
+     * inside the transaction that changes it.
+     *
+     * @param database     The database.
+     * @param crn          The CRN of the <code>Offering</code>.
+     * @param semesterCode The semester code of the <code>Offering</code>.
+     */
+    private void unindexOffering(SQLiteDatabase database, int crn, int semesterCode)
+    {
+        runForOffering(database, UNINDEX_OFFERING, crn, semesterCode);
+        runForOffering(database, DECREMENT_COURSE_COUNT, crn, semesterCode);
+        runForOffering(database, DELETE_EMPTY_COURSE_COUNT, crn, semesterCode);
+        runForOffering(database, DECREMENT_INSTRUCTOR_COUNT, crn, semesterCode);
+        runForOffering(database, DELETE_EMPTY_INSTRUCTOR_COUNT, crn, semesterCode);
+    }
+
+    /**
+     * Indexes an updated <code>Offering</code> for search and adds it to the count tables, with
+     * the cached statements, after <code>unindexOffering</code> and the update.
+     *
+     * @param database The database.
+     * @param offering The <code>Offering</code>, as updated.
+     */
+    private void reindexOffering(SQLiteDatabase database, Offering offering)
+    {
+        runForOffering(database, REINDEX_OFFERING, offering.getCRN(),
+                offering.getSemesterCode());
+        incrementOfferingCount(database, INSERT_COURSE_COUNT, INCREMENT_COURSE_COUNT,
+                offering.getSemesterCode(), offering.getCourseId());
+        incrementOfferingCount(database, INSERT_INSTRUCTOR_COUNT, INCREMENT_INSTRUCTOR_COUNT,
+                offering.getSemesterCode(), offering.getInstructorId());
+    }
+
+    /**
+     * Runs a cached statement whose parameters are an <code>Offering</code>'s CRN and semester
+     * code.
+     *
+     * @param database     The database.
+     * @param statement    The index of the statement's SQL.
+     * @param crn          The CRN.
+     * @param semesterCode The semester code.
+     */
+    private void runForOffering(SQLiteDatabase database, int statement, int crn,
+                                int semesterCode)
+    {
+        SQLiteStatement compiled = mStatements.get(database, statement);
+        compiled.bindLong(1, crn);
+        compiled.bindLong(2, semesterCode);
+        compiled.execute();
+    }
+
+    /**
+     * Gets the argument array of a by-ID select, reused by the calling thread.
+     *
+     * @param id The ID.
+     * @return The array, holding the ID as a string.
+     */
+    private String[] idArgs(long id)
+    {
+        String[] args = mIdArgs.get();
+        args[0] = String.valueOf(id);
+        return args;
+    }
+
+    /**
+     * Gets the largest row ID of the Offerings table. Rows inserted afterwards, including rows
+     * that replace an existing one, have larger row IDs.
+     *
+     * @param database The database.
+     * @return The largest row ID, or 0 if the table is empty.
+     */
+    private static long getLastOfferingRowId(SQLiteDatabase database)
+    {
+        Cursor cursor = database.rawQuery("SELECT IFNULL(MAX(rowid), 0) FROM " + OFFERINGS_TABLE,
+                null);
+        long rowId = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return rowId;
     }
 
     //********** COURSE TABLE OPERATIONS:  ADD, GETALL, EDIT, DELETE
 
     /**
-     * Adds a <code>Course</code> to the database.
+     * Adds a <code>Course</code> to the database. A <code>Course</code> that already has an ID is
+     * stored under that ID, and is not added if the ID is taken; otherwise SQLite assigns one.
      *
      * @param course The <code>Course</code> to add to the database.
      */
     public void addCourse(Course course)
     {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put(FIELD_ALPHA, course.getAlpha());
-        values.put(FIELD_NUMBER, course.getNumber());
-        values.put(FIELD_TITLE, course.getTitle());
-
-        db.insert(COURSES_TABLE, null, values);
-
-        // CLOSE THE DATABASE CONNECTION
-        db.close();
+        db.beginTransaction();
+        try
+        {
+            SQLiteStatement insert = mStatements.get(db, INSERT_COURSE);
+            bindStrings(insert, course.getAlpha(), course.getNumber(), course.getTitle());
+            bindId(insert, 4, course.getId());
+            long id = insert.executeInsert();
+            // Offerings may already reference the new ID
+            if (id != -1)
+                reindexOfferings(db, "o." + FIELD_COURSE_ID + " = ?",
+                        new String[]{String.valueOf(id)});
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
     }
 
     /**
@@ -168,7 +760,6 @@ class DBHelper extends SQLiteOpenHelper
             } while (cursor.moveToNext());
         }
         cursor.close();
-        database.close();
         return coursesList;
     }
 
@@ -181,10 +772,21 @@ class DBHelper extends SQLiteOpenHelper
     {
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // DELETE THE TABLE ROW
-        db.delete(COURSES_TABLE, COURSES_KEY_FIELD_ID + " = ?",
-                new String[]{String.valueOf(course.getId())});
-        db.close();
+        String[] id = new String[]{String.valueOf(course.getId())};
+        db.beginTransaction();
+        try
+        {
+            // DELETE THE TABLE ROW
+            SQLiteStatement delete = mStatements.get(db, DELETE_COURSE);
+            delete.bindLong(1, course.getId());
+            delete.executeUpdateDelete();
+            reindexOfferings(db, "o." + FIELD_COURSE_ID + " = ?", id);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+        mCourseCache.remove(course.getId());
     }
 
     /**
@@ -193,8 +795,17 @@ class DBHelper extends SQLiteOpenHelper
     public void deleteAllCourses()
     {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(COURSES_TABLE, null, null);
-        db.close();
+        db.beginTransaction();
+        try
+        {
+            db.delete(COURSES_TABLE, null, null);
+            rebuildSearchIndex(db);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+        mCourseCache.clear();
     }
 
     /**
@@ -205,63 +816,121 @@ class DBHelper extends SQLiteOpenHelper
     public void updateCourse(Course course)
     {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put(FIELD_ALPHA, course.getAlpha());
-        values.put(FIELD_NUMBER, course.getNumber());
-        values.put(FIELD_TITLE, course.getTitle());
-
-        db.update(COURSES_TABLE, values, COURSES_KEY_FIELD_ID + " = ?",
-                new String[]{String.valueOf(course.getId())});
-        db.close();
+        String[] id = new String[]{String.valueOf(course.getId())};
+        db.beginTransaction();
+        try
+        {
+            SQLiteStatement update = mStatements.get(db, UPDATE_COURSE);
+            bindStrings(update, course.getAlpha(), course.getNumber(), course.getTitle());
+            update.bindLong(4, course.getId());
+            update.executeUpdateDelete();
+            reindexOfferings(db, "o." + FIELD_COURSE_ID + " = ?", id);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+        mCourseCache.remove(course.getId());
     }
 
     /**
-     * Gets a <code>Course</code> in the database.
+     * Gets a <code>Course</code> in the database. Recently used <code>Course</code>s are
+     * served from an identity map, so repeated calls for the same ID return the same object.
      *
      * @param id The ID of the <code>Course</code> to get in the database.
-     * @return The <code>Course</code> to get in the database.
+     * @return The <code>Course</code> to get in the database, or null if there is none.
      */
     public Course getCourse(long id)
     {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(COURSES_TABLE,
-                new String[]{COURSES_KEY_FIELD_ID, FIELD_ALPHA, FIELD_NUMBER, FIELD_TITLE},
-                COURSES_KEY_FIELD_ID + "=?", new String[]{String.valueOf(id)},
-                null, null, null, null);
+        Course cached = mCourseCache.get(id);
+        if (cached != null) return cached;
+        long cacheVersion = mCourseCache.version();
 
-        if (cursor != null) cursor.moveToFirst();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(COURSE_BY_ID_QUERY, idArgs(id));
 
-        Course course = new Course(cursor.getLong(0),
-                cursor.getString(1),
-                cursor.getString(2),
-                cursor.getString(3));
+        Course course = null;
+        if (cursor.moveToFirst())
+            course = new Course(cursor.getLong(0),
+                    cursor.getString(1),
+                    cursor.getString(2),
+                    cursor.getString(3));
 
         cursor.close();
-        db.close();
+        if (course != null)
+            mCourseCache.put(id, course, cacheVersion);
         return course;
     }
 
+    /**
+     * Gets the identity map in front of <code>getCourse</code>, for its hit and miss counts.
+     *
+     * @return The <code>Course</code> cache.
+     */
+    EntityCache<Course> getCourseCache()
+    {
+        return mCourseCache;
+    }
+
+    /**
+     * Gets several <code>Course</code>s at once. <code>Course</code>s in the identity map are
+     * served from it; the rest are read with one query per 500 IDs and added to it.
+     *
+     * @param ids The IDs of the <code>Course</code>s, in any order. Repeated IDs and -1 are
+     *            ignored.
+     * @return The <code>Course</code>s found, keyed by ID.
+     */
+    LongSparseArray<Course> getCourses(long[] ids)
+    {
+        LongSparseArray<Course> courses = new LongSparseArray<>();
+        long cacheVersion = mCourseCache.version();
+        long[] missing = findMissing(ids, mCourseCache, courses);
+        for (int from = 0; from < missing.length; from += MAX_IDS_PER_QUERY)
+        {
+            CursorIterator<Course> iterator = newCourseIterator(this.getReadableDatabase().query(
+                    COURSES_TABLE,
+                    new String[]{COURSES_KEY_FIELD_ID, FIELD_ALPHA, FIELD_NUMBER, FIELD_TITLE},
+                    COURSES_KEY_FIELD_ID + " IN (" + toInList(missing, from) + ")",
+                    null, null, null, null, null));
+            while (iterator.hasNext())
+            {
+                Course course = iterator.next();
+                courses.put(course.getId(), course);
+                mCourseCache.put(course.getId(), course, cacheVersion);
+            }
+        }
+        return courses;
+    }
+
     //********** INSTRUCTOR TABLE OPERATIONS:  ADD, GETALL, EDIT, DELETE
 
     /**
-     * Adds an <code>Instructor</code> to the database.
+     * Adds an <code>Instructor</code> to the database. An <code>Instructor</code> that already
+     * has an ID is stored under that ID, and is not added if the ID is taken; otherwise SQLite
+     * assigns one.
      *
      * @param instructor The <code>Instructor</code> to add to the database.
      */
     public void addInstructor(Instructor instructor)
     {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put(FIELD_LAST_NAME, instructor.getLastName());
-        values.put(FIELD_FIRST_NAME, instructor.getFirstName());
-        values.put(FIELD_EMAIL, instructor.getEmail());
-
-        db.insert(INSTRUCTORS_TABLE, null, values);
-
-        // CLOSE THE DATABASE CONNECTION
-        db.close();
+        db.beginTransaction();
+        try
+        {
+            SQLiteStatement insert = mStatements.get(db, INSERT_INSTRUCTOR);
+            bindStrings(insert, instructor.getFirstName(), instructor.getLastName(),
+                    instructor.getEmail());
+            bindId(insert, 4, instructor.getId());
+            long id = insert.executeInsert();
+            // Offerings may already reference the new ID
+            if (id != -1)
+                reindexOfferings(db, "o." + FIELD_INSTRUCTOR_ID + " = ?",
+                    new String[]{String.valueOf(id)});
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
     }
 
     /**
@@ -290,7 +959,6 @@ class DBHelper extends SQLiteOpenHelper
             } while (cursor.moveToNext());
         }
         cursor.close();
-        database.close();
         return instructorsList;
     }
 
@@ -303,10 +971,21 @@ class DBHelper extends SQLiteOpenHelper
     {
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // DELETE THE TABLE ROW
-        db.delete(INSTRUCTORS_TABLE, INSTRUCTORS_KEY_FIELD_ID + " = ?",
-                new String[]{String.valueOf(instructor.getId())});
-        db.close();
+        String[] id = new String[]{String.valueOf(instructor.getId())};
+        db.beginTransaction();
+        try
+        {
+            // DELETE THE TABLE ROW
+            SQLiteStatement delete = mStatements.get(db, DELETE_INSTRUCTOR);
+            delete.bindLong(1, instructor.getId());
+            delete.executeUpdateDelete();
+            reindexOfferings(db, "o." + FIELD_INSTRUCTOR_ID + " = ?", id);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+        mInstructorCache.remove(instructor.getId());
     }
 
     /**
@@ -315,8 +994,17 @@ class DBHelper extends SQLiteOpenHelper
     public void deleteAllInstructors()
     {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(INSTRUCTORS_TABLE, null, null);
-        db.close();
+        db.beginTransaction();
+        try
+        {
+            db.delete(INSTRUCTORS_TABLE, null, null);
+            rebuildSearchIndex(db);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+        mInstructorCache.clear();
     }
 
     /**
@@ -327,302 +1015,2840 @@ class DBHelper extends SQLiteOpenHelper
     public void updateInstructor(Instructor instructor)
     {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put(FIELD_FIRST_NAME, instructor.getFirstName());
-        values.put(FIELD_LAST_NAME, instructor.getLastName());
-        values.put(FIELD_EMAIL, instructor.getEmail());
-
-        db.update(INSTRUCTORS_TABLE, values, INSTRUCTORS_KEY_FIELD_ID + " = ?",
-                new String[]{String.valueOf(instructor.getId())});
-        db.close();
+        String[] id = new String[]{String.valueOf(instructor.getId())};
+        db.beginTransaction();
+        try
+        {
+            SQLiteStatement update = mStatements.get(db, UPDATE_INSTRUCTOR);
+            bindStrings(update, instructor.getFirstName(), instructor.getLastName(),
+                    instructor.getEmail());
+            update.bindLong(4, instructor.getId());
+            update.executeUpdateDelete();
+            reindexOfferings(db, "o." + FIELD_INSTRUCTOR_ID + " = ?", id);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+        mInstructorCache.remove(instructor.getId());
     }
 
     /**
-     * Gets an <code>Instructor</code> in the database.
+     * Gets an <code>Instructor</code> in the database. Recently used <code>Instructor</code>s are
+     * served from an identity map, so repeated calls for the same ID return the same object.
      *
      * @param id The ID of the <code>Instructor</code> to get in the database.
-     * @return The <code>Instructor</code> to get in the database.
+     * @return The <code>Instructor</code> to get in the database, or null if there is none.
      */
     public Instructor getInstructor(long id)
     {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(INSTRUCTORS_TABLE,
-                new String[]{INSTRUCTORS_KEY_FIELD_ID, FIELD_LAST_NAME, FIELD_FIRST_NAME, FIELD_EMAIL},
-                INSTRUCTORS_KEY_FIELD_ID + "=?", new String[]{String.valueOf(id)},
-                null, null, null, null);
+        Instructor cached = mInstructorCache.get(id);
+        if (cached != null) return cached;
+        long cacheVersion = mInstructorCache.version();
 
-        if (cursor != null) cursor.moveToFirst();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(INSTRUCTOR_BY_ID_QUERY, idArgs(id));
 
-        Instructor instructor = new Instructor(cursor.getLong(0),
-                cursor.getString(1),
-                cursor.getString(2),
-                cursor.getString(3));
+        Instructor instructor = null;
+        if (cursor.moveToFirst())
+            instructor = new Instructor(cursor.getLong(0),
+                    cursor.getString(1),
+                    cursor.getString(2),
+                    cursor.getString(3));
 
         cursor.close();
-        db.close();
+        if (instructor != null)
+            mInstructorCache.put(id, instructor, cacheVersion);
         return instructor;
     }
 
-    //********** OFFERING TABLE OPERATIONS:  ADD, GETALL, EDIT, DELETE
-    // Create the following methods: addOffering, getAllOfferings, deleteOffering
-    // deleteAllOfferings, updateOffering, and getOffering
-    // Use the Courses and Instructors methods above as a guide.
-
     /**
-     * Adds an <code>Offering</code> to the database.
+     * Gets the identity map in front of <code>getInstructor</code>, for its hit and miss counts.
      *
-     * @param offering The <code>Offering</code> to add to the database.
+     * @return The <code>Instructor</code> cache.
      */
-    public void addOffering(Offering offering)
+    EntityCache<Instructor> getInstructorCache()
     {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put(FIELD_CRN, offering.getCRN());
-        values.put(FIELD_SEMESTER_CODE, offering.getSemesterCode());
-        values.put(FIELD_COURSE_ID, offering.getCourse().getId());
-        values.put(FIELD_INSTRUCTOR_ID, offering.getInstructor().getId());
-
-        db.insert(OFFERINGS_TABLE, null, values);
-
-        // CLOSE THE DATABASE CONNECTION
-        db.close();
+        return mInstructorCache;
     }
 
     /**
-     * Gets all <code>Offering</code>s in the database.
+     * Gets several <code>Instructor</code>s at once.
      *
-     * @return
+     * @param ids The IDs of the <code>Instructor</code>s, in any order. Repeated IDs and -1 are
+     *            ignored.
+     * @return The <code>Instructor</code>s found, keyed by ID.
+     * @see #getCourses(long[])
      */
-    public List<Offering> getAllOfferings()
+    LongSparseArray<Instructor> getInstructors(long[] ids)
     {
-        List<Offering> offeringsList = new ArrayList<>();
-        SQLiteDatabase database = this.getReadableDatabase();
-        Cursor cursor = database.query(OFFERINGS_TABLE,
-                new String[]{FIELD_CRN, FIELD_SEMESTER_CODE, FIELD_COURSE_ID, FIELD_INSTRUCTOR_ID},
-                null, null, null, null, null, null);
-
-        //COLLECT EACH ROW IN THE TABLE
-        if (cursor.moveToFirst())
+        LongSparseArray<Instructor> instructors = new LongSparseArray<>();
+        long cacheVersion = mInstructorCache.version();
+        long[] missing = findMissing(ids, mInstructorCache, instructors);
+        for (int from = 0; from < missing.length; from += MAX_IDS_PER_QUERY)
         {
-            do
+            CursorIterator<Instructor> iterator = newInstructorIterator(
+                    this.getReadableDatabase().query(INSTRUCTORS_TABLE,
+                            new String[]{INSTRUCTORS_KEY_FIELD_ID, FIELD_LAST_NAME,
+                                    FIELD_FIRST_NAME, FIELD_EMAIL},
+                            INSTRUCTORS_KEY_FIELD_ID + " IN (" + toInList(missing, from) + ")",
+                            null, null, null, null, null));
+            while (iterator.hasNext())
             {
-                Offering offering = new Offering(cursor.getInt(0),
-                        cursor.getInt(1),
-                        getCourse(cursor.getInt(2)),
-                        getInstructor(cursor.getInt(3)));
-                offeringsList.add(offering);
-            } while (cursor.moveToNext());
+                Instructor instructor = iterator.next();
+                instructors.put(instructor.getId(), instructor);
+                mInstructorCache.put(instructor.getId(), instructor, cacheVersion);
+            }
         }
-        cursor.close();
-        database.close();
-        return offeringsList;
+        return instructors;
     }
 
     /**
-     * Deletes an <code>Offering</code> in the database.
+     * Looks up IDs in an entity cache, copying the hits to <code>found</code>.
      *
-     * @param offering The <code>Offering</code> to delete in the database.
+     * @param ids   The IDs to look up. Repeated IDs and -1 are ignored.
+     * @param cache The cache.
+     * @param found Receives the entities found in the cache, keyed by ID.
+     * @param <V>   The type of entity.
+     * @return The distinct IDs not in the cache, in ascending order.
      */
-    public void deleteOffering(Offering offering)
+    private static <V> long[] findMissing(long[] ids, EntityCache<V> cache,
+                                          LongSparseArray<V> found)
     {
-        SQLiteDatabase db = this.getWritableDatabase();
-
-        // DELETE THE TABLE ROW
-        db.delete(OFFERINGS_TABLE, FIELD_CRN + " = ?",
-                new String[]{String.valueOf(offering.getCRN())});
-        db.close();
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        long[] missing = new long[sorted.length];
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            long id = sorted[i];
+            if (id == -1 || (i > 0 && id == sorted[i - 1])) continue;
+            V cached = cache.get(id);
+            if (cached != null) found.put(id, cached);
+            else missing[count++] = id;
+        }
+        return Arrays.copyOf(missing, count);
     }
 
     /**
-     * Deletes all <code>Offering</code>s in the database.
+     * Joins up to <code>MAX_IDS_PER_QUERY</code> IDs with commas, for an "IN (...)" list.
+     *
+     * @param ids  The IDs.
+     * @param from The index of the first ID to join.
+     * @return The joined IDs.
+     */
+    private static String toInList(long[] ids, int from)
+    {
+        StringBuilder inList = new StringBuilder();
+        int to = Math.min(ids.length, from + MAX_IDS_PER_QUERY);
+        for (int i = from; i < to; i++)
+            inList.append(i == from ? "" : ",").append(ids[i]);
+        return inList.toString();
+    }
+
+    //********** OFFERING TABLE OPERATIONS:  ADD, GETALL, EDIT, DELETE
+    // Create the following methods: addOffering, getAllOfferings, deleteOffering
+    // deleteAllOfferings, updateOffering, and getOffering
+    // Use the Courses and Instructors methods above as a guide.
+
+    /**
+     * Adds an <code>Offering</code> to the database.
+     *
+     * @param offering The <code>Offering</code> to add to the database.
+     */
+    public void addOffering(Offering offering)
+    {
+        insertOffering(offering);
+    }
+
+    /**
+     * Adds an <code>Offering</code> to the database, unless its CRN and semester code are taken.
+     *
+     * @param offering The <code>Offering</code> to add to the database.
+     * @return The row ID of the new <code>Offering</code>, or -1 if it was ignored because its CRN
+     * and semester code are taken.
+     */
+    private long insertOffering(Offering offering)
+    {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try
+        {
+            SQLiteStatement insert = mStatements.get(db, INSERT_OFFERING);
+            bindOffering(insert, offering);
+            long rowId = insert.executeInsert();
+            if (rowId != -1)
+                indexNewOffering(db, rowId, offering.getSemesterCode(), offering.getCourseId(),
+                        offering.getInstructorId());
+            db.setTransactionSuccessful();
+            return rowId;
+        } finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Gets all <code>Offering</code>s in the database. Only the IDs of their
+     * <code>Course</code>s and <code>Instructor</code>s are read; the parents are loaded the first
+     * time they are asked for, 256 <code>Offering</code>s at a time, and <code>Offering</code>s
+     * that reference the same <code>Course</code> or <code>Instructor</code> share one instance
+     * of it.
+     *
+     * @return A list of all <code>Offering</code>s in the database.
+     */
+    public List<Offering> getAllOfferings()
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        return toList(newOfferingIterator(database.rawQuery(OFFERINGS_QUERY, null)));
+    }
+
+    /**
+     * Builds an <code>Offering</code> from the current row of a cursor over
+     * <code>OFFERINGS_QUERY</code>, whose parents are loaded with the rest of a batch.
+     *
+     * @param cursor  The cursor positioned on the row to read.
+     * @param parents The batch to load the <code>Offering</code>'s parents with.
+     * @return The <code>Offering</code> in the current row.
+     */
+    private static Offering readOffering(Cursor cursor, OfferingParents parents)
+    {
+        return parents.newOffering(cursor.getInt(0), cursor.getInt(1),
+                cursor.isNull(2) ? -1 : cursor.getLong(2),
+                cursor.isNull(3) ? -1 : cursor.getLong(3));
+    }
+
+    /**
+     * Deletes an <code>Offering</code>, identified by its CRN and semester code, in the database.
+     *
+     * @param offering The <code>Offering</code> to delete in the database.
+     */
+    public void deleteOffering(Offering offering)
+    {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try
+        {
+            unindexOffering(db, offering.getCRN(), offering.getSemesterCode());
+            // DELETE THE TABLE ROW
+            SQLiteStatement delete = mStatements.get(db, DELETE_OFFERING);
+            delete.bindLong(1, offering.getCRN());
+            delete.bindLong(2, offering.getSemesterCode());
+            delete.executeUpdateDelete();
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes all <code>Offering</code>s in the database.
      */
     public void deleteAllOfferings()
     {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(OFFERINGS_TABLE, null, null);
-        db.close();
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try
+        {
+            db.delete(SEARCH_TABLE, null, null);
+            db.delete(COURSE_COUNTS_TABLE, null, null);
+            db.delete(INSTRUCTOR_COUNTS_TABLE, null, null);
+            db.delete(OFFERINGS_TABLE, null, null);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Updates an <code>Offering</code> record, identified by its CRN and semester code, in the
+     * database.
+     *
+     * @param offering The <code>Offering</code> to update in the database.
+     */
+    public void updateOffering(Offering offering)
+    {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try
+        {
+            unindexOffering(db, offering.getCRN(), offering.getSemesterCode());
+            SQLiteStatement update = mStatements.get(db, UPDATE_OFFERING);
+            bindOffering(update, offering);
+            if (update.executeUpdateDelete() > 0)
+                reindexOffering(db, offering);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Gets an <code>Offering</code> in the database. If the CRN is used in more than one
+     * semester, the most recent semester's <code>Offering</code> is returned.
+     *
+     * @param crn The CRN of the <code>Offering</code> to get in the database.
+     * @return The <code>Offering</code> to get in the database, or null if there is none.
+     */
+    public Offering getOffering(int crn)
+    {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(OFFERING_BY_CRN_QUERY, idArgs(crn));
+
+        Offering offering = null;
+        if (cursor.moveToFirst())
+            offering = readOffering(cursor, new OfferingParents(this, 1));
+
+        cursor.close();
+        return offering;
+    }
+
+    //********** BATCH OPERATIONS:  ADD, EDIT, DELETE many Courses, Instructors and Offerings
+
+    /**
+     * Writes one entity of a batch with a compiled statement.
+     *
+     * @param <T> The type of entity.
+     */
+    private abstract static class BatchWriter<T>
+    {
+        /**
+         * Binds an entity to the compiled statement.
+         *
+         * @param statement The compiled statement, with its bindings cleared.
+         * @param entity    The entity.
+         */
+        abstract void bind(SQLiteStatement statement, T entity);
+
+        /**
+         * Called before an entity's statement runs, inside the batch's transaction.
+         *
+         * @param database The database.
+         * @param entity   The entity.
+         */
+        void beforeWrite(SQLiteDatabase database, T entity)
+        {
+        }
+
+        /**
+         * Called after an entity's statement ran, inside the batch's transaction.
+         *
+         * @param database The database.
+         * @param entity   The entity.
+         * @param result   The row ID of an insert, or the number of rows an update or delete
+         *                 changed.
+         */
+        void afterWrite(SQLiteDatabase database, T entity, long result)
+        {
+        }
+    }
+
+    /**
+     * Adds <code>Course</code>s to the database in one transaction, with one compiled insert
+     * statement. <code>Course</code>s that already have an ID are stored under it. If any insert
+     * fails, for example because an ID is taken, none of the <code>Course</code>s are added.
+     *
+     * @param courses The <code>Course</code>s to add to the database.
+     * @return The ID given to each <code>Course</code>, in iteration order.
+     * @throws SQLException If a <code>Course</code> could not be added.
+     */
+    public long[] addCourses(Collection<Course> courses)
+    {
+        return writeBatch("INSERT INTO " + COURSES_TABLE + " ("
+                        + FIELD_ALPHA + ", " + FIELD_NUMBER + ", " + FIELD_TITLE + ", "
+                        + COURSES_KEY_FIELD_ID + ") VALUES (?, ?, ?, ?)", true, courses,
+                new BatchWriter<Course>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Course course)
+                    {
+                        bindStrings(statement, course.getAlpha(), course.getNumber(),
+                                course.getTitle());
+                        bindId(statement, 4, course.getId());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Course course, long id)
+                    {
+                        // Offerings may already reference the new ID
+                        reindexOfferings(database, "o." + FIELD_COURSE_ID + " = ?",
+                                new String[]{String.valueOf(id)});
+                    }
+                });
+    }
+
+    /**
+     * Updates <code>Course</code> records in the database in one transaction, with one compiled
+     * update statement. If any update fails, none of the <code>Course</code>s are updated.
+     *
+     * @param courses The <code>Course</code>s to update in the database.
+     * @return The number of rows updated for each <code>Course</code>, in iteration order: 0 if
+     * its ID was not found.
+     * @throws SQLException If a <code>Course</code> could not be updated.
+     */
+    public int[] updateCourses(Collection<Course> courses)
+    {
+        int[] updated = toCounts(writeBatch("UPDATE " + COURSES_TABLE + " SET "
+                        + FIELD_ALPHA + " = ?, " + FIELD_NUMBER + " = ?, " + FIELD_TITLE + " = ?"
+                        + " WHERE " + COURSES_KEY_FIELD_ID + " = ?", false, courses,
+                new BatchWriter<Course>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Course course)
+                    {
+                        bindStrings(statement, course.getAlpha(), course.getNumber(),
+                                course.getTitle());
+                        statement.bindLong(4, course.getId());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Course course, long rows)
+                    {
+                        reindexOfferings(database, "o." + FIELD_COURSE_ID + " = ?",
+                                new String[]{String.valueOf(course.getId())});
+                    }
+                }));
+        for (Course course : courses)
+            mCourseCache.remove(course.getId());
+        return updated;
+    }
+
+    /**
+     * Deletes <code>Course</code>s in the database in one transaction, with one compiled delete
+     * statement. If any delete fails, none of the <code>Course</code>s are deleted.
+     *
+     * @param courses The <code>Course</code>s to delete in the database.
+     * @return The number of rows deleted for each <code>Course</code>, in iteration order: 0 if
+     * its ID was not found.
+     * @throws SQLException If a <code>Course</code> could not be deleted.
+     */
+    public int[] deleteCourses(Collection<Course> courses)
+    {
+        int[] deleted = toCounts(writeBatch("DELETE FROM " + COURSES_TABLE
+                        + " WHERE " + COURSES_KEY_FIELD_ID + " = ?", false, courses,
+                new BatchWriter<Course>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Course course)
+                    {
+                        statement.bindLong(1, course.getId());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Course course, long rows)
+                    {
+                        reindexOfferings(database, "o." + FIELD_COURSE_ID + " = ?",
+                                new String[]{String.valueOf(course.getId())});
+                    }
+                }));
+        for (Course course : courses)
+            mCourseCache.remove(course.getId());
+        return deleted;
+    }
+
+    /**
+     * Adds <code>Instructor</code>s to the database in one transaction, with one compiled insert
+     * statement. <code>Instructor</code>s that already have an ID are stored under it. If any
+     * insert fails, for example because an ID is taken, none of the <code>Instructor</code>s are
+     * added.
+     *
+     * @param instructors The <code>Instructor</code>s to add to the database.
+     * @return The ID given to each <code>Instructor</code>, in iteration order.
+     * @throws SQLException If an <code>Instructor</code> could not be added.
+     */
+    public long[] addInstructors(Collection<Instructor> instructors)
+    {
+        return writeBatch("INSERT INTO " + INSTRUCTORS_TABLE + " ("
+                        + FIELD_FIRST_NAME + ", " + FIELD_LAST_NAME + ", " + FIELD_EMAIL + ", "
+                        + INSTRUCTORS_KEY_FIELD_ID + ") VALUES (?, ?, ?, ?)", true, instructors,
+                new BatchWriter<Instructor>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Instructor instructor)
+                    {
+                        bindStrings(statement, instructor.getFirstName(),
+                                instructor.getLastName(), instructor.getEmail());
+                        bindId(statement, 4, instructor.getId());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Instructor instructor, long id)
+                    {
+                        // Offerings may already reference the new ID
+                        reindexOfferings(database, "o." + FIELD_INSTRUCTOR_ID + " = ?",
+                                new String[]{String.valueOf(id)});
+                    }
+                });
+    }
+
+    /**
+     * Updates <code>Instructor</code> records in the database in one transaction, with one
+     * compiled update statement. If any update fails, none of the <code>Instructor</code>s are
+     * updated.
+     *
+     * @param instructors The <code>Instructor</code>s to update in the database.
+     * @return The number of rows updated for each <code>Instructor</code>, in iteration order: 0
+     * if its ID was not found.
+     * @throws SQLException If an <code>Instructor</code> could not be updated.
+     */
+    public int[] updateInstructors(Collection<Instructor> instructors)
+    {
+        int[] updated = toCounts(writeBatch("UPDATE " + INSTRUCTORS_TABLE + " SET "
+                        + FIELD_FIRST_NAME + " = ?, " + FIELD_LAST_NAME + " = ?, "
+                        + FIELD_EMAIL + " = ?"
+                        + " WHERE " + INSTRUCTORS_KEY_FIELD_ID + " = ?", false, instructors,
+                new BatchWriter<Instructor>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Instructor instructor)
+                    {
+                        bindStrings(statement, instructor.getFirstName(),
+                                instructor.getLastName(), instructor.getEmail());
+                        statement.bindLong(4, instructor.getId());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Instructor instructor, long rows)
+                    {
+                        reindexOfferings(database, "o." + FIELD_INSTRUCTOR_ID + " = ?",
+                                new String[]{String.valueOf(instructor.getId())});
+                    }
+                }));
+        for (Instructor instructor : instructors)
+            mInstructorCache.remove(instructor.getId());
+        return updated;
+    }
+
+    /**
+     * Deletes <code>Instructor</code>s in the database in one transaction, with one compiled
+     * delete statement. If any delete fails, none of the <code>Instructor</code>s are deleted.
+     *
+     * @param instructors The <code>Instructor</code>s to delete in the database.
+     * @return The number of rows deleted for each <code>Instructor</code>, in iteration order: 0
+     * if its ID was not found.
+     * @throws SQLException If an <code>Instructor</code> could not be deleted.
+     */
+    public int[] deleteInstructors(Collection<Instructor> instructors)
+    {
+        int[] deleted = toCounts(writeBatch("DELETE FROM " + INSTRUCTORS_TABLE
+                        + " WHERE " + INSTRUCTORS_KEY_FIELD_ID + " = ?", false, instructors,
+                new BatchWriter<Instructor>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Instructor instructor)
+                    {
+                        statement.bindLong(1, instructor.getId());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Instructor instructor, long rows)
+                    {
+                        reindexOfferings(database, "o." + FIELD_INSTRUCTOR_ID + " = ?",
+                                new String[]{String.valueOf(instructor.getId())});
+                    }
+                }));
+        for (Instructor instructor : instructors)
+            mInstructorCache.remove(instructor.getId());
+        return deleted;
+    }
+
+    /**
+     * Adds <code>Offering</code>s to the database in one transaction, with one compiled insert
+     * statement. If any insert fails, for example because an <code>Offering</code> with the same
+     * CRN and semester code exists, none of the <code>Offering</code>s are added.
+     *
+     * @param offerings The <code>Offering</code>s to add to the database.
+     * @return The row ID given to each <code>Offering</code>, in iteration order.
+     * @throws SQLException If an <code>Offering</code> could not be added.
+     */
+    public long[] addOfferings(Collection<Offering> offerings)
+    {
+        return writeBatch("INSERT INTO " + OFFERINGS_TABLE + " ("
+                        + FIELD_COURSE_ID + ", " + FIELD_INSTRUCTOR_ID + ", "
+                        + FIELD_CRN + ", " + FIELD_SEMESTER_CODE
+                        + ") VALUES (?, ?, ?, ?)", true, offerings,
+                new BatchWriter<Offering>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Offering offering)
+                    {
+                        bindOffering(statement, offering);
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Offering offering, long rowId)
+                    {
+                        indexNewOffering(database, rowId, offering.getSemesterCode(),
+                                offering.getCourseId(), offering.getInstructorId());
+                    }
+                });
+    }
+
+    /**
+     * Updates <code>Offering</code> records, identified by their CRN and semester code, in the
+     * database in one transaction, with one compiled update statement. If any update fails, none
+     * of the <code>Offering</code>s are updated.
+     *
+     * @param offerings The <code>Offering</code>s to update in the database.
+     * @return The number of rows updated for each <code>Offering</code>, in iteration order: 0 if
+     * its CRN and semester code were not found.
+     * @throws SQLException If an <code>Offering</code> could not be updated.
+     */
+    public int[] updateOfferings(Collection<Offering> offerings)
+    {
+        return toCounts(writeBatch("UPDATE " + OFFERINGS_TABLE + " SET "
+                        + FIELD_COURSE_ID + " = ?, " + FIELD_INSTRUCTOR_ID + " = ?"
+                        + " WHERE " + FIELD_CRN + " = ? AND " + FIELD_SEMESTER_CODE + " = ?",
+                false, offerings,
+                new BatchWriter<Offering>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Offering offering)
+                    {
+                        bindOffering(statement, offering);
+                    }
+
+                    @Override
+                    void beforeWrite(SQLiteDatabase database, Offering offering)
+                    {
+                        unindexOffering(database, offering.getCRN(), offering.getSemesterCode());
+                    }
+
+                    @Override
+                    void afterWrite(SQLiteDatabase database, Offering offering, long rows)
+                    {
+                        if (rows > 0) reindexOffering(database, offering);
+                    }
+                }));
+    }
+
+    /**
+     * Deletes <code>Offering</code>s, identified by their CRN and semester code, in the database
+     * in one transaction, with one compiled delete statement. If any delete fails, none of the
+     * <code>Offering</code>s are deleted.
+     *
+     * @param offerings The <code>Offering</code>s to delete in the database.
+     * @return The number of rows deleted for each <code>Offering</code>, in iteration order: 0 if
+     * its CRN and semester code were not found.
+     * @throws SQLException If an <code>Offering</code> could not be deleted.
+     */
+    public int[] deleteOfferings(Collection<Offering> offerings)
+    {
+        return toCounts(writeBatch("DELETE FROM " + OFFERINGS_TABLE
+                        + " WHERE " + FIELD_CRN + " = ? AND " + FIELD_SEMESTER_CODE + " = ?",
+                false, offerings,
+                new BatchWriter<Offering>()
+                {
+                    @Override
+                    void bind(SQLiteStatement statement, Offering offering)
+                    {
+                        statement.bindLong(1, offering.getCRN());
+                        statement.bindLong(2, offering.getSemesterCode());
+                    }
+
+                    @Override
+                    void beforeWrite(SQLiteDatabase database, Offering offering)
+                    {
+                        unindexOffering(database, offering.getCRN(), offering.getSemesterCode());
+                    }
+                }));
+    }
+
+    /**
+     * Runs one compiled statement per entity inside a single transaction. If a statement fails,
+     * the transaction is rolled back and nothing is written.
+     *
+     * @param sql      The statement to compile once and run for every entity.
+     * @param insert   True if the statement is an insert, false for an update or delete.
+     * @param entities The entities.
+     * @param writer   Binds each entity to the statement.
+     * @param <T>      The type of entity.
+     * @return The row ID of each insert, or the number of rows changed by each update or delete,
+     * in iteration order.
+     * @throws SQLException If a statement fails.
+     */
+    private <T> long[] writeBatch(String sql, boolean insert, Collection<? extends T> entities,
+                                  BatchWriter<T> writer)
+    {
+        long[] results = new long[entities.size()];
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(sql);
+        db.beginTransaction();
+        try
+        {
+            int i = 0;
+            for (T entity : entities)
+            {
+                statement.clearBindings();
+                writer.bind(statement, entity);
+                writer.beforeWrite(db, entity);
+                results[i] = insert ? statement.executeInsert() : statement.executeUpdateDelete();
+                writer.afterWrite(db, entity, results[i++]);
+            }
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+            statement.close();
+        }
+        return results;
+    }
+
+    /**
+     * Binds strings to the first parameters of a statement, binding null for null strings.
+     *
+     * @param statement The statement.
+     * @param values    The strings, in parameter order.
+     */
+    private static void bindStrings(SQLiteStatement statement, String... values)
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            if (values[i] == null) statement.bindNull(i + 1);
+            else statement.bindString(i + 1, values[i]);
+        }
+    }
+
+    /**
+     * Binds an ID to a statement parameter, binding null for an unassigned ID so that SQLite
+     * assigns one.
+     *
+     * @param statement The statement.
+     * @param index     The index of the parameter, starting at 1.
+     * @param id        The ID, or -1 if it is unassigned.
+     */
+    private static void bindId(SQLiteStatement statement, int index, long id)
+    {
+        if (id == -1) statement.bindNull(index);
+        else statement.bindLong(index, id);
+    }
+
+    /**
+     * Binds an <code>Offering</code>'s course ID, instructor ID, CRN and semester code, in that
+     * order, to a statement.
+     *
+     * @param statement The statement.
+     * @param offering  The <code>Offering</code>.
+     */
+    private static void bindOffering(SQLiteStatement statement, Offering offering)
+    {
+        statement.bindLong(1, offering.getCourseId());
+        statement.bindLong(2, offering.getInstructorId());
+        statement.bindLong(3, offering.getCRN());
+        statement.bindLong(4, offering.getSemesterCode());
+    }
+
+    private static int[] toCounts(long[] results)
+    {
+        int[] counts = new int[results.length];
+        for (int i = 0; i < results.length; i++)
+            counts[i] = (int) results[i];
+        return counts;
+    }
+
+    //********** SEMESTER OPERATIONS:  Offerings by semester, semester list, current semester
+
+    /**
+     * Gets all the <code>Offering</code>s of one semester, in CRN order. The semester is read
+     * from its own range of the semester index, so the query costs the same however many other
+     * semesters the database holds.
+     *
+     * @param semesterCode The semester code, e.g. 201731.
+     * @return A list of the semester's <code>Offering</code>s.
+     */
+    public List<Offering> getOfferingsForSemester(int semesterCode)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.rawQuery(OFFERINGS_QUERY
+                        + " WHERE o." + FIELD_SEMESTER_CODE + " = ?"
+                        + " ORDER BY o." + FIELD_CRN,
+                new String[]{String.valueOf(semesterCode)});
+        return toList(newOfferingIterator(cursor));
+    }
+
+    /**
+     * Gets one page of a semester's <code>Offering</code>s in CRN order, starting after a given
+     * CRN.
+     *
+     * @param semesterCode The semester code.
+     * @param afterCRN     The CRN of the last <code>Offering</code> of the previous page, or -1
+     *                     for the first page.
+     * @param pageSize     The maximum number of <code>Offering</code>s to get.
+     * @return The page of <code>Offering</code>s, empty after the last page.
+     * @see #getOfferingsPage(int, int, int)
+     */
+    public List<Offering> getSemesterOfferingsPage(int semesterCode, int afterCRN, int pageSize)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.rawQuery(OFFERINGS_QUERY
+                        + " WHERE o." + FIELD_SEMESTER_CODE + " = ? AND o." + FIELD_CRN + " > ?"
+                        + " ORDER BY o." + FIELD_CRN
+                        + " LIMIT " + pageSize,
+                new String[]{String.valueOf(semesterCode), String.valueOf(afterCRN)});
+        return toList(newOfferingIterator(cursor));
+    }
+
+    /**
+     * Gets the semesters that have <code>Offering</code>s. Each semester is found with one seek
+     * of the semester index past the previous one, rather than by reading every offering.
+     *
+     * @return The semester codes, in ascending order.
+     */
+    public int[] getSemesterCodes()
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        int[] semesterCodes = new int[8];
+        int count = 0;
+        long previous = Long.MIN_VALUE;
+        while (true)
+        {
+            Cursor cursor = database.rawQuery("SELECT MIN(" + FIELD_SEMESTER_CODE + ") FROM "
+                            + OFFERINGS_TABLE + " WHERE " + FIELD_SEMESTER_CODE + " > ?",
+                    new String[]{String.valueOf(previous)});
+            boolean found = cursor.moveToFirst() && !cursor.isNull(0);
+            if (found) previous = cursor.getInt(0);
+            cursor.close();
+            if (!found) break;
+
+            if (count == semesterCodes.length)
+                semesterCodes = Arrays.copyOf(semesterCodes, count * 2);
+            semesterCodes[count++] = (int) previous;
+        }
+        return Arrays.copyOf(semesterCodes, count);
+    }
+
+    /**
+     * Gets the semester to show by default: the one set with <code>setCurrentSemesterCode</code>,
+     * or else the latest semester that has <code>Offering</code>s.
+     *
+     * @return The current semester code, or -1 if there are no <code>Offering</code>s.
+     */
+    public int getCurrentSemesterCode()
+    {
+        String current = getMetadata(CURRENT_SEMESTER_KEY);
+        if (current != null)
+            return Integer.parseInt(current);
+
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.rawQuery("SELECT MAX(" + FIELD_SEMESTER_CODE + ") FROM "
+                + OFFERINGS_TABLE, null);
+        int semesterCode = -1;
+        if (cursor.moveToFirst() && !cursor.isNull(0))
+            semesterCode = cursor.getInt(0);
+        cursor.close();
+        return semesterCode;
+    }
+
+    /**
+     * Sets the semester to show by default.
+     *
+     * @param semesterCode The current semester code, or -1 to default to the latest semester.
+     */
+    public void setCurrentSemesterCode(int semesterCode)
+    {
+        if (semesterCode == -1)
+            this.getWritableDatabase().delete(METADATA_TABLE, METADATA_KEY_FIELD + " = ?",
+                    new String[]{CURRENT_SEMESTER_KEY});
+        else
+            putMetadata(CURRENT_SEMESTER_KEY, String.valueOf(semesterCode));
+    }
+
+    /**
+     * Deletes the <code>Offering</code>s of every semester before a given one, and removes them
+     * from the search index. Only the pruned semesters' range of the semester index is visited;
+     * the pages they free are reused by later imports rather than reclaimed by rebuilding the
+     * database.
+     *
+     * @param semesterCode The code of the oldest semester to keep.
+     * @return The number of <code>Offering</code>s deleted.
+     */
+    public int pruneSemestersBefore(int semesterCode)
+    {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] cutoff = new String[]{String.valueOf(semesterCode)};
+        db.beginTransaction();
+        try
+        {
+            unindexOfferings(db, "o." + FIELD_SEMESTER_CODE + " < ?", cutoff);
+            // Whole semesters go, so their counts can be dropped rather than recounted
+            db.delete(COURSE_COUNTS_TABLE, FIELD_SEMESTER_CODE + " < ?", cutoff);
+            db.delete(INSTRUCTOR_COUNTS_TABLE, FIELD_SEMESTER_CODE + " < ?", cutoff);
+            int deleted = db.delete(OFFERINGS_TABLE, FIELD_SEMESTER_CODE + " < ?", cutoff);
+            db.setTransactionSuccessful();
+            Log.i(TAG, "Pruned " + deleted + " offerings before semester " + semesterCode);
+            return deleted;
+        } finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    //********** STATISTICS:  Offerings per Course and per Instructor in a semester
+
+    /**
+     * Gets the number of <code>Offering</code>s (sections) of a <code>Course</code> in a
+     * semester. The count is kept up to date by every write to the Offerings table, so this is a
+     * single primary key lookup.
+     *
+     * @param courseId     The ID of the <code>Course</code>.
+     * @param semesterCode The semester code.
+     * @return The number of <code>Offering</code>s.
+     */
+    public int getCourseOfferingCount(long courseId, int semesterCode)
+    {
+        return getOfferingCount(COURSE_COUNTS_TABLE, FIELD_COURSE_ID, courseId, semesterCode);
+    }
+
+    /**
+     * Gets the number of <code>Offering</code>s an <code>Instructor</code> teaches in a semester.
+     *
+     * @param instructorId The ID of the <code>Instructor</code>.
+     * @param semesterCode The semester code.
+     * @return The number of <code>Offering</code>s.
+     * @see #getCourseOfferingCount(long, int)
+     */
+    public int getInstructorOfferingCount(long instructorId, int semesterCode)
+    {
+        return getOfferingCount(INSTRUCTOR_COUNTS_TABLE, FIELD_INSTRUCTOR_ID, instructorId,
+                semesterCode);
+    }
+
+    /**
+     * Gets the number of <code>Offering</code>s of every <code>Course</code> in a semester, read
+     * from one range of the count table's primary key.
+     *
+     * @param semesterCode The semester code.
+     * @return The number of <code>Offering</code>s keyed by <code>Course</code> ID, for the
+     * <code>Course</code>s that have any.
+     */
+    public LongSparseArray<Integer> getCourseOfferingCounts(int semesterCode)
+    {
+        return getOfferingCounts(COURSE_COUNTS_TABLE, FIELD_COURSE_ID, semesterCode);
+    }
+
+    /**
+     * Gets the number of <code>Offering</code>s every <code>Instructor</code> teaches in a
+     * semester.
+     *
+     * @param semesterCode The semester code.
+     * @return The number of <code>Offering</code>s keyed by <code>Instructor</code> ID, for the
+     * <code>Instructor</code>s that teach any.
+     * @see #getCourseOfferingCounts(int)
+     */
+    public LongSparseArray<Integer> getInstructorOfferingCounts(int semesterCode)
+    {
+        return getOfferingCounts(INSTRUCTOR_COUNTS_TABLE, FIELD_INSTRUCTOR_ID, semesterCode);
+    }
+
+    private int getOfferingCount(String tableName, String parentField, long parentId,
+                                 int semesterCode)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.rawQuery("SELECT " + FIELD_OFFERING_COUNT + " FROM " + tableName
+                        + " WHERE " + FIELD_SEMESTER_CODE + " = ? AND " + parentField + " = ?",
+                new String[]{String.valueOf(semesterCode), String.valueOf(parentId)});
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    private LongSparseArray<Integer> getOfferingCounts(String tableName, String parentField,
+                                                       int semesterCode)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.rawQuery("SELECT " + parentField + ", " + FIELD_OFFERING_COUNT
+                        + " FROM " + tableName + " WHERE " + FIELD_SEMESTER_CODE + " = ?"
+                        + " ORDER BY " + parentField,
+                new String[]{String.valueOf(semesterCode)});
+        LongSparseArray<Integer> counts = new LongSparseArray<>(cursor.getCount());
+        // Rows arrive in key order, so each append goes at the end
+        while (cursor.moveToNext())
+            counts.append(cursor.getLong(0), cursor.getInt(1));
+        cursor.close();
+        return counts;
+    }
+
+    //********** PAGED AND STREAMING QUERIES:  Courses, Instructors and Offerings
+
+    /**
+     * Gets one page of <code>Course</code>s in ID order, starting after a given ID. Each page is
+     * read with an indexed range query, so it costs the same regardless of how far into the table
+     * it is.
+     *
+     * @param afterId  The ID of the last <code>Course</code> of the previous page, or -1 for the
+     *                 first page.
+     * @param pageSize The maximum number of <code>Course</code>s to get.
+     * @return The page of <code>Course</code>s, empty after the last page.
+     */
+    public List<Course> getCoursesPage(long afterId, int pageSize)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.query(COURSES_TABLE,
+                new String[]{COURSES_KEY_FIELD_ID, FIELD_ALPHA, FIELD_NUMBER, FIELD_TITLE},
+                COURSES_KEY_FIELD_ID + " > ?", new String[]{String.valueOf(afterId)},
+                null, null, COURSES_KEY_FIELD_ID, String.valueOf(pageSize));
+        return toList(newCourseIterator(cursor));
+    }
+
+    /**
+     * Gets one page of <code>Instructor</code>s in ID order, starting after a given ID.
+     *
+     * @param afterId  The ID of the last <code>Instructor</code> of the previous page, or -1 for
+     *                 the first page.
+     * @param pageSize The maximum number of <code>Instructor</code>s to get.
+     * @return The page of <code>Instructor</code>s, empty after the last page.
+     * @see #getCoursesPage(long, int)
+     */
+    public List<Instructor> getInstructorsPage(long afterId, int pageSize)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.query(INSTRUCTORS_TABLE,
+                new String[]{INSTRUCTORS_KEY_FIELD_ID, FIELD_LAST_NAME, FIELD_FIRST_NAME, FIELD_EMAIL},
+                INSTRUCTORS_KEY_FIELD_ID + " > ?", new String[]{String.valueOf(afterId)},
+                null, null, INSTRUCTORS_KEY_FIELD_ID, String.valueOf(pageSize));
+        return toList(newInstructorIterator(cursor));
+    }
+
+    /**
+     * Gets one page of <code>Offering</code>s in CRN and semester code order, starting after a
+     * given <code>Offering</code>. The page is read from the Offerings primary key index; its
+     * <code>Course</code>s and <code>Instructor</code>s are loaded together, one query per table,
+     * the first time any of them is asked for.
+     *
+     * @param afterCRN          The CRN of the last <code>Offering</code> of the previous page, or
+     *                          -1 for the first page.
+     * @param afterSemesterCode The semester code of the last <code>Offering</code> of the previous
+     *                          page, or -1 for the first page.
+     * @param pageSize          The maximum number of <code>Offering</code>s to get.
+     * @return The page of <code>Offering</code>s, empty after the last page.
+     */
+    public List<Offering> getOfferingsPage(int afterCRN, int afterSemesterCode, int pageSize)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        String crn = String.valueOf(afterCRN);
+        Cursor cursor = database.rawQuery(OFFERINGS_QUERY
+                        + " WHERE o." + FIELD_CRN + " >= ?"
+                        + " AND (o." + FIELD_CRN + " > ? OR o." + FIELD_SEMESTER_CODE + " > ?)"
+                        + " ORDER BY o." + FIELD_CRN + ", o." + FIELD_SEMESTER_CODE
+                        + " LIMIT " + pageSize,
+                new String[]{crn, crn, String.valueOf(afterSemesterCode)});
+        return toList(newOfferingIterator(cursor));
+    }
+
+    /**
+     * Streams all the <code>Course</code>s in the database, building each one only when the
+     * iterator reaches it. Call <code>close</code> on the iterator if it is not read to the end.
+     *
+     * @return An iterator over all <code>Course</code>s.
+     */
+    public CursorIterator<Course> iterateCourses()
+    {
+        return newCourseIterator(this.getReadableDatabase().query(COURSES_TABLE,
+                new String[]{COURSES_KEY_FIELD_ID, FIELD_ALPHA, FIELD_NUMBER, FIELD_TITLE},
+                null, null, null, null, null, null));
+    }
+
+    /**
+     * Streams all the <code>Instructor</code>s in the database.
+     *
+     * @return An iterator over all <code>Instructor</code>s.
+     * @see #iterateCourses()
+     */
+    public CursorIterator<Instructor> iterateInstructors()
+    {
+        return newInstructorIterator(this.getReadableDatabase().query(INSTRUCTORS_TABLE,
+                new String[]{INSTRUCTORS_KEY_FIELD_ID, FIELD_LAST_NAME, FIELD_FIRST_NAME, FIELD_EMAIL},
+                null, null, null, null, null, null));
+    }
+
+    /**
+     * Streams all the <code>Offering</code>s in the database. The <code>Course</code>s and
+     * <code>Instructor</code>s of every 256 <code>Offering</code>s are loaded together, the first
+     * time any of them is asked for.
+     *
+     * @return An iterator over all <code>Offering</code>s.
+     * @see #iterateCourses()
+     */
+    public CursorIterator<Offering> iterateOfferings()
+    {
+        return newOfferingIterator(this.getReadableDatabase().rawQuery(OFFERINGS_QUERY, null));
+    }
+
+    private static CursorIterator<Course> newCourseIterator(Cursor cursor)
+    {
+        return new CursorIterator<Course>(cursor)
+        {
+            @Override
+            Course read(Cursor cursor)
+            {
+                return new Course(cursor.getLong(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3));
+            }
+        };
+    }
+
+    private static CursorIterator<Instructor> newInstructorIterator(Cursor cursor)
+    {
+        return new CursorIterator<Instructor>(cursor)
+        {
+            @Override
+            Instructor read(Cursor cursor)
+            {
+                return new Instructor(cursor.getLong(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3));
+            }
+        };
+    }
+
+    private CursorIterator<Offering> newOfferingIterator(Cursor cursor)
+    {
+        return new CursorIterator<Offering>(cursor)
+        {
+            private OfferingParents mParents = new OfferingParents(DBHelper.this,
+                    OFFERING_PARENTS_BATCH);
+
+            @Override
+            Offering read(Cursor cursor)
+            {
+                if (mParents.isFull())
+                    mParents = new OfferingParents(DBHelper.this, OFFERING_PARENTS_BATCH);
+                return readOffering(cursor, mParents);
+            }
+        };
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator)
+    {
+        List<T> list = new ArrayList<>();
+        while (iterator.hasNext())
+            list.add(iterator.next());
+        return list;
+    }
+
+    //********** SNAPSHOT OPERATIONS:  Catalog
+
+    /**
+     * Loads an immutable in-memory snapshot of all the <code>Course</code>s,
+     * <code>Instructor</code>s and <code>Offering</code>s, for read-only queries that do not go
+     * through the database. The three tables are read in one transaction, so they are read as of
+     * the same commit.
+     * <p>
+     * Android runs every transaction on the primary, writable connection, and
+     * <code>beginTransactionNonExclusive</code> starts it with <code>BEGIN IMMEDIATE</code>, which
+     * takes the write lock; a pooled read-only connection cannot hold one snapshot across three
+     * queries. So this waits for any write transaction in progress to commit, and blocks writers
+     * until all three tables are read. An import that commits batch by batch, such as
+     * <code>pipelinedImportFromCSV</code>, may therefore be seen partly done, as of the last batch
+     * committed.
+     *
+     * @return The <code>Catalog</code> snapshot.
+     */
+    public Catalog loadCatalog()
+    {
+        SQLiteDatabase database = this.getWritableDatabase();
+        database.beginTransactionNonExclusive();
+        try
+        {
+            Catalog catalog = new Catalog(
+                    database.query(COURSES_TABLE,
+                            new String[]{COURSES_KEY_FIELD_ID, FIELD_ALPHA, FIELD_NUMBER, FIELD_TITLE},
+                            null, null, null, null, COURSES_KEY_FIELD_ID),
+                    database.query(INSTRUCTORS_TABLE,
+                            new String[]{INSTRUCTORS_KEY_FIELD_ID, FIELD_LAST_NAME, FIELD_FIRST_NAME,
+                                    FIELD_EMAIL},
+                            null, null, null, null, INSTRUCTORS_KEY_FIELD_ID),
+                    database.query(OFFERINGS_TABLE,
+                            new String[]{FIELD_CRN, FIELD_SEMESTER_CODE, FIELD_COURSE_ID,
+                                    FIELD_INSTRUCTOR_ID},
+                            null, null, null, null, FIELD_SEMESTER_CODE + ", " + FIELD_CRN));
+            database.setTransactionSuccessful();
+            Log.i(TAG, catalog.toString());
+            return catalog;
+        } finally
+        {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Opens the binary snapshot of the catalog written after the last import. It is
+     * memory-mapped, so the first queries can be answered from it before the database is opened
+     * and without parsing the CSVs. Its checksum is checked before it is returned, which reads the
+     * whole file, so call this off the UI thread. An invalid snapshot, e.g. one written in an
+     * older format, truncated or corrupted, is deleted.
+     *
+     * @return The <code>CatalogSnapshot</code>, or null if there is no valid one, in which case the
+     * CSVs must be imported first, e.g. with <code>importAssetsIfChanged</code>.
+     */
+    public CatalogSnapshot openCatalogSnapshot()
+    {
+        return openCatalogSnapshot(true);
+    }
+
+    /**
+     * Opens the binary snapshot of the catalog, deleting it if it is invalid.
+     *
+     * @param verify True to check its checksum as well as its header, false to check only its
+     *               header, for a caller that reads nothing but the header.
+     * @return The <code>CatalogSnapshot</code>, or null if there is no valid one.
+     */
+    private CatalogSnapshot openCatalogSnapshot(boolean verify)
+    {
+        File file = getCatalogSnapshotFile();
+        if (!file.exists()) return null;
+        try
+        {
+            CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+            if (verify) snapshot.verify();
+            Log.i(TAG, snapshot.toString());
+            return snapshot;
+        } catch (IOException e)
+        {
+            Log.w(TAG, "Discarding invalid catalog snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the binary snapshot of the catalog from a <code>Catalog</code> loaded from the
+     * database, replacing any existing snapshot.
+     *
+     * @param assetsHash The hash of the CSVs the database was imported from, or null if unknown.
+     * @return True if the snapshot was written, false if it could not be.
+     */
+    boolean writeCatalogSnapshot(String assetsHash)
+    {
+        try
+        {
+            CatalogSnapshot.write(loadCatalog(), assetsHash, getCatalogSnapshotFile());
+            return true;
+        } catch (IOException e)
+        {
+            Log.e(TAG, "Could not write catalog snapshot", e);
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the catalog snapshot unless it was taken from the given CSVs. Only the header of an
+     * existing snapshot is read, so a warm start does not checksum it; a corrupt one is caught
+     * when it is opened for reading.
+     *
+     * @param assetsHash The hash of the CSVs the database was imported from.
+     */
+    private void refreshCatalogSnapshot(String assetsHash)
+    {
+        CatalogSnapshot snapshot = openCatalogSnapshot(false);
+        String sourceHash = null;
+        try
+        {
+            if (snapshot != null) sourceHash = snapshot.getSourceHash();
+        } catch (IllegalStateException e)
+        {
+            Log.w(TAG, "Rewriting corrupt catalog snapshot", e);
+        }
+        if (!assetsHash.equals(sourceHash))
+            writeCatalogSnapshot(assetsHash);
+    }
+
+    /**
+     * Gets the catalog snapshot file.
+     *
+     * @return The snapshot file, in the app's files directory.
+     */
+    File getCatalogSnapshotFile()
+    {
+        return new File(mContext.getFilesDir(), SNAPSHOT_FILE);
+    }
+
+    //********** SEARCH OPERATIONS:  Offerings
+
+    /**
+     * Searches the <code>Offering</code>s by course (e.g. "cs a273" or "csa273"), title and
+     * instructor name. Every word of the query must match the start of a word in one of these, so
+     * a partly typed query already finds results. Matches are ranked by relevance: a match in the
+     * course counts more than one in the title, which counts more than one in the instructor's
+     * name, and rare words count more than common ones.
+     * <p>
+     * Matches are ranked from the search table alone; only the best <code>limit</code> of them
+     * are then read from the Offerings table.
+     *
+     * @param query The search query.
+     * @param limit The maximum number of <code>Offering</code>s to get.
+     * @return The best matching <code>Offering</code>s, best first, or an empty list if the query
+     * has no words.
+     */
+    public List<Offering> searchOfferings(String query, int limit)
+    {
+        List<Offering> offeringsList = new ArrayList<>();
+        String match = toMatchQuery(query);
+        if (match == null || limit <= 0) return offeringsList;
+
+        SQLiteDatabase database = this.getReadableDatabase();
+        TopMatches matches = new TopMatches(limit);
+        Cursor cursor = database.rawQuery("SELECT docid, matchinfo(" + SEARCH_TABLE + ", 'pcnx')"
+                        + " FROM " + SEARCH_TABLE + " WHERE " + SEARCH_TABLE + " MATCH ?",
+                new String[]{match});
+        while (cursor.moveToNext())
+            matches.offer(cursor.getLong(0), score(cursor.getBlob(1)));
+        cursor.close();
+        if (matches.size() == 0) return offeringsList;
+
+        long[] rowIds = matches.drain();
+        StringBuilder inList = new StringBuilder();
+        for (long rowId : rowIds)
+            inList.append(inList.length() == 0 ? "" : ",").append(rowId);
+        cursor = database.rawQuery(OFFERINGS_QUERY + " WHERE o.rowid IN (" + inList + ")",
+                null);
+
+        LongSparseArray<Offering> offerings = new LongSparseArray<>(rowIds.length);
+        OfferingParents parents = new OfferingParents(this, rowIds.length);
+        while (cursor.moveToNext())
+            offerings.put(cursor.getLong(4), readOffering(cursor, parents));
+        cursor.close();
+
+        // Put the Offerings back in rank order
+        for (long rowId : rowIds)
+        {
+            Offering offering = offerings.get(rowId);
+            if (offering != null) offeringsList.add(offering);
+        }
+        return offeringsList;
+    }
+
+    /**
+     * Turns a search query into an FTS query that matches every word of it as a prefix. Only
+     * letters and digits are kept, so the query cannot use FTS operators or syntax.
+     *
+     * @param query The search query.
+     * @return The FTS query, or null if the search query has no words.
+     */
+    static String toMatchQuery(String query)
+    {
+        if (query == null) return null;
+
+        StringBuilder match = new StringBuilder();
+        int length = query.length();
+        for (int i = 0; i < length; )
+        {
+            while (i < length && !Character.isLetterOrDigit(query.charAt(i)))
+                i++;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(query.charAt(i)))
+                i++;
+            if (start == i) continue;
+
+            if (match.length() > 0) match.append(' ');
+            // Lower case, as upper case AND, OR and NOT are operators
+            match.append(query.substring(start, i).toLowerCase(Locale.US)).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Scores a search match from its FTS <code>matchinfo(..., 'pcnx')</code>: for every word of
+     * the query and every column, the column's weight times the word's hits in the match times
+     * the word's inverse document frequency in that column.
+     *
+     * @param matchInfo The match statistics.
+     * @return The score of the match; higher is better.
+     */
+    private static double score(byte[] matchInfo)
+    {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        double documents = info.get(2);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                int stats = 3 + 3 * (phrase * columns + column);
+                int hits = info.get(stats);
+                if (hits == 0) continue;
+                int documentsWithHits = info.get(stats + 2);
+                score += SEARCH_COLUMN_WEIGHTS[column] * hits
+                        * Math.log(1.0 + documents / documentsWithHits);
+            }
+        }
+        return score;
+    }
+
+    //********** IMPORT FROM CSV OPERATIONS:  Courses, Instructors and Offerings
+
+    /**
+     * Imports <code>Course</code>s from a CSV, one <code>addCourse</code> call per row.
+     *
+     * @param csvFileName The name of the CSV file to import from.
+     * @return True if the file was read, false otherwise.
+     */
+    public boolean importCoursesFromCSV(String csvFileName)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv != null && importCoursesFromCSV(csv);
+    }
+
+    /**
+     * Imports <code>Course</code>s from CSV text, one row at a time.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return True if the text was read, false otherwise.
+     * @see #importCoursesFromCSV(String)
+     */
+    boolean importCoursesFromCSV(Reader csv)
+    {
+        CsvReader reader = new CsvReader(csv);
+
+        try
+        {
+            while (reader.nextRow())
+            {
+                if (reader.getFieldCount() != 4)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    continue;
+                }
+                try
+                {
+                    int id = reader.getInt(0);
+                    String alpha = reader.getString(1);
+                    String number = reader.getString(2);
+                    String title = reader.getString(3);
+                    addCourse(new Course(id, alpha, number, title));
+                } catch (NumberFormatException e)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                }
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return false;
+        } finally
+        {
+            closeCSV(reader);
+        }
+        return true;
+    }
+
+    /**
+     * Imports <code>Instructor</code>s from a CSV, one <code>addInstructor</code> call per row.
+     *
+     * @param csvFileName The name of the CSV file to import from.
+     * @return True if the file was read, false otherwise.
+     */
+    public boolean importInstructorsFromCSV(String csvFileName)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv != null && importInstructorsFromCSV(csv);
+    }
+
+    /**
+     * Imports <code>Instructor</code>s from CSV text, one row at a time.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return True if the text was read, false otherwise.
+     * @see #importInstructorsFromCSV(String)
+     */
+    boolean importInstructorsFromCSV(Reader csv)
+    {
+        CsvReader reader = new CsvReader(csv);
+
+        try
+        {
+            while (reader.nextRow())
+            {
+                if (reader.getFieldCount() != 4)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    continue;
+                }
+                try
+                {
+                    int id = reader.getInt(0);
+                    String lastName = reader.getString(1);
+                    String firstName = reader.getString(2);
+                    String email = reader.getString(3);
+                    addInstructor(new Instructor(id, lastName, firstName, email));
+                } catch (NumberFormatException e)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                }
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return false;
+        } finally
+        {
+            closeCSV(reader);
+        }
+        return true;
+    }
+
+    /**
+     * Imports <code>Offering</code>s from a CSV, one <code>addOffering</code> call per row.
+     * Course and instructor IDs are resolved against the <code>Course</code>s and
+     * <code>Instructor</code>s loaded once before the import; rows that reference a missing one
+     * are skipped and counted in a summary logged at the end.
+     *
+     * @param csvFileName The name of the CSV file to import from.
+     * @return True if the file was read, false otherwise.
+     */
+    public boolean importOfferingsFromCSV(String csvFileName)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv != null && importOfferingsFromCSV(csv);
+    }
+
+    /**
+     * Imports <code>Offering</code>s from CSV text, one row at a time.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return True if the text was read, false otherwise.
+     * @see #importOfferingsFromCSV(String)
+     */
+    boolean importOfferingsFromCSV(Reader csv)
+    {
+        CsvReader reader = new CsvReader(csv);
+
+        long[] courseIds = getIds(COURSES_TABLE, COURSES_KEY_FIELD_ID);
+        long[] instructorIds = getIds(INSTRUCTORS_TABLE, INSTRUCTORS_KEY_FIELD_ID);
+
+        ImportStats stats = new ImportStats(OFFERINGS_TABLE);
+        try
+        {
+            while (reader.nextRow())
+            {
+                if (reader.getFieldCount() != 4)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
+                    continue;
+                }
+                int crn, semesterCode, courseID, instructorID;
+                try
+                {
+                    crn = reader.getInt(0);
+                    semesterCode = reader.getInt(1);
+                    courseID = reader.getInt(2);
+                    instructorID = reader.getInt(3);
+                } catch (NumberFormatException e)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
+                    continue;
+                }
+                if (!checkReferences(stats,
+                        Arrays.binarySearch(courseIds, courseID) >= 0,
+                        Arrays.binarySearch(instructorIds, instructorID) >= 0))
+                    continue;
+                if (insertOffering(new Offering(crn, semesterCode, courseID, instructorID, null))
+                        != -1)
+                    stats.rowImported();
+                else
+                {
+                    // INSERT OR IGNORE skipped the row because its CRN and semester are taken
+                    Log.d(TAG, "Skipping Duplicate CSV Row: " + reader);
+                    stats.duplicateKey();
+                    stats.rowRejected();
+                }
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return false;
+        } finally
+        {
+            closeCSV(reader);
+        }
+        stats.finish();
+        Log.i(TAG, stats.toString());
+        return true;
+    }
+
+    /**
+     * Opens a text file from the assets.
+     *
+     * @param fileName The name of the file.
+     * @return A <code>Reader</code> over the file, or null if it could not be opened.
+     */
+    private Reader openAsset(String fileName)
+    {
+        try
+        {
+            return new InputStreamReader(mContext.getAssets().open(fileName), "UTF-8");
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Closes the CSV text read by a <code>CsvReader</code>.
+     *
+     * @param reader The <code>CsvReader</code>.
+     */
+    private static void closeCSV(CsvReader reader)
+    {
+        try
+        {
+            reader.close();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records a row whose course or instructor reference does not exist as rejected.
+     *
+     * @param stats            The <code>ImportStats</code> of the current import.
+     * @param courseExists     Whether the row's course ID exists.
+     * @param instructorExists Whether the row's instructor ID exists.
+     * @return True if both references exist, false if the row was rejected.
+     */
+    private static boolean checkReferences(ImportStats stats, boolean courseExists,
+                                           boolean instructorExists)
+    {
+        if (!courseExists) stats.danglingCourseReference();
+        if (!instructorExists) stats.danglingInstructorReference();
+        if (courseExists && instructorExists) return true;
+
+        stats.rowRejected();
+        return false;
+    }
+
+    //********** METADATA TABLE OPERATIONS:  GET, PUT
+
+    /**
+     * Gets a value from the Metadata table.
+     *
+     * @param key The key of the value.
+     * @return The value, or null if there is none.
+     */
+    String getMetadata(String key)
+    {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(METADATA_TABLE, new String[]{FIELD_VALUE},
+                METADATA_KEY_FIELD + "=?", new String[]{key},
+                null, null, null, null);
+
+        String value = null;
+        if (cursor.moveToFirst())
+            value = cursor.getString(0);
+
+        cursor.close();
+        return value;
+    }
+
+    /**
+     * Puts a value into the Metadata table, replacing any existing value for its key.
+     *
+     * @param key   The key of the value.
+     * @param value The value.
+     */
+    void putMetadata(String key, String value)
+    {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+
+        values.put(METADATA_KEY_FIELD, key);
+        values.put(FIELD_VALUE, value);
+
+        db.insertWithOnConflict(METADATA_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    //********** STARTUP IMPORT OPERATIONS
+
+    /**
+     * Imports the bundled course, instructor and offering CSVs, replacing the existing data,
+     * unless the database was already imported from CSVs with exactly the same content. A warm
+     * start therefore only hashes the assets and does no import work. Either way, the catalog
+     * snapshot is then rewritten if it is missing, invalid or was taken from other CSVs.
+     * <p>
+     * Unlike <code>pipelinedImportFromCSV</code> on its own, the old data is deleted and the CSVs
+     * are imported in one transaction, which the batch transactions join. Readers keep seeing the
+     * old catalog until the whole import commits, and a failed import leaves it untouched.
+     *
+     * @param coursesCSV     The name of the courses CSV file.
+     * @param instructorsCSV The name of the instructors CSV file.
+     * @param offeringsCSV   The name of the offerings CSV file.
+     * @return True if the CSVs were imported, false if the database was already up to date.
+     * @throws SQLException If the CSVs could not be read or imported. The old catalog is kept.
+     */
+    public boolean importAssetsIfChanged(String coursesCSV, String instructorsCSV,
+                                         String offeringsCSV)
+    {
+        String assetsHash = hashAssets(coursesCSV, instructorsCSV, offeringsCSV);
+        if (assetsHash != null && assetsHash.equals(getMetadata(ASSETS_HASH_KEY)))
+        {
+            refreshCatalogSnapshot(assetsHash);
+            return false;
+        }
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        boolean imported = false;
+        db.beginTransaction();
+        try
+        {
+            deleteAllOfferings();
+            deleteAllInstructors();
+            deleteAllCourses();
+            imported = pipelinedImportFromCSV(coursesCSV, instructorsCSV, offeringsCSV) != null;
+
+            // Only remember the hash of a complete import, so a failed one is retried next time
+            if (imported)
+            {
+                if (assetsHash != null) putMetadata(ASSETS_HASH_KEY, assetsHash);
+                db.setTransactionSuccessful();
+            }
+        } finally
+        {
+            db.endTransaction();
+            // Readers may have cached the old rows again while the import was uncommitted
+            mCourseCache.clear();
+            mInstructorCache.clear();
+        }
+        if (!imported)
+            throw new SQLException("Could not import " + coursesCSV + ", " + instructorsCSV
+                    + " and " + offeringsCSV);
+
+        if (assetsHash != null) refreshCatalogSnapshot(assetsHash);
+        return true;
+    }
+
+    /**
+     * Installs the prebuilt database produced by the <code>buildCatalogDatabase</code> Gradle task
+     * in place of the current one, unless the current database was already imported from CSVs with
+     * the same content. This skips CSV parsing and inserts entirely. If the prebuilt database is
+     * missing, or was built from different CSVs, the CSVs are imported instead.
+     *
+     * @param databaseAsset  The name of the prebuilt database asset.
+     * @param coursesCSV     The name of the courses CSV file.
+     * @param instructorsCSV The name of the instructors CSV file.
+     * @param offeringsCSV   The name of the offerings CSV file.
+     * @return True if the database was replaced or re-imported, false if it was already up to date.
+     * @throws SQLException If the CSVs had to be imported and could not be.
+     */
+    public boolean installPrebuiltDatabase(String databaseAsset, String coursesCSV,
+                                           String instructorsCSV, String offeringsCSV)
+    {
+        File databaseFile = mContext.getDatabasePath(DATABASE_NAME);
+        if (databaseFile.exists())
+        {
+            String assetsHash = hashAssets(coursesCSV, instructorsCSV, offeringsCSV);
+            if (assetsHash != null && assetsHash.equals(getMetadata(ASSETS_HASH_KEY)))
+                return false;
+        }
+
+        // Copied next to the database first, so a missing asset or a failed copy leaves the
+        // current database in place, and a crash never leaves a partial one to be opened
+        File temporaryFile = new File(databaseFile.getPath() + ".tmp");
+        databaseFile.getParentFile().mkdirs();
+        boolean copied = false;
+        try
+        {
+            copyAsset(databaseAsset, temporaryFile);
+            copied = true;
+        } catch (IOException e)
+        {
+            Log.w(TAG, "Could not install prebuilt database, importing CSVs instead", e);
+            temporaryFile.delete();
+        }
+
+        if (copied)
+        {
+            close();
+            // Also deletes the journal and WAL files, which must not be applied to the new file
+            mContext.deleteDatabase(DATABASE_NAME);
+            mCourseCache.clear();
+            mInstructorCache.clear();
+            if (!temporaryFile.renameTo(databaseFile))
+            {
+                Log.w(TAG, "Could not replace " + databaseFile + ", importing CSVs instead");
+                temporaryFile.delete();
+            }
+        }
+
+        // A no-op when the prebuilt database matches the CSVs
+        importAssetsIfChanged(coursesCSV, instructorsCSV, offeringsCSV);
+        return true;
+    }
+
+    /**
+     * Copies an asset to a file and syncs the file to disk.
+     *
+     * @param assetName The name of the asset.
+     * @param file      The file to copy it to. It is overwritten if it exists.
+     * @throws IOException If the asset could not be read or the file could not be written.
+     */
+    private void copyAsset(String assetName, File file) throws IOException
+    {
+        InputStream inStream = mContext.getAssets().open(assetName);
+        try
+        {
+            FileOutputStream outStream = new FileOutputStream(file);
+            try
+            {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inStream.read(buffer)) != -1)
+                    outStream.write(buffer, 0, read);
+                outStream.getFD().sync();
+            } finally
+            {
+                outStream.close();
+            }
+        } finally
+        {
+            inStream.close();
+        }
+    }
+
+    /**
+     * Computes a SHA-1 hash over the content of the given asset files.
+     *
+     * @param fileNames The names of the asset files.
+     * @return The hash as a hexadecimal string, or null if an asset could not be read.
+     */
+    private String hashAssets(String... fileNames)
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+
+        byte[] buffer = new byte[8192];
+        for (String fileName : fileNames)
+        {
+            try
+            {
+                InputStream inStream = mContext.getAssets().open(fileName);
+                int read;
+                while ((read = inStream.read(buffer)) != -1)
+                    digest.update(buffer, 0, read);
+                inStream.close();
+            } catch (IOException e)
+            {
+                e.printStackTrace();
+                return null;
+            }
+            // Separate the files so moving bytes between them changes the hash
+            digest.update((byte) 0);
+        }
+
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest())
+            hash.append(String.format("%02x", b));
+        return hash.toString();
+    }
+
+    //********** BULK IMPORT FROM CSV OPERATIONS:  Courses, Instructors and Offerings
+
+    // How the importers resolve a row whose key is already in the table, unless told otherwise
+    static final int DEFAULT_IMPORT_CONFLICT = SQLiteDatabase.CONFLICT_IGNORE;
+
+    /**
+     * Binds one parsed CSV row to a compiled insert statement.
+     */
+    private interface RowBinder
+    {
+        /**
+         * Binds the fields of a CSV row to the insert statement.
+         *
+         * @param statement The compiled insert statement.
+         * @param row       The <code>CsvReader</code> positioned on the row.
+         * @param stats     The <code>ImportStats</code> of the current import.
+         * @return True if the row should be inserted, false if it was rejected.
+         * @throws NumberFormatException If a numeric field cannot be parsed.
+         */
+        boolean bind(SQLiteStatement statement, CsvReader row, ImportStats stats);
     }
 
     /**
-     * Updates an <code>Offering</code> record in the database.
+     * Imports <code>Course</code>s from a CSV inside a single transaction, reusing one compiled
+     * insert statement for every row instead of calling <code>addCourse</code> per row.
      *
-     * @param offering The <code>Offering</code> to update in the database.
+     * @param csvFileName The name of the CSV file to import from.
+     * @return The <code>ImportStats</code> of the import, or null if the file could not be read.
      */
-    public void updateOffering(Offering offering)
+    public ImportStats bulkImportCoursesFromCSV(String csvFileName)
     {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : bulkImportCoursesFromCSV(csv, DEFAULT_IMPORT_CONFLICT);
+    }
 
-        values.put(FIELD_SEMESTER_CODE, offering.getSemesterCode());
-        values.put(FIELD_COURSE_ID, offering.getCourse().getId());
-        values.put(FIELD_INSTRUCTOR_ID, offering.getInstructor().getId());
+    /**
+     * Imports <code>Course</code>s from a CSV inside a single transaction, resolving rows whose
+     * key is already in the table with a conflict algorithm.
+     *
+     * @param csvFileName       The name of the CSV file to import from.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_IGNORE</code> to skip such rows,
+     *                          <code>CONFLICT_REPLACE</code> to overwrite the existing row with
+     *                          them or <code>CONFLICT_FAIL</code> to fail the whole import.
+     * @return The <code>ImportStats</code> of the import, or null if the file could not be read or
+     * the import failed, in which case nothing is imported.
+     */
+    public ImportStats bulkImportCoursesFromCSV(String csvFileName, int conflictAlgorithm)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : bulkImportCoursesFromCSV(csv, conflictAlgorithm);
+    }
 
-        db.update(OFFERINGS_TABLE, values, FIELD_CRN + " = ?",
-                new String[]{String.valueOf(offering.getCRN())});
-        db.close();
+    /**
+     * Imports <code>Course</code>s from CSV text inside a single transaction.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read.
+     * @see #bulkImportCoursesFromCSV(String)
+     */
+    ImportStats bulkImportCoursesFromCSV(Reader csv)
+    {
+        return bulkImportCoursesFromCSV(csv, DEFAULT_IMPORT_CONFLICT);
     }
 
     /**
-     * Gets an <code>Offering</code> in the database.
+     * Imports <code>Course</code>s from CSV text inside a single transaction, resolving rows
+     * whose key is already in the table with a conflict algorithm.
      *
-     * @param crn The CRN of the <code>Offering</code> to get in the database.
-     * @return The <code>Offering</code> to get in the database.
+     * @param csv               The CSV text to import. It is closed when the import ends.
+     * @param conflictAlgorithm How to resolve a row whose key is already in the table.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read
+     * or the import failed.
+     * @see #bulkImportCoursesFromCSV(String, int)
      */
-    public Offering getOffering(int crn)
+    ImportStats bulkImportCoursesFromCSV(Reader csv, int conflictAlgorithm)
     {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(OFFERINGS_TABLE,
-                new String[]{FIELD_CRN, FIELD_SEMESTER_CODE, FIELD_COURSE_ID, FIELD_INSTRUCTOR_ID},
-                FIELD_CRN + "=?", new String[]{String.valueOf(crn)},
-                null, null, null, null);
+        return bulkImportFromCSV(csv, COURSES_TABLE,
+                insertInto(COURSES_TABLE, conflictAlgorithm) + " ("
+                        + COURSES_KEY_FIELD_ID + ", " + FIELD_ALPHA + ", " + FIELD_NUMBER + ", "
+                        + FIELD_TITLE + ") VALUES (?, ?, ?, ?)", conflictAlgorithm,
+                new RowBinder()
+                {
+                    @Override
+                    public boolean bind(SQLiteStatement statement, CsvReader row,
+                                        ImportStats stats)
+                    {
+                        statement.bindLong(1, row.getInt(0));
+                        statement.bindString(2, row.getString(1));
+                        statement.bindString(3, row.getString(2));
+                        statement.bindString(4, row.getString(3));
+                        return true;
+                    }
+                });
+    }
 
-        if (cursor != null) cursor.moveToFirst();
+    /**
+     * Imports <code>Instructor</code>s from a CSV inside a single transaction, reusing one
+     * compiled insert statement for every row instead of calling <code>addInstructor</code> per
+     * row.
+     *
+     * @param csvFileName The name of the CSV file to import from.
+     * @return The <code>ImportStats</code> of the import, or null if the file could not be read.
+     */
+    public ImportStats bulkImportInstructorsFromCSV(String csvFileName)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : bulkImportInstructorsFromCSV(csv, DEFAULT_IMPORT_CONFLICT);
+    }
 
-        Offering offering = new Offering(cursor.getInt(0),
-                cursor.getInt(1),
-                getCourse(cursor.getInt(2)),
-                getInstructor(cursor.getInt(3)));
+    /**
+     * Imports <code>Instructor</code>s from a CSV inside a single transaction, resolving rows whose
+     * key is already in the table with a conflict algorithm.
+     *
+     * @param csvFileName       The name of the CSV file to import from.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_IGNORE</code> to skip such rows,
+     *                          <code>CONFLICT_REPLACE</code> to overwrite the existing row with
+     *                          them or <code>CONFLICT_FAIL</code> to fail the whole import.
+     * @return The <code>ImportStats</code> of the import, or null if the file could not be read or
+     * the import failed, in which case nothing is imported.
+     */
+    public ImportStats bulkImportInstructorsFromCSV(String csvFileName, int conflictAlgorithm)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : bulkImportInstructorsFromCSV(csv, conflictAlgorithm);
+    }
 
-        cursor.close();
-        db.close();
-        return offering;
+    /**
+     * Imports <code>Instructor</code>s from CSV text inside a single transaction.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read.
+     * @see #bulkImportInstructorsFromCSV(String)
+     */
+    ImportStats bulkImportInstructorsFromCSV(Reader csv)
+    {
+        return bulkImportInstructorsFromCSV(csv, DEFAULT_IMPORT_CONFLICT);
     }
 
-    //********** IMPORT FROM CSV OPERATIONS:  Courses, Instructors and Offerings
+    /**
+     * Imports <code>Instructor</code>s from CSV text inside a single transaction, resolving rows
+     * whose key is already in the table with a conflict algorithm.
+     *
+     * @param csv               The CSV text to import. It is closed when the import ends.
+     * @param conflictAlgorithm How to resolve a row whose key is already in the table.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read
+     * or the import failed.
+     * @see #bulkImportInstructorsFromCSV(String, int)
+     */
+    ImportStats bulkImportInstructorsFromCSV(Reader csv, int conflictAlgorithm)
+    {
+        return bulkImportFromCSV(csv, INSTRUCTORS_TABLE,
+                insertInto(INSTRUCTORS_TABLE, conflictAlgorithm) + " ("
+                        + INSTRUCTORS_KEY_FIELD_ID + ", " + FIELD_LAST_NAME + ", "
+                        + FIELD_FIRST_NAME + ", " + FIELD_EMAIL + ") VALUES (?, ?, ?, ?)",
+                conflictAlgorithm,
+                new RowBinder()
+                {
+                    @Override
+                    public boolean bind(SQLiteStatement statement, CsvReader row,
+                                        ImportStats stats)
+                    {
+                        statement.bindLong(1, row.getInt(0));
+                        statement.bindString(2, row.getString(1));
+                        statement.bindString(3, row.getString(2));
+                        statement.bindString(4, row.getString(3));
+                        return true;
+                    }
+                });
+    }
 
     /**
-     * Imports <code>Course</code>s from a CSV.
+     * Imports <code>Offering</code>s from a CSV inside a single transaction, reusing one compiled
+     * insert statement for every row instead of calling <code>addOffering</code> per row.
+     * Course and instructor IDs are checked against the IDs loaded once before the import; rows
+     * that reference a missing one are rejected and counted in the returned stats.
      *
      * @param csvFileName The name of the CSV file to import from.
-     * @return True
+     * @return The <code>ImportStats</code> of the import, or null if the file could not be read.
      */
-    public boolean importCoursesFromCSV(String csvFileName)
+    public ImportStats bulkImportOfferingsFromCSV(String csvFileName)
     {
-        AssetManager manager = mContext.getAssets();
-        InputStream inStream;
-        try
-        {
-            inStream = manager.open(csvFileName);
-        } catch (IOException e)
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : bulkImportOfferingsFromCSV(csv, DEFAULT_IMPORT_CONFLICT);
+    }
+
+    /**
+     * Imports <code>Offering</code>s from a CSV inside a single transaction, resolving rows whose
+     * key is already in the table with a conflict algorithm.
+     *
+     * @param csvFileName       The name of the CSV file to import from.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_IGNORE</code> to skip such rows,
+     *                          <code>CONFLICT_REPLACE</code> to overwrite the existing row with
+     *                          them or <code>CONFLICT_FAIL</code> to fail the whole import.
+     * @return The <code>ImportStats</code> of the import, or null if the file could not be read or
+     * the import failed, in which case nothing is imported.
+     */
+    public ImportStats bulkImportOfferingsFromCSV(String csvFileName, int conflictAlgorithm)
+    {
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : bulkImportOfferingsFromCSV(csv, conflictAlgorithm);
+    }
+
+    /**
+     * Imports <code>Offering</code>s from CSV text inside a single transaction.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read.
+     * @see #bulkImportOfferingsFromCSV(String)
+     */
+    ImportStats bulkImportOfferingsFromCSV(Reader csv)
+    {
+        return bulkImportOfferingsFromCSV(csv, DEFAULT_IMPORT_CONFLICT);
+    }
+
+    /**
+     * Imports <code>Offering</code>s from CSV text inside a single transaction, resolving rows
+     * whose key is already in the table with a conflict algorithm.
+     *
+     * @param csv               The CSV text to import. It is closed when the import ends.
+     * @param conflictAlgorithm How to resolve a row whose key is already in the table.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read
+     * or the import failed.
+     * @see #bulkImportOfferingsFromCSV(String, int)
+     */
+    ImportStats bulkImportOfferingsFromCSV(Reader csv, int conflictAlgorithm)
+    {
+        final long[] courseIds = getIds(COURSES_TABLE, COURSES_KEY_FIELD_ID);
+        final long[] instructorIds = getIds(INSTRUCTORS_TABLE, INSTRUCTORS_KEY_FIELD_ID);
+        return bulkImportFromCSV(csv, OFFERINGS_TABLE,
+                insertInto(OFFERINGS_TABLE, conflictAlgorithm) + " ("
+                        + FIELD_CRN + ", " + FIELD_SEMESTER_CODE + ", "
+                        + FIELD_COURSE_ID + ", " + FIELD_INSTRUCTOR_ID
+                        + ") VALUES (?, ?, ?, ?)", conflictAlgorithm,
+                new RowBinder()
+                {
+                    @Override
+                    public boolean bind(SQLiteStatement statement, CsvReader row,
+                                        ImportStats stats)
+                    {
+                        int crn = row.getInt(0);
+                        int semesterCode = row.getInt(1);
+                        int courseID = row.getInt(2);
+                        int instructorID = row.getInt(3);
+                        if (!checkReferences(stats,
+                                Arrays.binarySearch(courseIds, courseID) >= 0,
+                                Arrays.binarySearch(instructorIds, instructorID) >= 0))
+                            return false;
+
+                        statement.bindLong(1, crn);
+                        statement.bindLong(2, semesterCode);
+                        statement.bindLong(3, courseID);
+                        statement.bindLong(4, instructorID);
+                        return true;
+                    }
+                });
+    }
+
+    /**
+     * Gets every key in a table.
+     *
+     * @param tableName The name of the table.
+     * @param keyField  The name of the key column.
+     * @return The keys of the table in ascending order.
+     */
+    private long[] getIds(String tableName, String keyField)
+    {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor cursor = database.query(tableName, new String[]{keyField},
+                null, null, null, null, keyField, null);
+
+        long[] ids = new long[cursor.getCount()];
+        for (int i = 0; cursor.moveToNext(); i++)
+            ids[i] = cursor.getLong(0);
+
+        cursor.close();
+        return ids;
+    }
+
+    /**
+     * Gets the start of an insert statement that resolves key conflicts with a conflict
+     * algorithm.
+     *
+     * @param tableName         The name of the table to insert into.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_IGNORE</code>,
+     *                          <code>CONFLICT_REPLACE</code> or <code>CONFLICT_FAIL</code>.
+     * @return The start of the insert statement, up to and including the table name.
+     * @throws IllegalArgumentException If the conflict algorithm is not one of the above.
+     */
+    private static String insertInto(String tableName, int conflictAlgorithm)
+    {
+        switch (conflictAlgorithm)
         {
-            e.printStackTrace();
-            return false;
+            case SQLiteDatabase.CONFLICT_IGNORE:
+                return "INSERT OR IGNORE INTO " + tableName;
+            case SQLiteDatabase.CONFLICT_REPLACE:
+                return "INSERT OR REPLACE INTO " + tableName;
+            case SQLiteDatabase.CONFLICT_FAIL:
+                return "INSERT OR FAIL INTO " + tableName;
+            default:
+                throw new IllegalArgumentException("Unsupported conflict algorithm: "
+                        + conflictAlgorithm);
         }
+    }
 
-        BufferedReader buffer = new BufferedReader(new InputStreamReader(inStream));
-        String line;
+    /**
+     * Streams a 4-column CSV and inserts every well-formed row inside one transaction, then
+     * rebuilds the search index and counts the new offerings in the same transaction. Rows that
+     * are rejected are logged with their line number. A row whose key is already in the table is
+     * rejected, replaces the existing row or fails the import, depending on the conflict
+     * algorithm.
+     *
+     * @param csv               The CSV text to import. It is closed when the import ends.
+     * @param tableName         The name of the table being imported into.
+     * @param insertSQL         The insert statement to compile once and reuse for every row.
+     * @param conflictAlgorithm The conflict algorithm of the insert statement.
+     * @param binder            Binds the fields of each row to the insert statement.
+     * @return The <code>ImportStats</code> of the import, or null if the text could not be read
+     * or the import failed.
+     */
+    private ImportStats bulkImportFromCSV(Reader csv, String tableName, String insertSQL,
+                                          int conflictAlgorithm, RowBinder binder)
+    {
+        CsvReader reader = new CsvReader(csv);
+
+        ImportStats stats = new ImportStats(tableName);
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(insertSQL);
+        db.beginTransaction();
         try
         {
-            while ((line = buffer.readLine()) != null)
+            long lastRowId = getLastOfferingRowId(db);
+            while (reader.nextRow())
             {
-                String[] fields = line.split(",");
-                if (fields.length != 4)
+                if (reader.getFieldCount() != 4)
                 {
-                    Log.d("OCC Course Finder", "Skipping Bad CSV Row: " + Arrays.toString(fields));
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
                     continue;
                 }
-                int id = Integer.parseInt(fields[0].trim());
-                String alpha = fields[1].trim();
-                String number = fields[2].trim();
-                String title = fields[3].trim();
-                addCourse(new Course(id, alpha, number, title));
+
+                try
+                {
+                    statement.clearBindings();
+                    if (!binder.bind(statement, reader, stats))
+                        continue;
+                    if (statement.executeInsert() != -1)
+                        stats.rowImported();
+                    else
+                    {
+                        // INSERT OR IGNORE skipped the row because its key is taken
+                        Log.d(TAG, "Skipping Duplicate CSV Row: " + reader);
+                        stats.duplicateKey();
+                        stats.rowRejected();
+                    }
+                } catch (SQLiteConstraintException e)
+                {
+                    if (conflictAlgorithm == SQLiteDatabase.CONFLICT_FAIL)
+                    {
+                        Log.e(TAG, "Duplicate CSV Row, rolling back the import: " + reader);
+                        return null;
+                    }
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
+                } catch (NumberFormatException | SQLException e)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
+                }
             }
+            // Index the new rows once, rather than per row as the row-by-row import does
+            rebuildSearchIndex(db);
+            // Count only the new offerings, unless replaced rows took counted ones with them
+            if (conflictAlgorithm == SQLiteDatabase.CONFLICT_REPLACE)
+                rebuildOfferingCounts(db);
+            else
+                countOfferings(db, "o.rowid > ?", new String[]{String.valueOf(lastRowId)}, 1);
+            db.setTransactionSuccessful();
         } catch (IOException e)
         {
             e.printStackTrace();
-            return false;
+            return null;
+        } finally
+        {
+            db.endTransaction();
+            statement.close();
+            stats.finish();
+            closeCSV(reader);
+            // Replaced rows may be cached; clearing after the commit stops readers caching them
+            // again
+            if (conflictAlgorithm == SQLiteDatabase.CONFLICT_REPLACE)
+            {
+                mCourseCache.clear();
+                mInstructorCache.clear();
+            }
+        }
+        Log.i(TAG, stats.toString());
+        return stats;
+    }
+
+    //********** PIPELINED IMPORT FROM CSV OPERATIONS:  Courses, Instructors and Offerings
+
+    // Rows parsed into each batch, and batches each queue holds before its parsers wait
+    private static final int IMPORT_BATCH_ROWS = 256;
+    private static final int IMPORT_QUEUE_BATCHES = 16;
+    private static final int IMPORT_COURSES = 0;
+    private static final int IMPORT_INSTRUCTORS = 1;
+    private static final int IMPORT_OFFERINGS = 2;
+
+    /**
+     * A batch of parsed CSV rows, handed from a parser thread to the writer. Each row has 4
+     * columns, kept in <code>mNumbers</code> or <code>mText</code> depending on the table.
+     */
+    private static final class ImportBatch
+    {
+        final int mTable;
+        final long[] mNumbers = new long[IMPORT_BATCH_ROWS * 4];
+        final String[] mText = new String[IMPORT_BATCH_ROWS * 4];
+        int mRows;
+        // Rows the parser rejected, to be recorded by the writer
+        int mRejected;
+        // Set on the final batch of a CSV
+        boolean mLast;
+        // Set if the CSV could not be read, on its final batch
+        Exception mError;
+
+        ImportBatch(int table)
+        {
+            mTable = table;
         }
-        return true;
     }
 
     /**
-     * Imports <code>Instructor</code>s from a CSV.
+     * Imports the course, instructor and offering CSVs through a pipeline: each CSV is parsed on
+     * its own thread into batches of rows, which the calling thread writes with one compiled
+     * statement per table and one transaction per batch. Courses and instructors are written as
+     * their batches arrive; offerings are parsed alongside them but only written once both are
+     * complete, so their references can be checked. Each queue between the parsers and the
+     * writer is bounded, so parsing never runs more than a few batches ahead of writing. The
+     * search index is rebuilt once at the end. The tables should be empty beforehand. Rows whose
+     * key is already in their table are skipped.
      *
-     * @param csvFileName The name of the CSV file to import from.
-     * @return True
+     * @param coursesCSV     The name of the courses CSV file.
+     * @param instructorsCSV The name of the instructors CSV file.
+     * @param offeringsCSV   The name of the offerings CSV file.
+     * @return The <code>ImportStats</code> of the courses, instructors and offerings imports, in
+     * that order, or null if a file could not be read, in which case the import may be partial.
      */
-    public boolean importInstructorsFromCSV(String csvFileName)
+    public ImportStats[] pipelinedImportFromCSV(String coursesCSV, String instructorsCSV,
+                                                String offeringsCSV)
+    {
+        return pipelinedImportAssets(coursesCSV, instructorsCSV, offeringsCSV,
+                DEFAULT_IMPORT_CONFLICT);
+    }
+
+    /**
+     * Imports the course, instructor and offering CSVs through a pipeline, resolving rows whose
+     * key is already in their table with a conflict algorithm.
+     *
+     * @param coursesCSV        The name of the courses CSV file.
+     * @param instructorsCSV    The name of the instructors CSV file.
+     * @param offeringsCSV      The name of the offerings CSV file.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_IGNORE</code> to skip such rows,
+     *                          <code>CONFLICT_REPLACE</code> to overwrite the existing row with
+     *                          them or <code>CONFLICT_FAIL</code> to stop the import.
+     * @return The <code>ImportStats</code> of the courses, instructors and offerings imports, in
+     * that order, or null if a file could not be read or the import was stopped, in which case
+     * the import may be partial.
+     * @see #pipelinedImportFromCSV(String, String, String)
+     */
+    public ImportStats[] pipelinedImportFromCSV(String coursesCSV, String instructorsCSV,
+                                                String offeringsCSV, int conflictAlgorithm)
+    {
+        return pipelinedImportAssets(coursesCSV, instructorsCSV, offeringsCSV, conflictAlgorithm);
+    }
+
+    /**
+     * Opens the course, instructor and offering CSV assets and imports them through a pipeline.
+     *
+     * @param coursesCSV        The name of the courses CSV file.
+     * @param instructorsCSV    The name of the instructors CSV file.
+     * @param offeringsCSV      The name of the offerings CSV file.
+     * @param conflictAlgorithm How to resolve a row whose key is already in its table.
+     * @return The <code>ImportStats</code> of the three imports, or null if a file could not be
+     * read or the import was stopped.
+     */
+    private ImportStats[] pipelinedImportAssets(String coursesCSV, String instructorsCSV,
+                                                String offeringsCSV, int conflictAlgorithm)
+    {
+        Reader courses = openAsset(coursesCSV);
+        Reader instructors = openAsset(instructorsCSV);
+        Reader offerings = openAsset(offeringsCSV);
+        if (courses != null && instructors != null && offerings != null)
+            return pipelinedImportFromCSV(courses, instructors, offerings, conflictAlgorithm);
+
+        for (Reader csv : new Reader[]{courses, instructors, offerings})
+        {
+            if (csv == null) continue;
+            try
+            {
+                csv.close();
+            } catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Imports course, instructor and offering CSV text through a pipeline.
+     *
+     * @param coursesCSV     The courses CSV text. It is closed when the import ends.
+     * @param instructorsCSV The instructors CSV text. It is closed when the import ends.
+     * @param offeringsCSV   The offerings CSV text. It is closed when the import ends.
+     * @return The <code>ImportStats</code> of the courses, instructors and offerings imports, in
+     * that order, or null if the text could not be read.
+     * @see #pipelinedImportFromCSV(String, String, String)
+     */
+    ImportStats[] pipelinedImportFromCSV(Reader coursesCSV, Reader instructorsCSV,
+                                         Reader offeringsCSV)
+    {
+        return pipelinedImportFromCSV(coursesCSV, instructorsCSV, offeringsCSV,
+                DEFAULT_IMPORT_CONFLICT);
+    }
+
+    /**
+     * Imports course, instructor and offering CSV text through a pipeline, resolving rows whose
+     * key is already in their table with a conflict algorithm.
+     *
+     * @param coursesCSV        The courses CSV text. It is closed when the import ends.
+     * @param instructorsCSV    The instructors CSV text. It is closed when the import ends.
+     * @param offeringsCSV      The offerings CSV text. It is closed when the import ends.
+     * @param conflictAlgorithm How to resolve a row whose key is already in its table.
+     * @return The <code>ImportStats</code> of the courses, instructors and offerings imports, in
+     * that order, or null if the text could not be read or the import was stopped.
+     * @see #pipelinedImportFromCSV(String, String, String, int)
+     */
+    ImportStats[] pipelinedImportFromCSV(Reader coursesCSV, Reader instructorsCSV,
+                                         Reader offeringsCSV, int conflictAlgorithm)
     {
-        AssetManager am = mContext.getAssets();
-        InputStream inStream = null;
+        ImportStats[] stats = new ImportStats[]{new ImportStats(COURSES_TABLE),
+                new ImportStats(INSTRUCTORS_TABLE), new ImportStats(OFFERINGS_TABLE)};
+        // Courses and instructors share a queue; offerings wait in their own until both are done
+        BlockingQueue<ImportBatch> parentBatches =
+                new ArrayBlockingQueue<>(2 * IMPORT_QUEUE_BATCHES);
+        BlockingQueue<ImportBatch> offeringBatches =
+                new ArrayBlockingQueue<>(IMPORT_QUEUE_BATCHES);
+
+        ExecutorService parsers = Executors.newFixedThreadPool(3);
+        parsers.execute(newBatchParser(coursesCSV, IMPORT_COURSES, false, parentBatches));
+        parsers.execute(newBatchParser(instructorsCSV, IMPORT_INSTRUCTORS, false, parentBatches));
+        parsers.execute(newBatchParser(offeringsCSV, IMPORT_OFFERINGS, true, offeringBatches));
+        // Nothing else will be submitted; the threads exit once their CSV is parsed
+        parsers.shutdown();
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement[] inserts = new SQLiteStatement[]{
+                db.compileStatement(insertInto(COURSES_TABLE, conflictAlgorithm) + " ("
+                        + COURSES_KEY_FIELD_ID + ", " + FIELD_ALPHA + ", " + FIELD_NUMBER + ", "
+                        + FIELD_TITLE + ") VALUES (?, ?, ?, ?)"),
+                db.compileStatement(insertInto(INSTRUCTORS_TABLE, conflictAlgorithm) + " ("
+                        + INSTRUCTORS_KEY_FIELD_ID + ", " + FIELD_LAST_NAME + ", "
+                        + FIELD_FIRST_NAME + ", " + FIELD_EMAIL + ") VALUES (?, ?, ?, ?)"),
+                db.compileStatement(insertInto(OFFERINGS_TABLE, conflictAlgorithm) + " ("
+                        + FIELD_CRN + ", " + FIELD_SEMESTER_CODE + ", "
+                        + FIELD_COURSE_ID + ", " + FIELD_INSTRUCTOR_ID
+                        + ") VALUES (?, ?, ?, ?)")};
         try
         {
-            inStream = am.open(csvFileName);
-        } catch (IOException e)
+            int parentsParsing = 2;
+            while (parentsParsing > 0)
+            {
+                ImportBatch batch = parentBatches.take();
+                int table = batch.mTable;
+                if (!writeImportBatch(db, inserts[table], batch, stats[table], null, null,
+                        conflictAlgorithm))
+                    return null;
+                if (batch.mLast) parentsParsing--;
+            }
+
+            long[] courseIds = getIds(COURSES_TABLE, COURSES_KEY_FIELD_ID);
+            long[] instructorIds = getIds(INSTRUCTORS_TABLE, INSTRUCTORS_KEY_FIELD_ID);
+            ImportBatch batch;
+            do
+            {
+                batch = offeringBatches.take();
+                if (!writeImportBatch(db, inserts[IMPORT_OFFERINGS], batch, stats[IMPORT_OFFERINGS],
+                        courseIds, instructorIds, conflictAlgorithm))
+                    return null;
+            } while (!batch.mLast);
+
+            db.beginTransaction();
+            try
+            {
+                rebuildSearchIndex(db);
+                db.setTransactionSuccessful();
+            } finally
+            {
+                db.endTransaction();
+            }
+        } catch (InterruptedException e)
         {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
+            return null;
+        } finally
+        {
+            // Stops any parser still waiting on a full queue after a failed import
+            parsers.shutdownNow();
+            for (SQLiteStatement insert : inserts)
+                insert.close();
+            // Replaced rows may be cached; clearing after the last batch commits stops readers
+            // caching them again
+            if (conflictAlgorithm == SQLiteDatabase.CONFLICT_REPLACE)
+            {
+                mCourseCache.clear();
+                mInstructorCache.clear();
+            }
         }
 
-        BufferedReader buffer = new BufferedReader(new InputStreamReader(inStream));
-        String line;
-        try
+        for (ImportStats tableStats : stats)
+            Log.i(TAG, tableStats.toString());
+        return stats;
+    }
+
+    /**
+     * Imports course, instructor and offering CSV text through the pipeline of
+     * <code>pipelinedImportFromCSV</code>.
+     *
+     * @see #pipelinedImportFromCSV(Reader, Reader, Reader, int)
+     */
+    @Override
+    public ImportStats[] importFromCSV(Reader coursesCSV, Reader instructorsCSV,
+                                       Reader offeringsCSV, int conflictAlgorithm)
+    {
+        return pipelinedImportFromCSV(coursesCSV, instructorsCSV, offeringsCSV,
+                conflictAlgorithm);
+    }
+
+    /**
+     * Creates a task that parses a 4-column CSV into <code>ImportBatch</code>es and puts them on
+     * a queue, ending with a batch marked as the last one. Rows with the wrong number of columns,
+     * or a malformed number, are counted in the batch as rejected.
+     *
+     * @param csv     The CSV text to parse. It is closed when the task ends.
+     * @param table   The table the rows are for.
+     * @param numeric True if every column is a number, false if the first column is a number and
+     *                the rest are text.
+     * @param batches The queue to put the batches on.
+     * @return The parsing task.
+     */
+    private static Runnable newBatchParser(final Reader csv, final int table,
+                                           final boolean numeric,
+                                           final BlockingQueue<ImportBatch> batches)
+    {
+        return new Runnable()
         {
-            while ((line = buffer.readLine()) != null)
+            @Override
+            public void run()
             {
-                String[] fields = line.split(",");
-                if (fields.length != 4)
+                CsvReader reader = new CsvReader(csv);
+                ImportBatch batch = new ImportBatch(table);
+                try
                 {
-                    Log.d("OCC Course Finder", "Skipping Bad CSV Row: " + Arrays.toString(fields));
-                    continue;
+                    while (reader.nextRow())
+                    {
+                        if (reader.getFieldCount() != 4)
+                        {
+                            Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                            batch.mRejected++;
+                            continue;
+                        }
+
+                        int offset = batch.mRows * 4;
+                        try
+                        {
+                            batch.mNumbers[offset] = reader.getInt(0);
+                            for (int column = 1; column < 4; column++)
+                            {
+                                if (numeric)
+                                    batch.mNumbers[offset + column] = reader.getInt(column);
+                                else
+                                    batch.mText[offset + column] = reader.getString(column);
+                            }
+                        } catch (NumberFormatException e)
+                        {
+                            Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                            batch.mRejected++;
+                            continue;
+                        }
+
+                        if (++batch.mRows == IMPORT_BATCH_ROWS)
+                        {
+                            batches.put(batch);
+                            batch = new ImportBatch(table);
+                        }
+                    }
+                } catch (IOException | RuntimeException e)
+                {
+                    batch.mError = e;
+                } catch (InterruptedException e)
+                {
+                    // The writer gave up on the import
+                    return;
+                } finally
+                {
+                    closeCSV(reader);
+                }
+
+                batch.mLast = true;
+                try
+                {
+                    batches.put(batch);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
                 }
-                int id = Integer.parseInt(fields[0].trim());
-                String lastName = fields[1].trim();
-                String firstName = fields[2].trim();
-                String email = fields[3].trim();
-                addInstructor(new Instructor(id, lastName, firstName, email));
             }
-        } catch (IOException e)
+        };
+    }
+
+    /**
+     * Writes one <code>ImportBatch</code> inside its own transaction. Offerings whose course or
+     * instructor does not exist are rejected, as are rows whose key is already in the table
+     * unless the conflict algorithm replaces or fails on them. The offerings written are added
+     * to the count tables in the same transaction.
+     *
+     * @param db                The database.
+     * @param insert            The insert statement of the batch's table.
+     * @param batch             The batch.
+     * @param stats             The <code>ImportStats</code> of the batch's table.
+     * @param courseIds         The IDs of every <code>Course</code>, in ascending order, or null
+     *                          if the batch is not offerings.
+     * @param instructorIds     The IDs of every <code>Instructor</code>, in ascending order, or
+     *                          null if the batch is not offerings.
+     * @param conflictAlgorithm The conflict algorithm of the insert statement.
+     * @return True if the batch was written, false if its CSV could not be read or a row failed
+     * on a key that was already in the table, in which case the batch is rolled back.
+     */
+    private static boolean writeImportBatch(SQLiteDatabase db, SQLiteStatement insert,
+                                            ImportBatch batch, ImportStats stats,
+                                            long[] courseIds, long[] instructorIds,
+                                            int conflictAlgorithm)
+    {
+        if (batch.mError != null)
         {
-            e.printStackTrace();
+            Log.e(TAG, "Could not read " + stats.getTableName() + " CSV", batch.mError);
             return false;
         }
+
+        for (int i = 0; i < batch.mRejected; i++)
+            stats.rowRejected();
+        db.beginTransaction();
+        try
+        {
+            long lastRowId = courseIds == null ? 0 : getLastOfferingRowId(db);
+            for (int row = 0; row < batch.mRows; row++)
+            {
+                int offset = row * 4;
+                insert.clearBindings();
+                if (courseIds == null)
+                {
+                    insert.bindLong(1, batch.mNumbers[offset]);
+                    insert.bindString(2, batch.mText[offset + 1]);
+                    insert.bindString(3, batch.mText[offset + 2]);
+                    insert.bindString(4, batch.mText[offset + 3]);
+                }
+                else
+                {
+                    if (!checkReferences(stats,
+                            Arrays.binarySearch(courseIds, batch.mNumbers[offset + 2]) >= 0,
+                            Arrays.binarySearch(instructorIds, batch.mNumbers[offset + 3]) >= 0))
+                        continue;
+                    for (int column = 0; column < 4; column++)
+                        insert.bindLong(column + 1, batch.mNumbers[offset + column]);
+                    // The row this one replaces, if any, no longer counts. A row from earlier
+                    // in this batch was never counted, since the batch is counted at its end
+                    if (conflictAlgorithm == SQLiteDatabase.CONFLICT_REPLACE)
+                        countOfferings(db, "o." + FIELD_CRN + " = ? AND o." + FIELD_SEMESTER_CODE
+                                + " = ? AND o.rowid <= ?", new String[]{
+                                String.valueOf(batch.mNumbers[offset]),
+                                String.valueOf(batch.mNumbers[offset + 1]),
+                                String.valueOf(lastRowId)}, -1);
+                }
+
+                try
+                {
+                    if (insert.executeInsert() != -1)
+                        stats.rowImported();
+                    else
+                    {
+                        // INSERT OR IGNORE skipped the row because its key is taken
+                        stats.duplicateKey();
+                        stats.rowRejected();
+                    }
+                } catch (SQLiteConstraintException e)
+                {
+                    if (conflictAlgorithm == SQLiteDatabase.CONFLICT_FAIL)
+                    {
+                        Log.e(TAG, "Duplicate key in row " + (row + 1) + " of a "
+                                + stats.getTableName() + " batch, stopping the import");
+                        return false;
+                    }
+                    stats.rowRejected();
+                } catch (SQLException e)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row " + (row + 1) + " of a "
+                            + stats.getTableName() + " batch");
+                    stats.rowRejected();
+                }
+            }
+            if (courseIds != null)
+                countOfferings(db, "o.rowid > ?", new String[]{String.valueOf(lastRowId)}, 1);
+            db.setTransactionSuccessful();
+        } finally
+        {
+            db.endTransaction();
+        }
+
+        if (batch.mLast) stats.finish();
         return true;
     }
 
+    //********** DELTA IMPORT FROM CSV OPERATIONS:  Offerings
+
     /**
-     * Imports <code>Offering</code>s from a CSV.
+     * Brings the Offerings table in line with a CSV by writing only what changed: offerings that
+     * are new are inserted, offerings whose course or instructor changed are updated and
+     * offerings no longer in the CSV are deleted, all in one transaction. Offerings are matched
+     * by CRN and semester code. When a term changes by a few percent, so does the write work,
+     * instead of rewriting the table and its indexes.
      *
      * @param csvFileName The name of the CSV file to import from.
-     * @return True
+     * @return The <code>ImportStats</code> of the import, with its delta counts, or null if the
+     * file could not be read, in which case nothing is changed.
      */
-    public boolean importOfferingsFromCSV(String csvFileName)
+    public ImportStats deltaImportOfferingsFromCSV(String csvFileName)
     {
-        AssetManager am = mContext.getAssets();
-        InputStream inStream = null;
-        try
-        {
-            inStream = am.open(csvFileName);
-        } catch (IOException e)
-        {
-            e.printStackTrace();
-        }
+        Reader csv = openAsset(csvFileName);
+        return csv == null ? null : deltaImportOfferingsFromCSV(csv);
+    }
 
-        BufferedReader buffer = new BufferedReader(new InputStreamReader(inStream));
-        String line;
+    /**
+     * Brings the Offerings table in line with CSV text by writing only what changed.
+     *
+     * @param csv The CSV text to import. It is closed when the import ends.
+     * @return The <code>ImportStats</code> of the import, with its delta counts, or null if the
+     * text could not be read, in which case nothing is changed.
+     * @see #deltaImportOfferingsFromCSV(String)
+     */
+    ImportStats deltaImportOfferingsFromCSV(Reader csv)
+    {
+        CsvReader reader = new CsvReader(csv);
+        long[] courseIds = getIds(COURSES_TABLE, COURSES_KEY_FIELD_ID);
+        long[] instructorIds = getIds(INSTRUCTORS_TABLE, INSTRUCTORS_KEY_FIELD_ID);
+
+        ImportStats stats = new ImportStats(OFFERINGS_TABLE);
+        SQLiteDatabase db = this.getWritableDatabase();
+        String key = FIELD_CRN + " = ? AND " + FIELD_SEMESTER_CODE + " = ?";
+        String aliasedKey = "o." + FIELD_CRN + " = ? AND o." + FIELD_SEMESTER_CODE + " = ?";
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + OFFERINGS_TABLE + " ("
+                + FIELD_COURSE_ID + ", " + FIELD_INSTRUCTOR_ID + ", "
+                + FIELD_CRN + ", " + FIELD_SEMESTER_CODE + ") VALUES (?, ?, ?, ?)");
+        SQLiteStatement update = db.compileStatement("UPDATE " + OFFERINGS_TABLE + " SET "
+                + FIELD_COURSE_ID + " = ?, " + FIELD_INSTRUCTOR_ID + " = ? WHERE " + key);
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + OFFERINGS_TABLE
+                + " WHERE " + key);
+        db.beginTransaction();
         try
         {
-            while ((line = buffer.readLine()) != null)
+            // The current rows, keyed by semester code and CRN packed into one long; reading
+            // them in that order from the semester index leaves the keys sorted
+            Cursor cursor = db.query(OFFERINGS_TABLE, new String[]{FIELD_SEMESTER_CODE, FIELD_CRN,
+                            FIELD_COURSE_ID, FIELD_INSTRUCTOR_ID},
+                    null, null, null, null, FIELD_SEMESTER_CODE + ", " + FIELD_CRN);
+            int existing = cursor.getCount();
+            long[] keys = new long[existing];
+            long[] courses = new long[existing];
+            long[] instructors = new long[existing];
+            for (int i = 0; cursor.moveToNext(); i++)
+            {
+                keys[i] = offeringKey(cursor.getInt(1), cursor.getInt(0));
+                courses[i] = cursor.isNull(2) ? -1 : cursor.getLong(2);
+                instructors[i] = cursor.isNull(3) ? -1 : cursor.getLong(3);
+            }
+            cursor.close();
+            boolean[] seen = new boolean[existing];
+
+            while (reader.nextRow())
             {
-                String[] fields = line.split(",");
-                if (fields.length != 4)
+                if (reader.getFieldCount() != 4)
                 {
-                    Log.d("OCC Course Finder", "Skipping Bad CSV Row: " + Arrays.toString(fields));
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
                     continue;
                 }
-                int crn = Integer.parseInt(fields[0].trim());
-                int semesterCode = Integer.parseInt(fields[1].trim());
-                int courseID = Integer.parseInt(fields[2].trim());
-                int instructorID = Integer.parseInt(fields[3].trim());
-                addOffering(new Offering(crn, semesterCode, getCourse(courseID), getInstructor(instructorID)));
+
+                try
+                {
+                    int crn = reader.getInt(0);
+                    int semesterCode = reader.getInt(1);
+                    int courseID = reader.getInt(2);
+                    int instructorID = reader.getInt(3);
+                    if (!checkReferences(stats,
+                            Arrays.binarySearch(courseIds, courseID) >= 0,
+                            Arrays.binarySearch(instructorIds, instructorID) >= 0))
+                        continue;
+
+                    String[] whereArgs = new String[]{String.valueOf(crn),
+                            String.valueOf(semesterCode)};
+                    int row = Arrays.binarySearch(keys, offeringKey(crn, semesterCode));
+                    if (row < 0)
+                    {
+                        insert.bindLong(1, courseID);
+                        insert.bindLong(2, instructorID);
+                        insert.bindLong(3, crn);
+                        insert.bindLong(4, semesterCode);
+                        indexNewOffering(db, insert.executeInsert(), semesterCode, courseID,
+                                instructorID);
+                        stats.rowInserted();
+                    }
+                    else
+                    {
+                        seen[row] = true;
+                        if (courses[row] == courseID && instructors[row] == instructorID)
+                            stats.rowUnchanged();
+                        else
+                        {
+                            countOfferings(db, aliasedKey, whereArgs, -1);
+                            update.bindLong(1, courseID);
+                            update.bindLong(2, instructorID);
+                            update.bindLong(3, crn);
+                            update.bindLong(4, semesterCode);
+                            update.executeUpdateDelete();
+                            reindexOfferings(db, aliasedKey, whereArgs);
+                            countOfferings(db, aliasedKey, whereArgs, 1);
+                            courses[row] = courseID;
+                            instructors[row] = instructorID;
+                            stats.rowUpdated();
+                        }
+                    }
+                    stats.rowImported();
+                } catch (NumberFormatException | SQLException e)
+                {
+                    Log.d(TAG, "Skipping Bad CSV Row: " + reader);
+                    stats.rowRejected();
+                }
+            }
+
+            for (int row = 0; row < existing; row++)
+            {
+                if (seen[row]) continue;
+                int crn = (int) keys[row] ^ Integer.MIN_VALUE;
+                int semesterCode = (int) (keys[row] >> 32);
+                String[] whereArgs = new String[]{String.valueOf(crn),
+                        String.valueOf(semesterCode)};
+                unindexOfferings(db, aliasedKey, whereArgs);
+                countOfferings(db, aliasedKey, whereArgs, -1);
+                delete.bindAllArgsAsStrings(whereArgs);
+                delete.executeUpdateDelete();
+                stats.rowDeleted();
             }
+            db.setTransactionSuccessful();
         } catch (IOException e)
         {
             e.printStackTrace();
-            return false;
+            return null;
+        } finally
+        {
+            db.endTransaction();
+            insert.close();
+            update.close();
+            delete.close();
+            stats.finish();
+            closeCSV(reader);
         }
-        return true;
+        Log.i(TAG, stats.toString());
+        return stats;
     }
 
+    /**
+     * Packs an <code>Offering</code>'s semester code and CRN into one key that sorts by semester
+     * code, then CRN. The CRN's sign bit is flipped so negative CRNs sort before positive ones.
+     *
+     * @param crn          The CRN.
+     * @param semesterCode The semester code.
+     * @return The key.
+     */
+    private static long offeringKey(int crn, int semesterCode)
+    {
+        return ((long) semesterCode << 32) | ((crn ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
 }
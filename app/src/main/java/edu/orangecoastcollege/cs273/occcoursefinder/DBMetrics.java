@@ -0,0 +1,27 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+/**
+ * Receives measurements of <code>DBHelper</code> operations from a <code>MeteredDBHelper</code>.
+ * Implementations are called on whichever thread ran the operation, often several at once, so
+ * they must be thread-safe and should return quickly.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+interface DBMetrics
+{
+    /**
+     * Called each time the helper opens its connection to the database.
+     */
+    void connectionOpened();
+
+    /**
+     * Called after an operation completes normally.
+     *
+     * @param operation    The name of the operation, e.g. <code>"getAllCourses"</code>.
+     * @param elapsedNanos How long the operation took, in nanoseconds.
+     * @param rowsRead     The number of rows the operation read, or 0 if unknown.
+     * @param rowsWritten  The number of rows the operation wrote, or 0 if unknown.
+     */
+    void operationCompleted(String operation, long elapsedNanos, long rowsRead, long rowsWritten);
+}
@@ -0,0 +1,255 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import java.util.Arrays;
+
+/**
+ * The <code>EntityCache</code> class is a bounded, thread-safe identity map from primitive
+ * <code>long</code> IDs to entities, evicting the least recently used entity when it is full.
+ * Keys are never boxed: entries live in parallel arrays, chained from a hash table and linked
+ * in recency order. It counts hits, misses and evictions.
+ * <p>
+ * Every invalidation bumps a version number. A caller that loads an entity after a miss passes
+ * the version it saw before loading to <code>put</code>, so an entity read before a concurrent
+ * update or delete is not cached after it.
+ *
+ * @param <V> The type of the cached entities.
+ * @author Derek Tran
+ * @version 1.0
+ */
+class EntityCache<V>
+{
+    private static final int NONE = -1;
+
+    private final int mCapacity;
+    private final long[] mKeys;
+    private final Object[] mValues;
+    private final int[] mChainNext;
+    private final int[] mNewer;
+    private final int[] mOlder;
+    private final int[] mBuckets;
+    private int mSize;
+    private int mNewest = NONE;
+    private int mOldest = NONE;
+
+    private long mVersion;
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * Instantiates a new, empty <code>EntityCache</code>.
+     *
+     * @param capacity The maximum number of entities to hold.
+     */
+    EntityCache(int capacity)
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0");
+        mCapacity = capacity;
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mChainNext = new int[capacity];
+        mNewer = new int[capacity];
+        mOlder = new int[capacity];
+        mBuckets = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        Arrays.fill(mBuckets, NONE);
+    }
+
+    /**
+     * Gets a cached entity, marking it as the most recently used.
+     *
+     * @param key The ID of the entity.
+     * @return The entity, or null if it is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized V get(long key)
+    {
+        int entry = find(key);
+        if (entry == NONE)
+        {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        unlink(entry);
+        linkNewest(entry);
+        return (V) mValues[entry];
+    }
+
+    /**
+     * Gets the current version, to pass to <code>put</code> after loading a missed entity.
+     *
+     * @return The version, which changes on every invalidation.
+     */
+    synchronized long version()
+    {
+        return mVersion;
+    }
+
+    /**
+     * Caches an entity unless the cache was invalidated since <code>version</code> was read.
+     *
+     * @param key     The ID of the entity.
+     * @param value   The entity.
+     * @param version The version read before the entity was loaded.
+     */
+    synchronized void put(long key, V value, long version)
+    {
+        if (version != mVersion) return;
+
+        int entry = find(key);
+        if (entry != NONE)
+        {
+            mValues[entry] = value;
+            unlink(entry);
+            linkNewest(entry);
+            return;
+        }
+
+        if (mSize == mCapacity)
+        {
+            entry = mOldest;
+            unlink(entry);
+            unchain(entry);
+            mEvictionCount++;
+        }
+        else
+            entry = mSize++;
+
+        int bucket = bucket(key);
+        mKeys[entry] = key;
+        mValues[entry] = value;
+        mChainNext[entry] = mBuckets[bucket];
+        mBuckets[bucket] = entry;
+        linkNewest(entry);
+    }
+
+    /**
+     * Removes a cached entity.
+     *
+     * @param key The ID of the entity.
+     */
+    synchronized void remove(long key)
+    {
+        mVersion++;
+        int entry = find(key);
+        if (entry == NONE) return;
+
+        unlink(entry);
+        unchain(entry);
+
+        // Move the last entry into the freed slot so entries stay packed in 0..size-1
+        int last = --mSize;
+        if (entry != last)
+        {
+            boolean newest = mNewest == last;
+            boolean oldest = mOldest == last;
+            int newer = mNewer[last];
+            int older = mOlder[last];
+            unchain(last);
+
+            mKeys[entry] = mKeys[last];
+            mValues[entry] = mValues[last];
+            int bucket = bucket(mKeys[entry]);
+            mChainNext[entry] = mBuckets[bucket];
+            mBuckets[bucket] = entry;
+            mNewer[entry] = newer;
+            mOlder[entry] = older;
+            if (newer != NONE) mOlder[newer] = entry;
+            if (older != NONE) mNewer[older] = entry;
+            if (newest) mNewest = entry;
+            if (oldest) mOldest = entry;
+        }
+        mValues[last] = null;
+    }
+
+    /**
+     * Removes every cached entity.
+     */
+    synchronized void clear()
+    {
+        mVersion++;
+        Arrays.fill(mBuckets, NONE);
+        Arrays.fill(mValues, null);
+        mSize = 0;
+        mNewest = NONE;
+        mOldest = NONE;
+    }
+
+    synchronized int size()
+    {
+        return mSize;
+    }
+
+    synchronized int hitCount()
+    {
+        return mHitCount;
+    }
+
+    synchronized int missCount()
+    {
+        return mMissCount;
+    }
+
+    synchronized int evictionCount()
+    {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "EntityCache{" +
+                "Size=" + mSize +
+                ", Capacity=" + mCapacity +
+                ", Hits=" + mHitCount +
+                ", Misses=" + mMissCount +
+                ", Evictions=" + mEvictionCount +
+                '}';
+    }
+
+    private int bucket(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (mBuckets.length - 1);
+    }
+
+    private int find(long key)
+    {
+        for (int entry = mBuckets[bucket(key)]; entry != NONE; entry = mChainNext[entry])
+            if (mKeys[entry] == key) return entry;
+        return NONE;
+    }
+
+    private void unchain(int entry)
+    {
+        int bucket = bucket(mKeys[entry]);
+        if (mBuckets[bucket] == entry)
+        {
+            mBuckets[bucket] = mChainNext[entry];
+            return;
+        }
+        int previous = mBuckets[bucket];
+        while (mChainNext[previous] != entry)
+            previous = mChainNext[previous];
+        mChainNext[previous] = mChainNext[entry];
+    }
+
+    private void unlink(int entry)
+    {
+        int newer = mNewer[entry];
+        int older = mOlder[entry];
+        if (newer != NONE) mOlder[newer] = older;
+        else mNewest = older;
+        if (older != NONE) mNewer[older] = newer;
+        else mOldest = newer;
+    }
+
+    private void linkNewest(int entry)
+    {
+        mNewer[entry] = NONE;
+        mOlder[entry] = mNewest;
+        if (mNewest != NONE) mNewer[mNewest] = entry;
+        mNewest = entry;
+        if (mOldest == NONE) mOldest = entry;
+    }
+}
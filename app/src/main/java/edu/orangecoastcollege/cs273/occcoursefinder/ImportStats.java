@@ -0,0 +1,202 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+/**
+ * The <code>ImportStats</code> class records the outcome of a single CSV import into one of the
+ * database tables: how many rows were imported, how many were rejected and how long it took.
+ * It also records how many rows were skipped because their key was already in the table, and a
+ * delta import records how many rows it inserted, updated, left unchanged and deleted.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class ImportStats
+{
+    private String mTableName;
+    private int mRowsImported;
+    private int mRowsRejected;
+    private int mDanglingCourseReferences;
+    private int mDanglingInstructorReferences;
+    private int mDuplicateKeys;
+    private int mRowsInserted;
+    private int mRowsUpdated;
+    private int mRowsUnchanged;
+    private int mRowsDeleted;
+    private long mStartNanos;
+    private long mElapsedNanos;
+
+    /**
+     * Instantiates a new <code>ImportStats</code> object and starts its timer.
+     *
+     * @param tableName The name of the table being imported into.
+     */
+    ImportStats(String tableName)
+    {
+        mTableName = tableName;
+        mStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a row that was written to the table.
+     */
+    void rowImported()
+    {
+        mRowsImported++;
+    }
+
+    /**
+     * Records a row that was skipped because it could not be parsed or written.
+     */
+    void rowRejected()
+    {
+        mRowsRejected++;
+    }
+
+    /**
+     * Records a row that references a <code>Course</code> that does not exist.
+     */
+    void danglingCourseReference()
+    {
+        mDanglingCourseReferences++;
+    }
+
+    /**
+     * Records a row that references an <code>Instructor</code> that does not exist.
+     */
+    void danglingInstructorReference()
+    {
+        mDanglingInstructorReferences++;
+    }
+
+    /**
+     * Records a row whose key was already in the table.
+     */
+    void duplicateKey()
+    {
+        mDuplicateKeys++;
+    }
+
+    /**
+     * Records a row that a delta import inserted because it was not in the table.
+     */
+    void rowInserted()
+    {
+        mRowsInserted++;
+    }
+
+    /**
+     * Records a row that a delta import updated because it differed from the table.
+     */
+    void rowUpdated()
+    {
+        mRowsUpdated++;
+    }
+
+    /**
+     * Records a row that a delta import left alone because it matched the table.
+     */
+    void rowUnchanged()
+    {
+        mRowsUnchanged++;
+    }
+
+    /**
+     * Records a row that a delta import deleted because it was no longer in the CSV.
+     */
+    void rowDeleted()
+    {
+        mRowsDeleted++;
+    }
+
+    /**
+     * Stops the timer.
+     */
+    void finish()
+    {
+        mElapsedNanos = System.nanoTime() - mStartNanos;
+    }
+
+    public String getTableName()
+    {
+        return mTableName;
+    }
+
+    public int getRowsImported()
+    {
+        return mRowsImported;
+    }
+
+    public int getRowsRejected()
+    {
+        return mRowsRejected;
+    }
+
+    public int getDanglingCourseReferences()
+    {
+        return mDanglingCourseReferences;
+    }
+
+    public int getDanglingInstructorReferences()
+    {
+        return mDanglingInstructorReferences;
+    }
+
+    public int getDuplicateKeys()
+    {
+        return mDuplicateKeys;
+    }
+
+    public int getRowsInserted()
+    {
+        return mRowsInserted;
+    }
+
+    public int getRowsUpdated()
+    {
+        return mRowsUpdated;
+    }
+
+    public int getRowsUnchanged()
+    {
+        return mRowsUnchanged;
+    }
+
+    public int getRowsDeleted()
+    {
+        return mRowsDeleted;
+    }
+
+    public long getElapsedNanos()
+    {
+        return mElapsedNanos;
+    }
+
+    /**
+     * Gets the import throughput.
+     *
+     * @return The number of rows imported per second, or 0 if no time was recorded.
+     */
+    public double getRowsPerSecond()
+    {
+        if (mElapsedNanos <= 0) return 0;
+        return mRowsImported * 1e9 / mElapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ImportStats{" +
+                "TableName='" + mTableName + '\'' +
+                ", RowsImported=" + mRowsImported +
+                ", RowsRejected=" + mRowsRejected +
+                ", DanglingCourseReferences=" + mDanglingCourseReferences +
+                ", DanglingInstructorReferences=" + mDanglingInstructorReferences +
+                ", DuplicateKeys=" + mDuplicateKeys +
+                ", RowsInserted=" + mRowsInserted +
+                ", RowsUpdated=" + mRowsUpdated +
+                ", RowsUnchanged=" + mRowsUnchanged +
+                ", RowsDeleted=" + mRowsDeleted +
+                ", ElapsedMs=" + mElapsedNanos / 1000000 +
+                ", RowsPerSecond=" + Math.round(getRowsPerSecond()) +
+                '}';
+    }
+}
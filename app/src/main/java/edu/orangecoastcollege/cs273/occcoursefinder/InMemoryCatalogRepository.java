@@ -0,0 +1,1106 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.content.res.AssetManager;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A <code>CatalogRepository</code> that keeps the whole catalog in RAM, for small deployments
+ * that do not need it to outlive the process. Nothing is written to storage, so the catalog is
+ * imported again on each start.
+ * <p>
+ * <code>Course</code>s and <code>Instructor</code>s are kept in sorted maps by ID, like their
+ * SQLite tables. <code>Offering</code>s are kept in two sorted maps, one by CRN then semester
+ * code and one by semester code then CRN, with each key packed into a <code>long</code>, so
+ * lookups and pages are range reads like the SQLite indexes. Search scans every
+ * <code>Offering</code>, scoring matches the same way <code>DBHelper</code> does.
+ * <p>
+ * Reads run in parallel; writes take an exclusive lock. The entities returned are shared with the
+ * repository and with other callers, so change them only through the update methods. The class
+ * uses no Android APIs apart from <code>AssetManager</code>, so it also runs on a plain JVM.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class InMemoryCatalogRepository implements CatalogRepository
+{
+    // Same names and column weights as DBHelper, so ImportStats and search ranks match
+    private static final String COURSES_TABLE = "Courses";
+    private static final String INSTRUCTORS_TABLE = "Instructors";
+    private static final String OFFERINGS_TABLE = "Offerings";
+    private static final double[] SEARCH_COLUMN_WEIGHTS = {4.0, 2.0, 1.0};
+
+    /**
+     * One stored <code>Offering</code>. The row ID orders equally ranked search results by
+     * insertion, like SQLite's rowid.
+     */
+    private static final class OfferingRow
+    {
+        final long mRowId;
+        final int mCRN;
+        final int mSemesterCode;
+        long mCourseId;
+        long mInstructorId;
+
+        OfferingRow(long rowId, int crn, int semesterCode, long courseId, long instructorId)
+        {
+            mRowId = rowId;
+            mCRN = crn;
+            mSemesterCode = semesterCode;
+            mCourseId = courseId;
+            mInstructorId = instructorId;
+        }
+    }
+
+    private final AssetManager mAssets;
+    private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+    private final Lock mReadLock = mLock.readLock();
+    private final Lock mWriteLock = mLock.writeLock();
+
+    private final NavigableMap<Long, Course> mCourses = new TreeMap<>();
+    private final NavigableMap<Long, Instructor> mInstructors = new TreeMap<>();
+    // Keyed by key(crn, semester code) and by key(semester code, crn)
+    private final NavigableMap<Long, OfferingRow> mOfferingsByCRN = new TreeMap<>();
+    private final NavigableMap<Long, OfferingRow> mOfferingsBySemester = new TreeMap<>();
+    private long mLastRowId;
+    private int mCurrentSemesterCode = -1;
+    // The assets last imported by importAssetsIfChanged, or null
+    private String mImportedAssets;
+
+    /**
+     * Instantiates a new, empty <code>InMemoryCatalogRepository</code> that cannot import assets.
+     */
+    InMemoryCatalogRepository()
+    {
+        this(null);
+    }
+
+    /**
+     * Instantiates a new, empty <code>InMemoryCatalogRepository</code>.
+     *
+     * @param assets The assets to import CSVs from in <code>importAssetsIfChanged</code>.
+     */
+    InMemoryCatalogRepository(AssetManager assets)
+    {
+        mAssets = assets;
+    }
+
+    //********** COURSES
+
+    @Override
+    public void addCourse(Course course)
+    {
+        mWriteLock.lock();
+        try
+        {
+            putCourse(course);
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Course> getAllCourses()
+    {
+        mReadLock.lock();
+        try
+        {
+            return new ArrayList<>(mCourses.values());
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public Course getCourse(long id)
+    {
+        mReadLock.lock();
+        try
+        {
+            return mCourses.get(id);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateCourse(Course course)
+    {
+        mWriteLock.lock();
+        try
+        {
+            replaceCourse(course);
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteCourse(Course course)
+    {
+        mWriteLock.lock();
+        try
+        {
+            removeCourse(course.getId());
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllCourses()
+    {
+        mWriteLock.lock();
+        try
+        {
+            mCourses.clear();
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public long[] addCourses(Collection<Course> courses)
+    {
+        mWriteLock.lock();
+        try
+        {
+            List<Long> ids = new ArrayList<>(courses.size());
+            for (Course course : courses)
+                ids.add(course.getId());
+            checkIdsFree(ids, mCourses, "Course");
+
+            long[] added = new long[courses.size()];
+            int i = 0;
+            for (Course course : courses)
+                added[i++] = putCourse(course);
+            return added;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] updateCourses(Collection<Course> courses)
+    {
+        mWriteLock.lock();
+        try
+        {
+            int[] updated = new int[courses.size()];
+            int i = 0;
+            for (Course course : courses)
+                updated[i++] = replaceCourse(course);
+            return updated;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] deleteCourses(Collection<Course> courses)
+    {
+        mWriteLock.lock();
+        try
+        {
+            int[] deleted = new int[courses.size()];
+            int i = 0;
+            for (Course course : courses)
+                deleted[i++] = removeCourse(course.getId());
+            return deleted;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    private long putCourse(Course course)
+    {
+        long id = course.getId() != -1 ? course.getId() : nextId(mCourses);
+        if (mCourses.containsKey(id)) return -1;
+        mCourses.put(id, new Course(id, course.getAlpha(), course.getNumber(),
+                course.getTitle()));
+        return id;
+    }
+
+    private int replaceCourse(Course course)
+    {
+        if (!mCourses.containsKey(course.getId())) return 0;
+        mCourses.put(course.getId(), new Course(course.getId(), course.getAlpha(),
+                course.getNumber(), course.getTitle()));
+        return 1;
+    }
+
+    private int removeCourse(long id)
+    {
+        return mCourses.remove(id) == null ? 0 : 1;
+    }
+
+    //********** INSTRUCTORS
+
+    @Override
+    public void addInstructor(Instructor instructor)
+    {
+        mWriteLock.lock();
+        try
+        {
+            putInstructor(instructor);
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Instructor> getAllInstructors()
+    {
+        mReadLock.lock();
+        try
+        {
+            return new ArrayList<>(mInstructors.values());
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public Instructor getInstructor(long id)
+    {
+        mReadLock.lock();
+        try
+        {
+            return mInstructors.get(id);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateInstructor(Instructor instructor)
+    {
+        mWriteLock.lock();
+        try
+        {
+            replaceInstructor(instructor);
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteInstructor(Instructor instructor)
+    {
+        mWriteLock.lock();
+        try
+        {
+            removeInstructor(instructor.getId());
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllInstructors()
+    {
+        mWriteLock.lock();
+        try
+        {
+            mInstructors.clear();
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public long[] addInstructors(Collection<Instructor> instructors)
+    {
+        mWriteLock.lock();
+        try
+        {
+            List<Long> ids = new ArrayList<>(instructors.size());
+            for (Instructor instructor : instructors)
+                ids.add(instructor.getId());
+            checkIdsFree(ids, mInstructors, "Instructor");
+
+            long[] added = new long[instructors.size()];
+            int i = 0;
+            for (Instructor instructor : instructors)
+                added[i++] = putInstructor(instructor);
+            return added;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] updateInstructors(Collection<Instructor> instructors)
+    {
+        mWriteLock.lock();
+        try
+        {
+            int[] updated = new int[instructors.size()];
+            int i = 0;
+            for (Instructor instructor : instructors)
+                updated[i++] = replaceInstructor(instructor);
+            return updated;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] deleteInstructors(Collection<Instructor> instructors)
+    {
+        mWriteLock.lock();
+        try
+        {
+            int[] deleted = new int[instructors.size()];
+            int i = 0;
+            for (Instructor instructor : instructors)
+                deleted[i++] = removeInstructor(instructor.getId());
+            return deleted;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    private long putInstructor(Instructor instructor)
+    {
+        long id = instructor.getId() != -1 ? instructor.getId() : nextId(mInstructors);
+        if (mInstructors.containsKey(id)) return -1;
+        mInstructors.put(id, new Instructor(id, instructor.getLastName(),
+                instructor.getFirstName(), instructor.getEmail()));
+        return id;
+    }
+
+    private int replaceInstructor(Instructor instructor)
+    {
+        if (!mInstructors.containsKey(instructor.getId())) return 0;
+        mInstructors.put(instructor.getId(), new Instructor(instructor.getId(),
+                instructor.getLastName(), instructor.getFirstName(), instructor.getEmail()));
+        return 1;
+    }
+
+    private int removeInstructor(long id)
+    {
+        return mInstructors.remove(id) == null ? 0 : 1;
+    }
+
+    //********** OFFERINGS
+
+    @Override
+    public void addOffering(Offering offering)
+    {
+        mWriteLock.lock();
+        try
+        {
+            putOffering(offering.getCRN(), offering.getSemesterCode(), offering.getCourseId(),
+                    offering.getInstructorId(), SQLiteDatabase.CONFLICT_IGNORE);
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Offering> getAllOfferings()
+    {
+        mReadLock.lock();
+        try
+        {
+            return toOfferings(mOfferingsByCRN.values(), Integer.MAX_VALUE);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public Offering getOffering(int crn)
+    {
+        mReadLock.lock();
+        try
+        {
+            Map.Entry<Long, OfferingRow> latest =
+                    mOfferingsByCRN.floorEntry(key(crn, Integer.MAX_VALUE));
+            if (latest == null || latest.getValue().mCRN != crn) return null;
+            return toOffering(latest.getValue());
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateOffering(Offering offering)
+    {
+        mWriteLock.lock();
+        try
+        {
+            replaceOffering(offering);
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteOffering(Offering offering)
+    {
+        mWriteLock.lock();
+        try
+        {
+            removeOffering(offering.getCRN(), offering.getSemesterCode());
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllOfferings()
+    {
+        mWriteLock.lock();
+        try
+        {
+            mOfferingsByCRN.clear();
+            mOfferingsBySemester.clear();
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public long[] addOfferings(Collection<Offering> offerings)
+    {
+        mWriteLock.lock();
+        try
+        {
+            List<Long> keys = new ArrayList<>(offerings.size());
+            for (Offering offering : offerings)
+                keys.add(key(offering.getCRN(), offering.getSemesterCode()));
+            checkIdsFree(keys, mOfferingsByCRN, "Offering");
+
+            long[] rowIds = new long[offerings.size()];
+            int i = 0;
+            for (Offering offering : offerings)
+                rowIds[i++] = putOffering(offering.getCRN(), offering.getSemesterCode(),
+                        offering.getCourseId(), offering.getInstructorId(),
+                        SQLiteDatabase.CONFLICT_IGNORE);
+            return rowIds;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] updateOfferings(Collection<Offering> offerings)
+    {
+        mWriteLock.lock();
+        try
+        {
+            int[] updated = new int[offerings.size()];
+            int i = 0;
+            for (Offering offering : offerings)
+                updated[i++] = replaceOffering(offering);
+            return updated;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] deleteOfferings(Collection<Offering> offerings)
+    {
+        mWriteLock.lock();
+        try
+        {
+            int[] deleted = new int[offerings.size()];
+            int i = 0;
+            for (Offering offering : offerings)
+                deleted[i++] = removeOffering(offering.getCRN(), offering.getSemesterCode());
+            return deleted;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Stores an <code>Offering</code>.
+     *
+     * @param crn               The CRN.
+     * @param semesterCode      The semester code.
+     * @param courseId          The ID of the <code>Course</code>, or -1 if there is none.
+     * @param instructorId      The ID of the <code>Instructor</code>, or -1 if there is none.
+     * @param conflictAlgorithm <code>SQLiteDatabase.CONFLICT_REPLACE</code> to replace an
+     *                          <code>Offering</code> with the same CRN and semester code, or any
+     *                          other value to keep it.
+     * @return The row ID of the stored <code>Offering</code>, or -1 if one with the same CRN and
+     * semester code was kept.
+     */
+    private long putOffering(int crn, int semesterCode, long courseId, long instructorId,
+                             int conflictAlgorithm)
+    {
+        long key = key(crn, semesterCode);
+        if (conflictAlgorithm != SQLiteDatabase.CONFLICT_REPLACE
+                && mOfferingsByCRN.containsKey(key))
+            return -1;
+
+        OfferingRow row = new OfferingRow(++mLastRowId, crn, semesterCode, courseId,
+                instructorId);
+        mOfferingsByCRN.put(key, row);
+        mOfferingsBySemester.put(key(semesterCode, crn), row);
+        return row.mRowId;
+    }
+
+    private int replaceOffering(Offering offering)
+    {
+        OfferingRow row = mOfferingsByCRN.get(key(offering.getCRN(), offering.getSemesterCode()));
+        if (row == null) return 0;
+        row.mCourseId = offering.getCourseId();
+        row.mInstructorId = offering.getInstructorId();
+        return 1;
+    }
+
+    private int removeOffering(int crn, int semesterCode)
+    {
+        if (mOfferingsByCRN.remove(key(crn, semesterCode)) == null) return 0;
+        mOfferingsBySemester.remove(key(semesterCode, crn));
+        return 1;
+    }
+
+    //********** QUERIES
+
+    @Override
+    public List<Offering> getOfferingsForSemester(int semesterCode)
+    {
+        return getSemesterOfferingsPage(semesterCode, -1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Offering> getSemesterOfferingsPage(int semesterCode, int afterCRN, int pageSize)
+    {
+        mReadLock.lock();
+        try
+        {
+            long from = afterCRN < 0 ? key(semesterCode, 0) : key(semesterCode, afterCRN) + 1;
+            return toOfferings(mOfferingsBySemester.subMap(from, true,
+                    key(semesterCode, Integer.MAX_VALUE), true).values(), pageSize);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Offering> getOfferingsPage(int afterCRN, int afterSemesterCode, int pageSize)
+    {
+        mReadLock.lock();
+        try
+        {
+            long from = afterCRN < 0 ? Long.MIN_VALUE
+                    : afterSemesterCode < 0 ? key(afterCRN, 0)
+                    : key(afterCRN, afterSemesterCode) + 1;
+            return toOfferings(mOfferingsByCRN.tailMap(from, true).values(), pageSize);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public int[] getSemesterCodes()
+    {
+        mReadLock.lock();
+        try
+        {
+            int[] semesterCodes = new int[8];
+            int count = 0;
+            // One seek past each semester, like DBHelper's walk of the semester index
+            Long next = mOfferingsBySemester.isEmpty() ? null : mOfferingsBySemester.firstKey();
+            while (next != null)
+            {
+                int semesterCode = (int) (next >> 32);
+                if (count == semesterCodes.length)
+                    semesterCodes = Arrays.copyOf(semesterCodes, count * 2);
+                semesterCodes[count++] = semesterCode;
+                next = mOfferingsBySemester.ceilingKey(key(semesterCode + 1, 0));
+            }
+            return Arrays.copyOf(semesterCodes, count);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public int getCurrentSemesterCode()
+    {
+        mReadLock.lock();
+        try
+        {
+            if (mCurrentSemesterCode != -1) return mCurrentSemesterCode;
+            return mOfferingsBySemester.isEmpty() ? -1
+                    : (int) (mOfferingsBySemester.lastKey() >> 32);
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    @Override
+    public void setCurrentSemesterCode(int semesterCode)
+    {
+        mWriteLock.lock();
+        try
+        {
+            mCurrentSemesterCode = semesterCode;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Searches the <code>Offering</code>s, scoring each match like <code>DBHelper</code> scores
+     * its FTS matches: for every word of the query and every column, the column's weight times
+     * the word's hits in the match times the word's inverse document frequency in that column.
+     */
+    @Override
+    public List<Offering> searchOfferings(String query, int limit)
+    {
+        List<Offering> offeringsList = new ArrayList<>();
+        List<String> words = toWords(query);
+        if (words.isEmpty() || limit <= 0) return offeringsList;
+
+        mReadLock.lock();
+        try
+        {
+            int columns = SEARCH_COLUMN_WEIGHTS.length;
+            int documents = mOfferingsByCRN.size();
+            // hits[document][word * columns + column], kept only for documents matching every word
+            List<OfferingRow> matchedRows = new ArrayList<>();
+            List<int[]> matchedHits = new ArrayList<>();
+            int[] documentsWithHits = new int[words.size() * columns];
+            for (OfferingRow row : mOfferingsByCRN.values())
+            {
+                List<List<String>> document = toDocument(row);
+                int[] hits = new int[words.size() * columns];
+                boolean matchesAll = true;
+                for (int word = 0; word < words.size(); word++)
+                {
+                    boolean matchesWord = false;
+                    for (int column = 0; column < columns; column++)
+                    {
+                        int count = 0;
+                        for (String token : document.get(column))
+                            if (token.startsWith(words.get(word))) count++;
+                        hits[word * columns + column] = count;
+                        if (count > 0)
+                        {
+                            documentsWithHits[word * columns + column]++;
+                            matchesWord = true;
+                        }
+                    }
+                    matchesAll &= matchesWord;
+                }
+                if (matchesAll)
+                {
+                    matchedRows.add(row);
+                    matchedHits.add(hits);
+                }
+            }
+            if (matchedRows.isEmpty()) return offeringsList;
+
+            TopMatches matches = new TopMatches(limit);
+            Map<Long, OfferingRow> rows = new HashMap<>();
+            for (int i = 0; i < matchedRows.size(); i++)
+            {
+                int[] hits = matchedHits.get(i);
+                double score = 0;
+                for (int stat = 0; stat < hits.length; stat++)
+                {
+                    if (hits[stat] == 0) continue;
+                    score += SEARCH_COLUMN_WEIGHTS[stat % columns] * hits[stat]
+                            * Math.log(1.0 + (double) documents / documentsWithHits[stat]);
+                }
+                OfferingRow row = matchedRows.get(i);
+                matches.offer(row.mRowId, score);
+                rows.put(row.mRowId, row);
+            }
+            for (long rowId : matches.drain())
+                offeringsList.add(toOffering(rows.get(rowId)));
+            return offeringsList;
+        } finally
+        {
+            mReadLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the words of an <code>Offering</code>'s searchable columns: its course (as both
+     * "CS A273" and "CSA273"), its title and its instructor's name.
+     *
+     * @param row The <code>Offering</code>.
+     * @return The lower case words of each column, in column order.
+     */
+    private List<List<String>> toDocument(OfferingRow row)
+    {
+        Course course = mCourses.get(row.mCourseId);
+        Instructor instructor = mInstructors.get(row.mInstructorId);
+        List<List<String>> document = new ArrayList<>(3);
+        document.add(course == null ? Collections.<String>emptyList()
+                : toWords(course.getAlpha() + " " + course.getNumber() + " "
+                + course.getAlpha() + course.getNumber()));
+        document.add(course == null ? Collections.<String>emptyList()
+                : toWords(course.getTitle()));
+        document.add(instructor == null ? Collections.<String>emptyList()
+                : toWords(instructor.getFirstName() + " " + instructor.getLastName()));
+        return document;
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits, as
+     * <code>DBHelper.toMatchQuery</code> and the FTS tokenizer do.
+     *
+     * @param text The text, or null.
+     * @return The words of the text.
+     */
+    private static List<String> toWords(String text)
+    {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+
+        int length = text.length();
+        for (int i = 0; i < length; )
+        {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i)))
+                i++;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i)))
+                i++;
+            if (start < i) words.add(text.substring(start, i).toLowerCase(Locale.US));
+        }
+        return words;
+    }
+
+    //********** IMPORTS
+
+    /**
+     * Imports the bundled CSV assets, replacing the existing data, unless the same assets were
+     * already imported. Assets cannot change while the app runs, so only the first call for a set
+     * of assets imports anything. Readers wait for the whole import, and if it fails, the old data
+     * is put back.
+     *
+     * @throws IllegalStateException If the CSVs could not be read or imported.
+     */
+    @Override
+    public boolean importAssetsIfChanged(String coursesCSV, String instructorsCSV,
+                                         String offeringsCSV)
+    {
+        String assets = coursesCSV + "\n" + instructorsCSV + "\n" + offeringsCSV;
+        mWriteLock.lock();
+        try
+        {
+            if (assets.equals(mImportedAssets) || mAssets == null) return false;
+
+            Reader[] csvs = new Reader[3];
+            try
+            {
+                csvs[0] = new InputStreamReader(mAssets.open(coursesCSV), "UTF-8");
+                csvs[1] = new InputStreamReader(mAssets.open(instructorsCSV), "UTF-8");
+                csvs[2] = new InputStreamReader(mAssets.open(offeringsCSV), "UTF-8");
+            } catch (IOException e)
+            {
+                for (Reader csv : csvs)
+                    close(csv);
+                throw new IllegalStateException("Could not open the CSV assets", e);
+            }
+
+            NavigableMap<Long, Course> courses = new TreeMap<>(mCourses);
+            NavigableMap<Long, Instructor> instructors = new TreeMap<>(mInstructors);
+            NavigableMap<Long, OfferingRow> offeringsByCRN = new TreeMap<>(mOfferingsByCRN);
+            NavigableMap<Long, OfferingRow> offeringsBySemester =
+                    new TreeMap<>(mOfferingsBySemester);
+            mCourses.clear();
+            mInstructors.clear();
+            mOfferingsByCRN.clear();
+            mOfferingsBySemester.clear();
+            if (importFromCSV(csvs[0], csvs[1], csvs[2], SQLiteDatabase.CONFLICT_IGNORE) == null)
+            {
+                restore(mCourses, courses);
+                restore(mInstructors, instructors);
+                restore(mOfferingsByCRN, offeringsByCRN);
+                restore(mOfferingsBySemester, offeringsBySemester);
+                throw new IllegalStateException("Could not import " + coursesCSV + ", "
+                        + instructorsCSV + " and " + offeringsCSV);
+            }
+            mImportedAssets = assets;
+            return true;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public ImportStats[] importFromCSV(Reader coursesCSV, Reader instructorsCSV,
+                                       Reader offeringsCSV, int conflictAlgorithm)
+    {
+        ImportStats[] stats = new ImportStats[]{new ImportStats(COURSES_TABLE),
+                new ImportStats(INSTRUCTORS_TABLE), new ImportStats(OFFERINGS_TABLE)};
+        CsvReader courses = new CsvReader(coursesCSV);
+        CsvReader instructors = new CsvReader(instructorsCSV);
+        CsvReader offerings = new CsvReader(offeringsCSV);
+        mWriteLock.lock();
+        try
+        {
+            while (courses.nextRow())
+            {
+                if (!isValidRow(courses, false, stats[0])) continue;
+                Course course = new Course(courses.getInt(0), courses.getString(1),
+                        courses.getString(2), courses.getString(3));
+                if (!mCourses.containsKey(course.getId()))
+                    putCourse(course);
+                else if (!resolveConflict(conflictAlgorithm, stats[0]))
+                    return null;
+                else if (conflictAlgorithm == SQLiteDatabase.CONFLICT_REPLACE)
+                    replaceCourse(course);
+                else
+                    continue;
+                stats[0].rowImported();
+            }
+            stats[0].finish();
+
+            while (instructors.nextRow())
+            {
+                if (!isValidRow(instructors, false, stats[1])) continue;
+                Instructor instructor = new Instructor(instructors.getInt(0),
+                        instructors.getString(1), instructors.getString(2),
+                        instructors.getString(3));
+                if (!mInstructors.containsKey(instructor.getId()))
+                    putInstructor(instructor);
+                else if (!resolveConflict(conflictAlgorithm, stats[1]))
+                    return null;
+                else if (conflictAlgorithm == SQLiteDatabase.CONFLICT_REPLACE)
+                    replaceInstructor(instructor);
+                else
+                    continue;
+                stats[1].rowImported();
+            }
+            stats[1].finish();
+
+            while (offerings.nextRow())
+            {
+                if (!isValidRow(offerings, true, stats[2])) continue;
+                int crn = offerings.getInt(0);
+                int semesterCode = offerings.getInt(1);
+                long courseId = offerings.getInt(2);
+                long instructorId = offerings.getInt(3);
+                boolean courseExists = mCourses.containsKey(courseId);
+                boolean instructorExists = mInstructors.containsKey(instructorId);
+                if (!courseExists) stats[2].danglingCourseReference();
+                if (!instructorExists) stats[2].danglingInstructorReference();
+                if (!courseExists || !instructorExists)
+                {
+                    stats[2].rowRejected();
+                    continue;
+                }
+
+                if (mOfferingsByCRN.containsKey(key(crn, semesterCode))
+                        && !resolveConflict(conflictAlgorithm, stats[2]))
+                    return null;
+                if (putOffering(crn, semesterCode, courseId, instructorId, conflictAlgorithm)
+                        != -1)
+                    stats[2].rowImported();
+            }
+            stats[2].finish();
+            return stats;
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        } finally
+        {
+            mWriteLock.unlock();
+            close(coursesCSV);
+            close(instructorsCSV);
+            close(offeringsCSV);
+        }
+    }
+
+    /**
+     * Checks that the current CSV row has 4 fields and well-formed numbers, counting it as
+     * rejected if not.
+     *
+     * @param row     The CSV row.
+     * @param numeric True if every field is a number, false if only the first one is.
+     * @param stats   The <code>ImportStats</code> of the row's table.
+     * @return True if the row is valid.
+     */
+    private static boolean isValidRow(CsvReader row, boolean numeric, ImportStats stats)
+    {
+        try
+        {
+            if (row.getFieldCount() == 4)
+            {
+                row.getInt(0);
+                for (int column = 1; numeric && column < 4; column++)
+                    row.getInt(column);
+                return true;
+            }
+        } catch (NumberFormatException e)
+        {
+            // Rejected below
+        }
+        stats.rowRejected();
+        return false;
+    }
+
+    /**
+     * Counts a CSV row whose key is already taken.
+     *
+     * @param conflictAlgorithm The conflict algorithm of the import.
+     * @param stats             The <code>ImportStats</code> of the row's table.
+     * @return False if the import must stop, true if the row is to be skipped or replace the
+     * existing one.
+     */
+    private static boolean resolveConflict(int conflictAlgorithm, ImportStats stats)
+    {
+        if (conflictAlgorithm == SQLiteDatabase.CONFLICT_FAIL) return false;
+        if (conflictAlgorithm != SQLiteDatabase.CONFLICT_REPLACE)
+        {
+            stats.duplicateKey();
+            stats.rowRejected();
+        }
+        return true;
+    }
+
+    @Override
+    public void close()
+    {
+        mWriteLock.lock();
+        try
+        {
+            mCourses.clear();
+            mInstructors.clear();
+            mOfferingsByCRN.clear();
+            mOfferingsBySemester.clear();
+            mImportedAssets = null;
+        } finally
+        {
+            mWriteLock.unlock();
+        }
+    }
+
+    //********** HELPERS
+
+    /**
+     * Packs two non-negative ints into one key that sorts by the first, then the second.
+     *
+     * @param high The int to sort by first.
+     * @param low  The int to sort by second.
+     * @return The key.
+     */
+    private static long key(int high, int low)
+    {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    private static long nextId(NavigableMap<Long, ?> entities)
+    {
+        return entities.isEmpty() ? 1 : entities.lastKey() + 1;
+    }
+
+    /**
+     * Checks that a batch of new keys are all free and distinct.
+     *
+     * @param keys     The keys, or -1 for ones to be assigned.
+     * @param existing The entities stored, by key.
+     * @param entity   The name of the entity type, for the error message.
+     * @throws IllegalStateException If a key is taken or repeated.
+     */
+    private static void checkIdsFree(List<Long> keys, Map<Long, ?> existing, String entity)
+    {
+        Set<Long> seen = new HashSet<>();
+        for (long key : keys)
+        {
+            if (key != -1 && (existing.containsKey(key) || !seen.add(key)))
+                throw new IllegalStateException(entity + " key " + key + " is taken");
+        }
+    }
+
+    private Offering toOffering(OfferingRow row)
+    {
+        Offering offering = new Offering(row.mCRN, row.mSemesterCode, row.mCourseId,
+                row.mInstructorId, null);
+        offering.setParents(mCourses.get(row.mCourseId), mInstructors.get(row.mInstructorId));
+        return offering;
+    }
+
+    private List<Offering> toOfferings(Collection<OfferingRow> rows, int limit)
+    {
+        List<Offering> offerings = new ArrayList<>(Math.min(rows.size(), limit));
+        for (OfferingRow row : rows)
+        {
+            if (offerings.size() == limit) break;
+            offerings.add(toOffering(row));
+        }
+        return offerings;
+    }
+
+    private static <V> void restore(Map<Long, V> map, Map<Long, V> saved)
+    {
+        map.clear();
+        map.putAll(saved);
+    }
+
+    private static void close(Reader csv)
+    {
+        if (csv == null) return;
+        try
+        {
+            csv.close();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>LatencyHistogram</code> class counts durations in log-linear buckets: each power of
+ * two is split into 8 equal buckets, so any percentile it reports is within 12.5% of the true
+ * value while the whole histogram stays a fixed 488 counters. Recording is lock-free and safe to
+ * call from several threads at once.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class LatencyHistogram
+{
+    // Each power of two from 8 up is split into 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration, in nanoseconds. Negative durations are recorded as 0.
+     */
+    void record(long nanos)
+    {
+        if (nanos < 0) nanos = 0;
+        mCounts.incrementAndGet(bucketOf(nanos));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(nanos);
+
+        long max = mMax.get();
+        while (nanos > max && !mMax.compareAndSet(max, nanos))
+            max = mMax.get();
+    }
+
+    /**
+     * Gets the number of durations recorded.
+     *
+     * @return The number of durations recorded.
+     */
+    long getCount()
+    {
+        return mCount.get();
+    }
+
+    /**
+     * Gets the sum of the durations recorded.
+     *
+     * @return The sum of the durations recorded, in nanoseconds.
+     */
+    long getTotalNanos()
+    {
+        return mTotal.get();
+    }
+
+    /**
+     * Gets the longest duration recorded.
+     *
+     * @return The longest duration recorded, in nanoseconds, or 0 if none were.
+     */
+    long getMaxNanos()
+    {
+        return mMax.get();
+    }
+
+    /**
+     * Gets a percentile of the durations recorded. Durations recorded while this runs may or may
+     * not be included.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile, capped at the longest
+     * duration, in nanoseconds, or 0 if no durations were recorded.
+     */
+    long getPercentile(double percentile)
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            counts[bucket] = mCounts.get(bucket);
+            count += counts[bucket];
+        }
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            seen += counts[bucket];
+            if (seen >= rank) return Math.min(upperBoundOf(bucket), getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Clears every recorded duration.
+     */
+    void reset()
+    {
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            mCounts.set(bucket, 0);
+        mCount.set(0);
+        mTotal.set(0);
+        mMax.set(0);
+    }
+
+    static int bucketOf(long nanos)
+    {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
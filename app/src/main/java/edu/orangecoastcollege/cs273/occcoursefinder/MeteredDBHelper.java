@@ -0,0 +1,632 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LongSparseArray;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A <code>DBHelper</code> that times every public operation and reports it, with the number of
+ * rows it read or wrote, to a <code>DBMetrics</code>. Operations that call other operations, such
+ * as <code>importAssetsIfChanged</code>, are reported along with each operation they call.
+ * Metering is opted into by constructing this class instead of a plain <code>DBHelper</code>, so
+ * a plain <code>DBHelper</code> pays nothing for it.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class MeteredDBHelper extends DBHelper
+{
+    private final DBMetrics mMetrics;
+
+    /**
+     * Instantiates a new <code>MeteredDBHelper</code> object with the given context.
+     *
+     * @param context The activity used to open or create the database.
+     * @param metrics Receives the measurements of every operation.
+     */
+    public MeteredDBHelper(Context context, DBMetrics metrics)
+    {
+        super(context);
+        mMetrics = metrics;
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase database)
+    {
+        super.onOpen(database);
+        mMetrics.connectionOpened();
+    }
+
+    @Override
+    public void addCourse(Course course)
+    {
+        long start = System.nanoTime();
+        super.addCourse(course);
+        record("addCourse", start, 0, 1);
+    }
+
+    @Override
+    public List<Course> getAllCourses()
+    {
+        long start = System.nanoTime();
+        List<Course> courses = super.getAllCourses();
+        record("getAllCourses", start, courses.size(), 0);
+        return courses;
+    }
+
+    @Override
+    public void deleteCourse(Course course)
+    {
+        long start = System.nanoTime();
+        super.deleteCourse(course);
+        record("deleteCourse", start, 0, 1);
+    }
+
+    @Override
+    public void deleteAllCourses()
+    {
+        long start = System.nanoTime();
+        super.deleteAllCourses();
+        record("deleteAllCourses", start, 0, 0);
+    }
+
+    @Override
+    public void updateCourse(Course course)
+    {
+        long start = System.nanoTime();
+        super.updateCourse(course);
+        record("updateCourse", start, 0, 1);
+    }
+
+    @Override
+    public Course getCourse(long id)
+    {
+        long start = System.nanoTime();
+        Course course = super.getCourse(id);
+        record("getCourse", start, course == null ? 0 : 1, 0);
+        return course;
+    }
+
+    @Override
+    public void addInstructor(Instructor instructor)
+    {
+        long start = System.nanoTime();
+        super.addInstructor(instructor);
+        record("addInstructor", start, 0, 1);
+    }
+
+    @Override
+    public List<Instructor> getAllInstructors()
+    {
+        long start = System.nanoTime();
+        List<Instructor> instructors = super.getAllInstructors();
+        record("getAllInstructors", start, instructors.size(), 0);
+        return instructors;
+    }
+
+    @Override
+    public void deleteInstructor(Instructor instructor)
+    {
+        long start = System.nanoTime();
+        super.deleteInstructor(instructor);
+        record("deleteInstructor", start, 0, 1);
+    }
+
+    @Override
+    public void deleteAllInstructors()
+    {
+        long start = System.nanoTime();
+        super.deleteAllInstructors();
+        record("deleteAllInstructors", start, 0, 0);
+    }
+
+    @Override
+    public void updateInstructor(Instructor instructor)
+    {
+        long start = System.nanoTime();
+        super.updateInstructor(instructor);
+        record("updateInstructor", start, 0, 1);
+    }
+
+    @Override
+    public Instructor getInstructor(long id)
+    {
+        long start = System.nanoTime();
+        Instructor instructor = super.getInstructor(id);
+        record("getInstructor", start, instructor == null ? 0 : 1, 0);
+        return instructor;
+    }
+
+    @Override
+    public void addOffering(Offering offering)
+    {
+        long start = System.nanoTime();
+        super.addOffering(offering);
+        record("addOffering", start, 0, 1);
+    }
+
+    @Override
+    public List<Offering> getAllOfferings()
+    {
+        long start = System.nanoTime();
+        List<Offering> offerings = super.getAllOfferings();
+        record("getAllOfferings", start, offerings.size(), 0);
+        return offerings;
+    }
+
+    @Override
+    public void deleteOffering(Offering offering)
+    {
+        long start = System.nanoTime();
+        super.deleteOffering(offering);
+        record("deleteOffering", start, 0, 1);
+    }
+
+    @Override
+    public void deleteAllOfferings()
+    {
+        long start = System.nanoTime();
+        super.deleteAllOfferings();
+        record("deleteAllOfferings", start, 0, 0);
+    }
+
+    @Override
+    public void updateOffering(Offering offering)
+    {
+        long start = System.nanoTime();
+        super.updateOffering(offering);
+        record("updateOffering", start, 0, 1);
+    }
+
+    @Override
+    public Offering getOffering(int crn)
+    {
+        long start = System.nanoTime();
+        Offering offering = super.getOffering(crn);
+        record("getOffering", start, offering == null ? 0 : 1, 0);
+        return offering;
+    }
+
+    @Override
+    public long[] addCourses(Collection<Course> courses)
+    {
+        long start = System.nanoTime();
+        long[] ids = super.addCourses(courses);
+        record("addCourses", start, 0, ids.length);
+        return ids;
+    }
+
+    @Override
+    public int[] updateCourses(Collection<Course> courses)
+    {
+        long start = System.nanoTime();
+        int[] counts = super.updateCourses(courses);
+        record("updateCourses", start, 0, sum(counts));
+        return counts;
+    }
+
+    @Override
+    public int[] deleteCourses(Collection<Course> courses)
+    {
+        long start = System.nanoTime();
+        int[] counts = super.deleteCourses(courses);
+        record("deleteCourses", start, 0, sum(counts));
+        return counts;
+    }
+
+    @Override
+    public long[] addInstructors(Collection<Instructor> instructors)
+    {
+        long start = System.nanoTime();
+        long[] ids = super.addInstructors(instructors);
+        record("addInstructors", start, 0, ids.length);
+        return ids;
+    }
+
+    @Override
+    public int[] updateInstructors(Collection<Instructor> instructors)
+    {
+        long start = System.nanoTime();
+        int[] counts = super.updateInstructors(instructors);
+        record("updateInstructors", start, 0, sum(counts));
+        return counts;
+    }
+
+    @Override
+    public int[] deleteInstructors(Collection<Instructor> instructors)
+    {
+        long start = System.nanoTime();
+        int[] counts = super.deleteInstructors(instructors);
+        record("deleteInstructors", start, 0, sum(counts));
+        return counts;
+    }
+
+    @Override
+    public long[] addOfferings(Collection<Offering> offerings)
+    {
+        long start = System.nanoTime();
+        long[] ids = super.addOfferings(offerings);
+        record("addOfferings", start, 0, ids.length);
+        return ids;
+    }
+
+    @Override
+    public int[] updateOfferings(Collection<Offering> offerings)
+    {
+        long start = System.nanoTime();
+        int[] counts = super.updateOfferings(offerings);
+        record("updateOfferings", start, 0, sum(counts));
+        return counts;
+    }
+
+    @Override
+    public int[] deleteOfferings(Collection<Offering> offerings)
+    {
+        long start = System.nanoTime();
+        int[] counts = super.deleteOfferings(offerings);
+        record("deleteOfferings", start, 0, sum(counts));
+        return counts;
+    }
+
+    @Override
+    public List<Offering> getOfferingsForSemester(int semesterCode)
+    {
+        long start = System.nanoTime();
+        List<Offering> offerings = super.getOfferingsForSemester(semesterCode);
+        record("getOfferingsForSemester", start, offerings.size(), 0);
+        return offerings;
+    }
+
+    @Override
+    public List<Offering> getSemesterOfferingsPage(int semesterCode, int afterCRN, int pageSize)
+    {
+        long start = System.nanoTime();
+        List<Offering> offerings = super.getSemesterOfferingsPage(semesterCode, afterCRN, pageSize);
+        record("getSemesterOfferingsPage", start, offerings.size(), 0);
+        return offerings;
+    }
+
+    @Override
+    public int[] getSemesterCodes()
+    {
+        long start = System.nanoTime();
+        int[] semesterCodes = super.getSemesterCodes();
+        record("getSemesterCodes", start, semesterCodes.length, 0);
+        return semesterCodes;
+    }
+
+    @Override
+    public int getCurrentSemesterCode()
+    {
+        long start = System.nanoTime();
+        int semesterCode = super.getCurrentSemesterCode();
+        record("getCurrentSemesterCode", start, 0, 0);
+        return semesterCode;
+    }
+
+    @Override
+    public void setCurrentSemesterCode(int semesterCode)
+    {
+        long start = System.nanoTime();
+        super.setCurrentSemesterCode(semesterCode);
+        record("setCurrentSemesterCode", start, 0, 1);
+    }
+
+    @Override
+    public int pruneSemestersBefore(int semesterCode)
+    {
+        long start = System.nanoTime();
+        int deleted = super.pruneSemestersBefore(semesterCode);
+        record("pruneSemestersBefore", start, 0, deleted);
+        return deleted;
+    }
+
+    @Override
+    public int getCourseOfferingCount(long courseId, int semesterCode)
+    {
+        long start = System.nanoTime();
+        int count = super.getCourseOfferingCount(courseId, semesterCode);
+        record("getCourseOfferingCount", start, 1, 0);
+        return count;
+    }
+
+    @Override
+    public int getInstructorOfferingCount(long instructorId, int semesterCode)
+    {
+        long start = System.nanoTime();
+        int count = super.getInstructorOfferingCount(instructorId, semesterCode);
+        record("getInstructorOfferingCount", start, 1, 0);
+        return count;
+    }
+
+    @Override
+    public LongSparseArray<Integer> getCourseOfferingCounts(int semesterCode)
+    {
+        long start = System.nanoTime();
+        LongSparseArray<Integer> counts = super.getCourseOfferingCounts(semesterCode);
+        record("getCourseOfferingCounts", start, counts.size(), 0);
+        return counts;
+    }
+
+    @Override
+    public LongSparseArray<Integer> getInstructorOfferingCounts(int semesterCode)
+    {
+        long start = System.nanoTime();
+        LongSparseArray<Integer> counts = super.getInstructorOfferingCounts(semesterCode);
+        record("getInstructorOfferingCounts", start, counts.size(), 0);
+        return counts;
+    }
+
+    @Override
+    public List<Course> getCoursesPage(long afterId, int pageSize)
+    {
+        long start = System.nanoTime();
+        List<Course> courses = super.getCoursesPage(afterId, pageSize);
+        record("getCoursesPage", start, courses.size(), 0);
+        return courses;
+    }
+
+    @Override
+    public List<Instructor> getInstructorsPage(long afterId, int pageSize)
+    {
+        long start = System.nanoTime();
+        List<Instructor> instructors = super.getInstructorsPage(afterId, pageSize);
+        record("getInstructorsPage", start, instructors.size(), 0);
+        return instructors;
+    }
+
+    @Override
+    public List<Offering> getOfferingsPage(int afterCRN, int afterSemesterCode, int pageSize)
+    {
+        long start = System.nanoTime();
+        List<Offering> offerings = super.getOfferingsPage(afterCRN, afterSemesterCode, pageSize);
+        record("getOfferingsPage", start, offerings.size(), 0);
+        return offerings;
+    }
+
+    @Override
+    public CursorIterator<Course> iterateCourses()
+    {
+        long start = System.nanoTime();
+        CursorIterator<Course> iterator = super.iterateCourses();
+        record("iterateCourses", start, 0, 0);
+        return iterator;
+    }
+
+    @Override
+    public CursorIterator<Instructor> iterateInstructors()
+    {
+        long start = System.nanoTime();
+        CursorIterator<Instructor> iterator = super.iterateInstructors();
+        record("iterateInstructors", start, 0, 0);
+        return iterator;
+    }
+
+    @Override
+    public CursorIterator<Offering> iterateOfferings()
+    {
+        long start = System.nanoTime();
+        CursorIterator<Offering> iterator = super.iterateOfferings();
+        record("iterateOfferings", start, 0, 0);
+        return iterator;
+    }
+
+    @Override
+    public Catalog loadCatalog()
+    {
+        long start = System.nanoTime();
+        Catalog catalog = super.loadCatalog();
+        record("loadCatalog", start, catalog.getCourseCount() + catalog.getInstructorCount()
+                + catalog.getOfferingCount(), 0);
+        return catalog;
+    }
+
+    @Override
+    public CatalogSnapshot openCatalogSnapshot()
+    {
+        long start = System.nanoTime();
+        CatalogSnapshot snapshot = super.openCatalogSnapshot();
+        record("openCatalogSnapshot", start, 0, 0);
+        return snapshot;
+    }
+
+    @Override
+    public List<Offering> searchOfferings(String query, int limit)
+    {
+        long start = System.nanoTime();
+        List<Offering> offerings = super.searchOfferings(query, limit);
+        record("searchOfferings", start, offerings.size(), 0);
+        return offerings;
+    }
+
+    @Override
+    public boolean importCoursesFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        boolean imported = super.importCoursesFromCSV(csvFileName);
+        record("importCoursesFromCSV", start, 0, 0);
+        return imported;
+    }
+
+    @Override
+    public boolean importInstructorsFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        boolean imported = super.importInstructorsFromCSV(csvFileName);
+        record("importInstructorsFromCSV", start, 0, 0);
+        return imported;
+    }
+
+    @Override
+    public boolean importOfferingsFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        boolean imported = super.importOfferingsFromCSV(csvFileName);
+        record("importOfferingsFromCSV", start, 0, 0);
+        return imported;
+    }
+
+    @Override
+    public boolean importAssetsIfChanged(String coursesCSV, String instructorsCSV,
+                                         String offeringsCSV)
+    {
+        long start = System.nanoTime();
+        boolean imported = super.importAssetsIfChanged(coursesCSV, instructorsCSV, offeringsCSV);
+        record("importAssetsIfChanged", start, 0, 0);
+        return imported;
+    }
+
+    @Override
+    public boolean installPrebuiltDatabase(String databaseAsset, String coursesCSV,
+                                           String instructorsCSV, String offeringsCSV)
+    {
+        long start = System.nanoTime();
+        boolean imported = super.installPrebuiltDatabase(databaseAsset, coursesCSV, instructorsCSV,
+                offeringsCSV);
+        record("installPrebuiltDatabase", start, 0, 0);
+        return imported;
+    }
+
+    @Override
+    public ImportStats bulkImportCoursesFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.bulkImportCoursesFromCSV(csvFileName);
+        record("bulkImportCoursesFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    @Override
+    public ImportStats bulkImportCoursesFromCSV(String csvFileName, int conflictAlgorithm)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.bulkImportCoursesFromCSV(csvFileName, conflictAlgorithm);
+        record("bulkImportCoursesFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    @Override
+    public ImportStats bulkImportInstructorsFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.bulkImportInstructorsFromCSV(csvFileName);
+        record("bulkImportInstructorsFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    @Override
+    public ImportStats bulkImportInstructorsFromCSV(String csvFileName, int conflictAlgorithm)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.bulkImportInstructorsFromCSV(csvFileName, conflictAlgorithm);
+        record("bulkImportInstructorsFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    @Override
+    public ImportStats bulkImportOfferingsFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.bulkImportOfferingsFromCSV(csvFileName);
+        record("bulkImportOfferingsFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    @Override
+    public ImportStats bulkImportOfferingsFromCSV(String csvFileName, int conflictAlgorithm)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.bulkImportOfferingsFromCSV(csvFileName, conflictAlgorithm);
+        record("bulkImportOfferingsFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    @Override
+    public ImportStats[] pipelinedImportFromCSV(String coursesCSV, String instructorsCSV,
+                                                String offeringsCSV)
+    {
+        long start = System.nanoTime();
+        ImportStats[] stats = super.pipelinedImportFromCSV(coursesCSV, instructorsCSV,
+                offeringsCSV);
+        recordPipelinedImport("pipelinedImportFromCSV", start, stats);
+        return stats;
+    }
+
+    @Override
+    public ImportStats[] pipelinedImportFromCSV(String coursesCSV, String instructorsCSV,
+                                                String offeringsCSV, int conflictAlgorithm)
+    {
+        long start = System.nanoTime();
+        ImportStats[] stats = super.pipelinedImportFromCSV(coursesCSV, instructorsCSV,
+                offeringsCSV, conflictAlgorithm);
+        recordPipelinedImport("pipelinedImportFromCSV", start, stats);
+        return stats;
+    }
+
+    @Override
+    public ImportStats[] importFromCSV(Reader coursesCSV, Reader instructorsCSV,
+                                       Reader offeringsCSV, int conflictAlgorithm)
+    {
+        long start = System.nanoTime();
+        ImportStats[] stats = super.importFromCSV(coursesCSV, instructorsCSV, offeringsCSV,
+                conflictAlgorithm);
+        recordPipelinedImport("importFromCSV", start, stats);
+        return stats;
+    }
+
+    @Override
+    public ImportStats deltaImportOfferingsFromCSV(String csvFileName)
+    {
+        long start = System.nanoTime();
+        ImportStats stats = super.deltaImportOfferingsFromCSV(csvFileName);
+        record("deltaImportOfferingsFromCSV", start, rowsRead(stats), rowsWritten(stats));
+        return stats;
+    }
+
+    private void record(String operation, long start, long rowsRead, long rowsWritten)
+    {
+        mMetrics.operationCompleted(operation, System.nanoTime() - start, rowsRead, rowsWritten);
+    }
+
+    private void recordPipelinedImport(String operation, long start, ImportStats[] stats)
+    {
+        long rowsRead = 0;
+        long rowsWritten = 0;
+        if (stats != null)
+        {
+            for (ImportStats tableStats : stats)
+            {
+                rowsRead += rowsRead(tableStats);
+                rowsWritten += rowsWritten(tableStats);
+            }
+        }
+        record(operation, start, rowsRead, rowsWritten);
+    }
+
+    private static long sum(int[] counts)
+    {
+        long sum = 0;
+        for (int count : counts)
+            sum += count;
+        return sum;
+    }
+
+    private static long rowsRead(ImportStats stats)
+    {
+        if (stats == null) return 0;
+        return stats.getRowsImported() + stats.getRowsRejected();
+    }
+
+    private static long rowsWritten(ImportStats stats)
+    {
+        if (stats == null) return 0;
+        // A delta import counts every row it kept as imported, but only writes the changes
+        int changes = stats.getRowsInserted() + stats.getRowsUpdated() + stats.getRowsDeleted();
+        if (changes > 0 || stats.getRowsUnchanged() > 0) return changes;
+        return stats.getRowsImported();
+    }
+}
@@ -0,0 +1,286 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>MetricsRecorder</code> class is the default <code>DBMetrics</code>: it keeps, per
+ * operation, a call count, a <code>LatencyHistogram</code> and the rows read and written, plus a
+ * count of connection opens. Its measurements can be read back as a <code>Snapshot</code> or
+ * dumped to a text file. While disabled it drops every measurement after a single volatile read.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class MetricsRecorder implements DBMetrics
+{
+    private final ConcurrentMap<String, OperationRecorder> mOperations =
+            new ConcurrentHashMap<>();
+    private final AtomicLong mConnectionOpens = new AtomicLong();
+    private volatile boolean mEnabled = true;
+
+    /**
+     * The running totals of one operation.
+     */
+    private static class OperationRecorder
+    {
+        final LatencyHistogram mLatency = new LatencyHistogram();
+        final AtomicLong mRowsRead = new AtomicLong();
+        final AtomicLong mRowsWritten = new AtomicLong();
+    }
+
+    /**
+     * Starts or stops recording. Measurements already recorded are kept.
+     *
+     * @param enabled True to record measurements, false to drop them.
+     */
+    void setEnabled(boolean enabled)
+    {
+        mEnabled = enabled;
+    }
+
+    boolean isEnabled()
+    {
+        return mEnabled;
+    }
+
+    @Override
+    public void connectionOpened()
+    {
+        if (mEnabled) mConnectionOpens.incrementAndGet();
+    }
+
+    @Override
+    public void operationCompleted(String operation, long elapsedNanos, long rowsRead,
+                                   long rowsWritten)
+    {
+        if (!mEnabled) return;
+
+        OperationRecorder recorder = mOperations.get(operation);
+        if (recorder == null)
+        {
+            OperationRecorder added = new OperationRecorder();
+            recorder = mOperations.putIfAbsent(operation, added);
+            if (recorder == null) recorder = added;
+        }
+        recorder.mLatency.record(elapsedNanos);
+        if (rowsRead != 0) recorder.mRowsRead.addAndGet(rowsRead);
+        if (rowsWritten != 0) recorder.mRowsWritten.addAndGet(rowsWritten);
+    }
+
+    /**
+     * Gets a copy of the measurements recorded so far, with the operations sorted by name.
+     * Measurements recorded while the copy is taken may be only partly included.
+     *
+     * @return The measurements recorded so far.
+     */
+    Snapshot snapshot()
+    {
+        List<OperationStats> operations = new ArrayList<>(mOperations.size());
+        for (Map.Entry<String, OperationRecorder> entry : mOperations.entrySet())
+        {
+            OperationRecorder recorder = entry.getValue();
+            LatencyHistogram latency = recorder.mLatency;
+            operations.add(new OperationStats(entry.getKey(), latency.getCount(),
+                    latency.getTotalNanos(), latency.getPercentile(50), latency.getPercentile(95),
+                    latency.getPercentile(99), latency.getMaxNanos(), recorder.mRowsRead.get(),
+                    recorder.mRowsWritten.get()));
+        }
+        Collections.sort(operations);
+        return new Snapshot(mConnectionOpens.get(), operations);
+    }
+
+    /**
+     * Clears every measurement recorded so far.
+     */
+    void reset()
+    {
+        mOperations.clear();
+        mConnectionOpens.set(0);
+    }
+
+    /**
+     * Writes a snapshot of the measurements to a text file, replacing the file if it exists.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file could not be written.
+     */
+    void dump(File file) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            writer.write(snapshot().toString());
+        } finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * The measurements of every operation at one point in time.
+     */
+    static final class Snapshot
+    {
+        private final long mConnectionOpens;
+        private final List<OperationStats> mOperations;
+
+        private Snapshot(long connectionOpens, List<OperationStats> operations)
+        {
+            mConnectionOpens = connectionOpens;
+            mOperations = Collections.unmodifiableList(operations);
+        }
+
+        public long getConnectionOpens()
+        {
+            return mConnectionOpens;
+        }
+
+        public List<OperationStats> getOperations()
+        {
+            return mOperations;
+        }
+
+        /**
+         * Gets the measurements of one operation.
+         *
+         * @param operation The name of the operation.
+         * @return The measurements of the operation, or null if it was never recorded.
+         */
+        public OperationStats getOperation(String operation)
+        {
+            for (OperationStats stats : mOperations)
+                if (stats.getOperation().equals(operation))
+                    return stats;
+            return null;
+        }
+
+        /**
+         * Formats the snapshot as a table with one line per operation and times in
+         * microseconds.
+         *
+         * @return The formatted snapshot.
+         */
+        @Override
+        public String toString()
+        {
+            StringBuilder text = new StringBuilder();
+            text.append("connection_opens ").append(mConnectionOpens).append('\n');
+            text.append("operation\tcalls\tp50_us\tp95_us\tp99_us\tmax_us\ttotal_ms"
+                    + "\trows_read\trows_written\trows_per_s\n");
+            for (OperationStats stats : mOperations)
+                text.append(String.format(Locale.US, "%s\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\t%d\n",
+                        stats.getOperation(), stats.getCount(), stats.getP50Nanos() / 1000,
+                        stats.getP95Nanos() / 1000, stats.getP99Nanos() / 1000,
+                        stats.getMaxNanos() / 1000, stats.getTotalNanos() / 1000000,
+                        stats.getRowsRead(), stats.getRowsWritten(),
+                        Math.round(stats.getRowsPerSecond())));
+            return text.toString();
+        }
+    }
+
+    /**
+     * The measurements of one operation at one point in time. Percentiles are accurate to within
+     * 12.5%.
+     */
+    static final class OperationStats implements Comparable<OperationStats>
+    {
+        private final String mOperation;
+        private final long mCount;
+        private final long mTotalNanos;
+        private final long mP50Nanos;
+        private final long mP95Nanos;
+        private final long mP99Nanos;
+        private final long mMaxNanos;
+        private final long mRowsRead;
+        private final long mRowsWritten;
+
+        private OperationStats(String operation, long count, long totalNanos, long p50Nanos,
+                               long p95Nanos, long p99Nanos, long maxNanos, long rowsRead,
+                               long rowsWritten)
+        {
+            mOperation = operation;
+            mCount = count;
+            mTotalNanos = totalNanos;
+            mP50Nanos = p50Nanos;
+            mP95Nanos = p95Nanos;
+            mP99Nanos = p99Nanos;
+            mMaxNanos = maxNanos;
+            mRowsRead = rowsRead;
+            mRowsWritten = rowsWritten;
+        }
+
+        public String getOperation()
+        {
+            return mOperation;
+        }
+
+        public long getCount()
+        {
+            return mCount;
+        }
+
+        public long getTotalNanos()
+        {
+            return mTotalNanos;
+        }
+
+        public long getP50Nanos()
+        {
+            return mP50Nanos;
+        }
+
+        public long getP95Nanos()
+        {
+            return mP95Nanos;
+        }
+
+        public long getP99Nanos()
+        {
+            return mP99Nanos;
+        }
+
+        public long getMaxNanos()
+        {
+            return mMaxNanos;
+        }
+
+        public long getRowsRead()
+        {
+            return mRowsRead;
+        }
+
+        public long getRowsWritten()
+        {
+            return mRowsWritten;
+        }
+
+        /**
+         * Gets the throughput of the operation across all its calls.
+         *
+         * @return The number of rows read or written per second, or 0 if no time was recorded.
+         */
+        public double getRowsPerSecond()
+        {
+            if (mTotalNanos <= 0) return 0;
+            return Math.max(mRowsRead, mRowsWritten) * 1e9 / mTotalNanos;
+        }
+
+        @Override
+        public int compareTo(OperationStats other)
+        {
+            return mOperation.compareTo(other.mOperation);
+        }
+    }
+}
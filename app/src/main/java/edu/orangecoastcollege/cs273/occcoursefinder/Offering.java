@@ -5,22 +5,50 @@ package edu.orangecoastcollege.cs273.occcoursefinder;
  * including its CRN (course registration number), semester code (a number with the year and
  * semester), the <code>Course</code> it is mapped to and the <code>Instructor</code> teaching
  * this offering of the course.
+ * <p>
+ * An <code>Offering</code> read from the database holds only the IDs of its <code>Course</code>
+ * and <code>Instructor</code> until one of them is first asked for, so callers that only need
+ * the CRN or semester never load them.
  *
  * @author Michael Paulding
  */
 public class Offering {
     private int mCRN;
     private int mSemesterCode;
+    private long mCourseId;
+    private long mInstructorId;
     private Course mCourse;
     private Instructor mInstructor;
+    // Loads mCourse and mInstructor on first access; null once they are loaded
+    private volatile OfferingParents mParents;
 
     public Offering(int CRN, int semesterCode, Course course, Instructor instructor) {
         mCRN = CRN;
         mSemesterCode = semesterCode;
         mCourse = course;
+        mCourseId = course == null ? -1 : course.getId();
         mInstructor = instructor;
+        mInstructorId = instructor == null ? -1 : instructor.getId();
     }
 
+    /**
+     * Instantiates an <code>Offering</code> that knows only the IDs of its <code>Course</code>
+     * and <code>Instructor</code>.
+     *
+     * @param CRN          The CRN.
+     * @param semesterCode The semester code.
+     * @param courseId     The ID of the <code>Course</code>, or -1 if there is none.
+     * @param instructorId The ID of the <code>Instructor</code>, or -1 if there is none.
+     * @param parents      Loads the <code>Course</code> and <code>Instructor</code> when either
+     *                     is first asked for, or null if they are never needed.
+     */
+    Offering(int CRN, int semesterCode, long courseId, long instructorId, OfferingParents parents) {
+        mCRN = CRN;
+        mSemesterCode = semesterCode;
+        mCourseId = courseId;
+        mInstructorId = instructorId;
+        mParents = parents;
+    }
 
     public int getCRN() {
         return mCRN;
@@ -38,20 +66,52 @@ public class Offering {
         mSemesterCode = semesterCode;
     }
 
+    public long getCourseId() {
+        return mCourseId;
+    }
+
+    public long getInstructorId() {
+        return mInstructorId;
+    }
+
     public Course getCourse() {
+        loadParents();
         return mCourse;
     }
 
     public void setCourse(Course course) {
+        loadParents();
         mCourse = course;
+        mCourseId = course == null ? -1 : course.getId();
     }
 
     public Instructor getInstructor() {
+        loadParents();
         return mInstructor;
     }
 
     public void setInstructor(Instructor instructor) {
+        loadParents();
         mInstructor = instructor;
+        mInstructorId = instructor == null ? -1 : instructor.getId();
+    }
+
+    /**
+     * Sets the <code>Course</code> and <code>Instructor</code> loaded by an
+     * <code>OfferingParents</code>.
+     *
+     * @param course     The <code>Course</code>, or null if it does not exist.
+     * @param instructor The <code>Instructor</code>, or null if it does not exist.
+     */
+    void setParents(Course course, Instructor instructor) {
+        mCourse = course;
+        mInstructor = instructor;
+        mParents = null;
+    }
+
+    private void loadParents() {
+        OfferingParents parents = mParents;
+        if (parents != null) parents.load();
     }
 
     @Override
@@ -59,8 +119,8 @@ public class Offering {
         return "Offering{" +
                 "CRN=" + mCRN +
                 ", SemesterCode=" + mSemesterCode +
-                ", Course=" + mCourse +
-                ", Instructor=" + mInstructor +
+                ", Course=" + getCourse() +
+                ", Instructor=" + getInstructor() +
                 '}';
     }
 }
@@ -0,0 +1,89 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.util.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>OfferingParents</code> class resolves the <code>Course</code> and
+ * <code>Instructor</code> of a batch of <code>Offering</code>s read together, such as one page.
+ * Nothing is loaded until one of the <code>Offering</code>s is first asked for its
+ * <code>Course</code> or <code>Instructor</code>; then the parents of the whole batch are loaded
+ * at once, with one query per table for whatever the entity caches do not already hold.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class OfferingParents
+{
+    private final DBHelper mDBHelper;
+    private final int mCapacity;
+    // The Offerings waiting for their parents; null once they have been loaded
+    private List<Offering> mOfferings = new ArrayList<>();
+
+    /**
+     * Instantiates a new, empty batch.
+     *
+     * @param dbHelper The <code>DBHelper</code> to load the parents from.
+     * @param capacity The number of <code>Offering</code>s the batch holds.
+     */
+    OfferingParents(DBHelper dbHelper, int capacity)
+    {
+        mDBHelper = dbHelper;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Checks whether the batch can take another <code>Offering</code>.
+     *
+     * @return True if the batch is full or its parents have been loaded.
+     */
+    synchronized boolean isFull()
+    {
+        return mOfferings == null || mOfferings.size() >= mCapacity;
+    }
+
+    /**
+     * Creates an <code>Offering</code> whose parents are loaded with the rest of this batch.
+     *
+     * @param crn          The CRN.
+     * @param semesterCode The semester code.
+     * @param courseId     The ID of the <code>Course</code>, or -1 if there is none.
+     * @param instructorId The ID of the <code>Instructor</code>, or -1 if there is none.
+     * @return The new <code>Offering</code>.
+     */
+    synchronized Offering newOffering(int crn, int semesterCode, long courseId, long instructorId)
+    {
+        if (isFull()) throw new IllegalStateException("The batch is full");
+        Offering offering = new Offering(crn, semesterCode, courseId, instructorId, this);
+        mOfferings.add(offering);
+        return offering;
+    }
+
+    /**
+     * Loads the parents of every <code>Offering</code> in the batch, unless they are already
+     * loaded. An <code>Offering</code> whose <code>Course</code> or <code>Instructor</code> does
+     * not exist gets null for it.
+     */
+    synchronized void load()
+    {
+        if (mOfferings == null) return;
+
+        int size = mOfferings.size();
+        long[] courseIds = new long[size];
+        long[] instructorIds = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            courseIds[i] = mOfferings.get(i).getCourseId();
+            instructorIds[i] = mOfferings.get(i).getInstructorId();
+        }
+
+        LongSparseArray<Course> courses = mDBHelper.getCourses(courseIds);
+        LongSparseArray<Instructor> instructors = mDBHelper.getInstructors(instructorIds);
+        for (Offering offering : mOfferings)
+            offering.setParents(courses.get(offering.getCourseId()),
+                    instructors.get(offering.getInstructorId()));
+        mOfferings = null;
+    }
+}
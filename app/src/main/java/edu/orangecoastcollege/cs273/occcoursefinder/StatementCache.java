@@ -0,0 +1,104 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * The <code>StatementCache</code> class holds a fixed set of compiled statements for one
+ * database connection, so each is prepared once and then rebound and rerun for every call.
+ * Statements are identified by their index in the SQL array the cache was created with, so a
+ * lookup is an array access. When the database is reopened, the statements compiled for the old
+ * connection are closed and compiled again on first use.
+ * <p>
+ * A statement's bindings are shared by every caller, so a write statement must only be bound and
+ * run inside a transaction, which already keeps other writers out until it ends.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class StatementCache
+{
+    private final String[] mSql;
+    private final SQLiteStatement[] mStatements;
+    private SQLiteDatabase mDatabase;
+    private int mCompileCount;
+
+    /**
+     * Instantiates a new, empty <code>StatementCache</code>.
+     *
+     * @param sql The SQL of each statement, indexed by the number used to get it.
+     */
+    StatementCache(String... sql)
+    {
+        mSql = sql;
+        mStatements = new SQLiteStatement[sql.length];
+    }
+
+    /**
+     * Gets a compiled statement, with its bindings cleared, compiling it on first use.
+     *
+     * @param database  The open database the statement will run on.
+     * @param statement The index of the statement's SQL.
+     * @return The compiled statement.
+     */
+    synchronized SQLiteStatement get(SQLiteDatabase database, int statement)
+    {
+        if (database != mDatabase)
+        {
+            closeStatements();
+            mDatabase = database;
+        }
+
+        SQLiteStatement compiled = mStatements[statement];
+        if (compiled == null)
+        {
+            compiled = database.compileStatement(mSql[statement]);
+            mStatements[statement] = compiled;
+            mCompileCount++;
+        }
+        else
+            compiled.clearBindings();
+        return compiled;
+    }
+
+    /**
+     * Closes every compiled statement, before the database they were compiled for is closed.
+     */
+    synchronized void close()
+    {
+        closeStatements();
+        mDatabase = null;
+    }
+
+    private void closeStatements()
+    {
+        for (int i = 0; i < mStatements.length; i++)
+        {
+            if (mStatements[i] != null) mStatements[i].close();
+            mStatements[i] = null;
+        }
+    }
+
+    /**
+     * Gets the number of statements compiled since the cache was created.
+     *
+     * @return The compile count.
+     */
+    synchronized int compileCount()
+    {
+        return mCompileCount;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        int compiled = 0;
+        for (SQLiteStatement statement : mStatements)
+            if (statement != null) compiled++;
+        return "StatementCache{" +
+                "Compiled=" + compiled +
+                ", Statements=" + mStatements.length +
+                ", Compiles=" + mCompileCount +
+                '}';
+    }
+}
@@ -0,0 +1,121 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+/**
+ * The <code>TopMatches</code> class keeps the highest scoring of a stream of search matches,
+ * without storing or sorting the rest. The kept matches live in a binary min-heap of primitive
+ * IDs and scores, so offering a match that does not make the cut costs one comparison. Equal
+ * scores are ordered by ascending ID.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+class TopMatches
+{
+    private final long[] mIds;
+    private final double[] mScores;
+    private int mSize;
+
+    /**
+     * Instantiates a new, empty <code>TopMatches</code>.
+     *
+     * @param capacity The number of matches to keep.
+     */
+    TopMatches(int capacity)
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0");
+        mIds = new long[capacity];
+        mScores = new double[capacity];
+    }
+
+    /**
+     * Offers a match, keeping it if it is among the best seen so far.
+     *
+     * @param id    The ID of the match.
+     * @param score The score of the match; higher is better.
+     */
+    void offer(long id, double score)
+    {
+        if (mSize < mIds.length)
+        {
+            mIds[mSize] = id;
+            mScores[mSize] = score;
+            siftUp(mSize++);
+        }
+        else if (isBetter(id, score, 0))
+        {
+            // Replace the worst match kept, which is at the root
+            mIds[0] = id;
+            mScores[0] = score;
+            siftDown(0, mSize);
+        }
+    }
+
+    /**
+     * Gets the number of matches kept.
+     *
+     * @return The number of matches kept.
+     */
+    int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * Gets the IDs of the matches kept, best first. The matches are removed.
+     *
+     * @return The IDs of the matches kept, best first.
+     */
+    long[] drain()
+    {
+        long[] ids = new long[mSize];
+        // Repeatedly move the worst match to the end of the heap
+        while (mSize > 0)
+        {
+            ids[--mSize] = mIds[0];
+            swap(0, mSize);
+            siftDown(0, mSize);
+        }
+        return ids;
+    }
+
+    private boolean isBetter(long id, double score, int entry)
+    {
+        return score > mScores[entry] || (score == mScores[entry] && id < mIds[entry]);
+    }
+
+    private void siftUp(int entry)
+    {
+        while (entry > 0)
+        {
+            int parent = (entry - 1) / 2;
+            if (!isBetter(mIds[parent], mScores[parent], entry)) return;
+            swap(entry, parent);
+            entry = parent;
+        }
+    }
+
+    private void siftDown(int entry, int size)
+    {
+        while (true)
+        {
+            int worst = entry;
+            int left = 2 * entry + 1;
+            int right = left + 1;
+            if (left < size && isBetter(mIds[worst], mScores[worst], left)) worst = left;
+            if (right < size && isBetter(mIds[worst], mScores[worst], right)) worst = right;
+            if (worst == entry) return;
+            swap(entry, worst);
+            entry = worst;
+        }
+    }
+
+    private void swap(int a, int b)
+    {
+        long id = mIds[a];
+        mIds[a] = mIds[b];
+        mIds[b] = id;
+        double score = mScores[a];
+        mScores[a] = mScores[b];
+        mScores[b] = score;
+    }
+}
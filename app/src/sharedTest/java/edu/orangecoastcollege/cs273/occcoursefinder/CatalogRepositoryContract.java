@@ -0,0 +1,324 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The tests every <code>CatalogRepository</code> must pass. Each backend runs them by extending
+ * this class: <code>InMemoryCatalogRepositoryTest</code> on the JVM and
+ * <code>SQLiteCatalogRepositoryTest</code> on an Android device.
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+public abstract class CatalogRepositoryContract
+{
+    private static final String COURSES_CSV = "1,CS,A170,Java Programming 1\n"
+            + "2,CS,A273,Mobile Application Development\n"
+            + "3,MATH,A180,Calculus 1\n";
+    private static final String INSTRUCTORS_CSV = "1,Paulding,Michael,mpaulding@occ.cccd.edu\n"
+            + "2,Mobley,Pat,pmobley@occ.cccd.edu\n";
+    private static final String OFFERINGS_CSV = "36018,201731,2,1\n"
+            + "36019,201731,1,2\n"
+            + "36020,201731,3,2\n"
+            + "36018,201733,2,1\n"
+            + "40001,201733,1,1\n";
+
+    protected CatalogRepository mRepository;
+
+    /**
+     * Creates the repository under test, empty.
+     *
+     * @return The new repository.
+     */
+    protected abstract CatalogRepository newRepository();
+
+    /**
+     * Called after each test has closed its repository, to remove anything it left behind.
+     */
+    protected void afterClose()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        mRepository = newRepository();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mRepository.close();
+        afterClose();
+    }
+
+    @Test
+    public void coursesCrud()
+    {
+        mRepository.addCourse(new Course("CS", "A170", "Java Programming 1"));
+        mRepository.addCourse(new Course(10, "CS", "A273", "Mobile Apps"));
+        mRepository.addCourse(new Course("MATH", "A180", "Calculus 1"));
+        // The ID is taken, so the Course is not added
+        mRepository.addCourse(new Course(10, "CS", "A272", "Java Programming 2"));
+
+        List<Course> courses = mRepository.getAllCourses();
+        assertEquals(3, courses.size());
+        assertEquals(1, courses.get(0).getId());
+        assertEquals(10, courses.get(1).getId());
+        assertEquals(11, courses.get(2).getId());
+        assertEquals("A273", mRepository.getCourse(10).getNumber());
+        assertNull(mRepository.getCourse(2));
+
+        mRepository.updateCourse(new Course(10, "CS", "A273", "Android Development"));
+        assertEquals("Android Development", mRepository.getCourse(10).getTitle());
+        mRepository.deleteCourse(mRepository.getCourse(1));
+        assertNull(mRepository.getCourse(1));
+        assertEquals(2, mRepository.getAllCourses().size());
+        mRepository.deleteAllCourses();
+        assertTrue(mRepository.getAllCourses().isEmpty());
+    }
+
+    @Test
+    public void instructorsCrud()
+    {
+        mRepository.addInstructor(new Instructor("Paulding", "Michael", "mpaulding@occ.cccd.edu"));
+        mRepository.addInstructor(new Instructor(5, "Mobley", "Pat", "pmobley@occ.cccd.edu"));
+
+        List<Instructor> instructors = mRepository.getAllInstructors();
+        assertEquals(2, instructors.size());
+        assertEquals("Paulding", instructors.get(0).getLastName());
+        assertEquals("Pat", mRepository.getInstructor(5).getFirstName());
+
+        mRepository.updateInstructor(new Instructor(5, "Mobley", "Patricia",
+                "pmobley@occ.cccd.edu"));
+        assertEquals("Patricia", mRepository.getInstructor(5).getFirstName());
+        mRepository.deleteInstructor(mRepository.getInstructor(1));
+        assertNull(mRepository.getInstructor(1));
+        mRepository.deleteAllInstructors();
+        assertTrue(mRepository.getAllInstructors().isEmpty());
+    }
+
+    @Test
+    public void offeringsCrud()
+    {
+        importCatalog();
+        Course java = mRepository.getCourse(1);
+        Instructor paulding = mRepository.getInstructor(1);
+
+        // The most recent semester wins
+        Offering offering = mRepository.getOffering(36018);
+        assertEquals(201733, offering.getSemesterCode());
+        assertEquals("A273", offering.getCourse().getNumber());
+        assertNull(mRepository.getOffering(12345));
+
+        // Adding an existing CRN and semester code does nothing
+        mRepository.addOffering(new Offering(36018, 201733, java, paulding));
+        assertEquals(2, mRepository.getOffering(36018).getCourseId());
+
+        mRepository.updateOffering(new Offering(36018, 201733, java, paulding));
+        assertEquals("A170", mRepository.getOffering(36018).getCourse().getNumber());
+        mRepository.deleteOffering(offering);
+        assertEquals(201731, mRepository.getOffering(36018).getSemesterCode());
+        assertEquals(4, mRepository.getAllOfferings().size());
+
+        // An Offering keeps a reference to a deleted Course
+        mRepository.deleteCourse(java);
+        Offering orphan = mRepository.getOffering(40001);
+        assertEquals(1, orphan.getCourseId());
+        assertNull(orphan.getCourse());
+        assertEquals("Paulding", orphan.getInstructor().getLastName());
+
+        mRepository.deleteAllOfferings();
+        assertTrue(mRepository.getAllOfferings().isEmpty());
+        assertEquals(-1, mRepository.getCurrentSemesterCode());
+    }
+
+    @Test
+    public void batchWritesAreAllOrNothing()
+    {
+        long[] ids = mRepository.addCourses(Arrays.asList(
+                new Course(5, "CS", "A170", "Java Programming 1"),
+                new Course("CS", "A273", "Mobile Apps")));
+        assertArrayEquals(new long[]{5, 6}, ids);
+
+        try
+        {
+            mRepository.addCourses(Arrays.asList(new Course(7, "CS", "A272", "Java 2"),
+                    new Course(5, "CS", "A200", "Taken")));
+            fail("Added a Course with a taken ID");
+        } catch (RuntimeException e)
+        {
+            // Expected
+        }
+        assertNull(mRepository.getCourse(7));
+
+        assertArrayEquals(new int[]{1, 0}, mRepository.updateCourses(Arrays.asList(
+                new Course(5, "CS", "A170", "Java 1"), new Course(99, "CS", "A1", "None"))));
+        assertEquals("Java 1", mRepository.getCourse(5).getTitle());
+        assertArrayEquals(new int[]{1, 0}, mRepository.deleteCourses(Arrays.asList(
+                new Course(6, "", "", ""), new Course(99, "", "", ""))));
+        assertEquals(1, mRepository.getAllCourses().size());
+
+        mRepository.addInstructors(Collections.singletonList(
+                new Instructor(1, "Paulding", "Michael", "mpaulding@occ.cccd.edu")));
+        Course java = mRepository.getCourse(5);
+        Instructor paulding = mRepository.getInstructor(1);
+        assertEquals(2, mRepository.addOfferings(Arrays.asList(
+                new Offering(36018, 201731, java, paulding),
+                new Offering(36019, 201731, java, paulding))).length);
+        try
+        {
+            mRepository.addOfferings(Arrays.asList(new Offering(36020, 201731, java, paulding),
+                    new Offering(36018, 201731, java, paulding)));
+            fail("Added an Offering with a taken CRN and semester code");
+        } catch (RuntimeException e)
+        {
+            // Expected
+        }
+        assertEquals(2, mRepository.getAllOfferings().size());
+        assertArrayEquals(new int[]{1, 0}, mRepository.deleteOfferings(Arrays.asList(
+                new Offering(36018, 201731, java, paulding),
+                new Offering(36020, 201731, java, paulding))));
+    }
+
+    @Test
+    public void semesterQueries()
+    {
+        importCatalog();
+
+        assertArrayEquals(new int[]{201731, 201733}, mRepository.getSemesterCodes());
+        assertEquals(201733, mRepository.getCurrentSemesterCode());
+        mRepository.setCurrentSemesterCode(201731);
+        assertEquals(201731, mRepository.getCurrentSemesterCode());
+        mRepository.setCurrentSemesterCode(-1);
+        assertEquals(201733, mRepository.getCurrentSemesterCode());
+
+        assertEquals(Arrays.asList(36018, 36019, 36020),
+                toCRNs(mRepository.getOfferingsForSemester(201731)));
+        assertEquals(Arrays.asList(36018, 36019),
+                toCRNs(mRepository.getSemesterOfferingsPage(201731, -1, 2)));
+        assertEquals(Collections.singletonList(36020),
+                toCRNs(mRepository.getSemesterOfferingsPage(201731, 36019, 2)));
+        assertTrue(mRepository.getSemesterOfferingsPage(201731, 36020, 2).isEmpty());
+
+        List<Offering> paged = new ArrayList<>();
+        List<Offering> page = mRepository.getOfferingsPage(-1, -1, 2);
+        while (!page.isEmpty())
+        {
+            paged.addAll(page);
+            Offering last = page.get(page.size() - 1);
+            page = mRepository.getOfferingsPage(last.getCRN(), last.getSemesterCode(), 2);
+        }
+        assertEquals(Arrays.asList(36018, 36018, 36019, 36020, 40001), toCRNs(paged));
+        assertEquals(201731, paged.get(0).getSemesterCode());
+        assertEquals(201733, paged.get(1).getSemesterCode());
+    }
+
+    @Test
+    public void searchRanksMatchesAndFollowsWrites()
+    {
+        importCatalog();
+
+        // A title match ranks above an instructor name match
+        List<Offering> results = mRepository.searchOfferings("mob", 10);
+        assertEquals(Arrays.asList(36018, 36018, 36019, 36020), toSortedCRNs(results));
+        assertEquals("A273", results.get(0).getCourse().getNumber());
+        assertEquals("A273", results.get(1).getCourse().getNumber());
+
+        assertEquals(2, mRepository.searchOfferings("csa27", 10).size());
+        assertEquals(Collections.singletonList(40001),
+                toCRNs(mRepository.searchOfferings("CS A1 paul", 10)));
+        assertEquals(1, mRepository.searchOfferings("mob", 1).size());
+        assertTrue(mRepository.searchOfferings(" \"*- ", 10).isEmpty());
+        assertTrue(mRepository.searchOfferings("physics", 10).isEmpty());
+
+        mRepository.updateCourse(new Course(2, "CS", "A273", "Android Development"));
+        assertEquals(Arrays.asList(36019, 36020),
+                toSortedCRNs(mRepository.searchOfferings("mob", 10)));
+    }
+
+    @Test
+    public void importCountsRejectedRows()
+    {
+        ImportStats[] stats = mRepository.importFromCSV(
+                new StringReader(COURSES_CSV + "1,CS,A100,Duplicate\nx,CS,A1,Bad ID\n"),
+                new StringReader(INSTRUCTORS_CSV + "3,Too,Few\n"),
+                new StringReader(OFFERINGS_CSV + "50000,201731,99,1\n50001,201731,1,98\n"),
+                SQLiteDatabase.CONFLICT_IGNORE);
+        assertNotNull(stats);
+        assertEquals(3, stats[0].getRowsImported());
+        assertEquals(2, stats[0].getRowsRejected());
+        assertEquals(1, stats[0].getDuplicateKeys());
+        assertEquals(2, stats[1].getRowsImported());
+        assertEquals(1, stats[1].getRowsRejected());
+        assertEquals(5, stats[2].getRowsImported());
+        assertEquals(2, stats[2].getRowsRejected());
+        assertEquals(1, stats[2].getDanglingCourseReferences());
+        assertEquals(1, stats[2].getDanglingInstructorReferences());
+        assertEquals("Java Programming 1", mRepository.getCourse(1).getTitle());
+        assertEquals(5, mRepository.getAllOfferings().size());
+    }
+
+    @Test
+    public void importFailsOnUnterminatedQuote()
+    {
+        // The open quote would otherwise swallow every row after it into one rejected field
+        assertNull(mRepository.importFromCSV(
+                new StringReader("1,CS,A170,\"Java Programming 1\n2,CS,A272,Java 2\n"),
+                new StringReader(INSTRUCTORS_CSV), new StringReader(OFFERINGS_CSV),
+                SQLiteDatabase.CONFLICT_IGNORE));
+    }
+
+    @Test
+    public void importConflictAlgorithms()
+    {
+        importCatalog();
+        // Read first, so a cached copy of the replaced course would be returned below
+        assertEquals("Java Programming 1", mRepository.getCourse(1).getTitle());
+        ImportStats[] stats = mRepository.importFromCSV(
+                new StringReader("1,CS,A170,Java 1\n"), new StringReader(""),
+                new StringReader("40001,201733,2,2\n"), SQLiteDatabase.CONFLICT_REPLACE);
+        assertNotNull(stats);
+        assertEquals(1, stats[0].getRowsImported());
+        assertEquals("Java 1", mRepository.getCourse(1).getTitle());
+        assertEquals(2, mRepository.getOffering(40001).getCourseId());
+
+        assertNull(mRepository.importFromCSV(new StringReader("1,CS,A170,Again\n"),
+                new StringReader(""), new StringReader(""), SQLiteDatabase.CONFLICT_FAIL));
+        assertEquals("Java 1", mRepository.getCourse(1).getTitle());
+    }
+
+    private void importCatalog()
+    {
+        assertNotNull(mRepository.importFromCSV(new StringReader(COURSES_CSV),
+                new StringReader(INSTRUCTORS_CSV), new StringReader(OFFERINGS_CSV),
+                SQLiteDatabase.CONFLICT_IGNORE));
+    }
+
+    private static List<Integer> toCRNs(List<Offering> offerings)
+    {
+        List<Integer> crns = new ArrayList<>();
+        for (Offering offering : offerings)
+            crns.add(offering.getCRN());
+        return crns;
+    }
+
+    private static List<Integer> toSortedCRNs(List<Offering> offerings)
+    {
+        List<Integer> crns = toCRNs(offerings);
+        Collections.sort(crns);
+        return crns;
+    }
+}
@@ -0,0 +1,17 @@
+package edu.orangecoastcollege.cs273.occcoursefinder;
+
+/**
+ * Runs the <code>CatalogRepositoryContract</code> against
+ * <code>InMemoryCatalogRepository</code>, which will execute on the development machine (host).
+ *
+ * @author Derek Tran
+ * @version 1.0
+ */
+public class InMemoryCatalogRepositoryTest extends CatalogRepositoryContract
+{
+    @Override
+    protected CatalogRepository newRepository()
+    {
+        return new InMemoryCatalogRepository();
+    }
+}